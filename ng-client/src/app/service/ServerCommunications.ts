@@ -10,7 +10,13 @@ import { ServerUpdate } from "../shared/ServerUpdate";
 
 @Injectable( {providedIn: 'root'})
 export class ServerCommunications {
-	private subject: WebSocketSubject<ServerUpdate> = null;
+	private subject: WebSocketSubject<any> = null;
+	// The state built from the last snapshot and the deltas after it; null until the first snapshot
+	private serverUpdate: ServerUpdate = null;
+	private resyncRequested: boolean = false;
+	// Requests sent on the WebSocket, by request id, awaiting their responses
+	private pendingRequests: Map<number, (response: ServerResponse) => void> = new Map();
+	private lastRequestId: number = 0;
 
 	constructor(private http: HttpClient) {
 		// Do nothing
@@ -22,11 +28,18 @@ export class ServerCommunications {
 	}
 
 	/*
-	 * Send a request to the server.
+	 * Send a request to the server: on the WebSocket once it is connected, otherwise by POST.
 	 * request: ClientRequest required
 	 * callback?: () => boolean optional, indicates whether the call was successful or not upon completion
 	 */
 	sendRequest(request: ClientRequest, callback?: (joinedSuccess: boolean) => void): void {
+		// The first server update shows that the server has connected the WebSocket; a join always precedes its WebSocket
+		if (this.subject !== null && this.serverUpdate !== null && request.requestType !== ClientRequest.JOIN) {
+			this.sendRequestOnWebSocket(request, callback);
+
+			return;
+		}
+
 		let success: boolean = true;
 
 		// Use a relative URI in order to avoid CORS issues
@@ -50,14 +63,64 @@ export class ServerCommunications {
 			);
 	}
 
+	/*
+	 * Send a request on the WebSocket. The server replies on the WebSocket with the response, led by the request id.
+	 */
+	private sendRequestOnWebSocket(request: ClientRequest, callback?: (joinedSuccess: boolean) => void): void {
+		const requestId: number = ++this.lastRequestId;
+
+		this.pendingRequests.set(requestId, (response: ServerResponse) => {
+			if (response.error) {
+				alert("Request failed! " + response.message);
+			}
+			if (callback) {
+				callback(!response.error);
+			}
+		});
+
+		this.subject.next(Object.assign({ requestId: requestId }, request));
+	}
+
+	/*
+	 * Fail the requests still awaiting responses, once the WebSocket closes.
+	 */
+	private failPendingRequests(): void {
+		const pendingRequests = Array.from(this.pendingRequests.values());
+		this.pendingRequests.clear();
+
+		for (const complete of pendingRequests) {
+			complete({ error: true, message: "The connection to the server closed." });
+		}
+	}
+
 	createWebSocket(voterName: string, receiveServerUpdateCallback: (serverUpdate: ServerUpdate) => void): void {
 		const hostName = window.location.hostname + ":" + window.location.port;
-		this.subject = webSocket("ws:" + hostName + "/webSocket/" + voterName);
+		this.serverUpdate = null;
+		this.resyncRequested = false;
+		// The subprotocol tells the server that this client applies deltas; without it, the server sends a snapshot with every update
+		this.subject = webSocket({ url: "ws:" + hostName + "/webSocket/" + voterName, protocol: "planpoker.json.v1" });
 		this.subject.subscribe(
-			(serverUpdate) => {
-				receiveServerUpdateCallback(serverUpdate);
+			(rawServerUpdate) => {
+				// A response to a request sent on the WebSocket
+				if (rawServerUpdate.requestId !== undefined) {
+					const complete = this.pendingRequests.get(rawServerUpdate.requestId);
+					this.pendingRequests.delete(rawServerUpdate.requestId);
+					if (complete) {
+						complete(rawServerUpdate);
+					}
+
+					return;
+				}
+
+				const serverUpdate: ServerUpdate = this.applyServerUpdate(voterName, new ServerUpdate(rawServerUpdate));
+				if (serverUpdate) {
+					receiveServerUpdateCallback(serverUpdate);
+				}
 			},
 			(err) => {
+				this.subject = null;
+				this.failPendingRequests();
+
 				if (typeof err === "object" && err.constructor === CloseEvent) {
 					return;
 				}
@@ -67,7 +130,44 @@ export class ServerCommunications {
 			},
 			() => {
 				this.subject = null;
+				this.failPendingRequests();
 			}
 		);
 	}
-}
\ No newline at end of file
+
+	/*
+	 * Apply a snapshot or delta to the current state.
+	 * Returns the new state, or null if there is nothing to show: an old delta, or a gap in the sequence, in which case a snapshot is requested.
+	 */
+	private applyServerUpdate(voterName: string, serverUpdate: ServerUpdate): ServerUpdate {
+		if (serverUpdate.snapshot) {
+			// A snapshot sent on request carries no events
+			if (serverUpdate.messages.length === 0 && this.serverUpdate !== null) {
+				serverUpdate.message = this.serverUpdate.message;
+			}
+
+			this.resyncRequested = false;
+			this.serverUpdate = serverUpdate;
+
+			return serverUpdate;
+		}
+
+		if (this.serverUpdate !== null && serverUpdate.sequence <= this.serverUpdate.sequence) {
+			return null;
+		}
+
+		if (this.serverUpdate === null || serverUpdate.sequence !== this.serverUpdate.sequence + 1) {
+			// Deltas are useless until the snapshot arrives
+			if (!this.resyncRequested) {
+				this.resyncRequested = true;
+				this.sendRequest(new ClientRequest(ClientRequest.RESYNC, voterName));
+			}
+
+			return null;
+		}
+
+		this.serverUpdate = serverUpdate.applyTo(this.serverUpdate);
+
+		return this.serverUpdate;
+	}
+}
@@ -9,6 +9,7 @@ export class ClientRequest {
   public static readonly REFRESH = 'refresh';
   public static readonly START_VOTE = 'startVote';
   public static readonly VOTE = 'vote';
+  public static readonly RESYNC = 'resync';
 
   private static readonly requestTypes = [
     ClientRequest.DROP_VOTER,
@@ -18,7 +19,8 @@ export class ClientRequest {
     ClientRequest.LEAVE,
     ClientRequest.REFRESH,
     ClientRequest.START_VOTE,
-    ClientRequest.VOTE
+    ClientRequest.VOTE,
+    ClientRequest.RESYNC
   ];
 
   requestType: string;
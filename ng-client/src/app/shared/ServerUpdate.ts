@@ -1,13 +1,20 @@
 import { Voter } from "./Voter";
 
 export class ServerUpdate {
+	// Deltas are numbered consecutively; a snapshot carries the number of the latest delta it includes
+	sequence: number = -1;
+	// true if voters is the whole room; otherwise, only the voters added or changed since the previous update
+	snapshot: boolean = false;
 	message: string = "Received an invalid server update!";
+	// Every event since the previous update, oldest first; the last is the message
+	messages: string[] = [];
 	// 0: no vote (waiting to join, waiting for first vote, previous vote canceled, refresh selected)
 	// 1: vote in progress (multiple updates as each voter votes)
 	// 2: vote complete (previous voting session was closed and results are provided)
 	voteStatus: number = 0;
 	averageVote: number = -1;
 	voters: Voter[] = [];
+	removedVoters: string[] = [];
 
 	/*
 	 * Invalid/missing values are ignored; defaults reflect proper error values
@@ -17,10 +24,27 @@ export class ServerUpdate {
 			return;
 		}
 
+		if (typeof rawServerUpdate.sequence === "number" && rawServerUpdate.sequence >= 0) {
+			this.sequence = rawServerUpdate.sequence;
+		}
+
+		if (typeof rawServerUpdate.snapshot === "boolean") {
+			this.snapshot = rawServerUpdate.snapshot;
+		}
+
 		if (typeof rawServerUpdate.message === "string" && rawServerUpdate.message.length > 0) {
 			this.message = rawServerUpdate.message;
 		}
 
+		// Cannot check typeof array
+		if (rawServerUpdate.messages && rawServerUpdate.messages.length) {
+			for (let i = 0; i < rawServerUpdate.messages.length; i++) {
+				if (typeof rawServerUpdate.messages[i] === "string") {
+					this.messages.push(rawServerUpdate.messages[i]);
+				}
+			}
+		}
+
 
 		if (typeof rawServerUpdate.voteStatus === "number" && rawServerUpdate.voteStatus >= 0 && rawServerUpdate.voteStatus <= 2) {
 			this.voteStatus = rawServerUpdate.voteStatus;
@@ -39,5 +63,47 @@ export class ServerUpdate {
 				this.voters.push(voter);
 			}
 		}
+
+		// Cannot check typeof array
+		if (rawServerUpdate.removedVoters && rawServerUpdate.removedVoters.length) {
+			for (let i = 0; i < rawServerUpdate.removedVoters.length; i++) {
+				if (typeof rawServerUpdate.removedVoters[i] === "string") {
+					this.removedVoters.push(rawServerUpdate.removedVoters[i]);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Return the state after applying this delta to the previous state, which must be the update numbered just before this one
+	 */
+	applyTo(previous: ServerUpdate): ServerUpdate {
+		const applied: ServerUpdate = new ServerUpdate(null);
+		applied.sequence = this.sequence;
+		applied.snapshot = true;
+		applied.message = this.messages.length > 0 ? this.message : previous.message;
+		applied.messages = this.messages;
+		applied.voteStatus = this.voteStatus;
+		applied.averageVote = this.averageVote;
+
+		const changedNames: string[] = this.removedVoters.slice();
+		for (let i = 0; i < this.voters.length; i++) {
+			changedNames.push(this.voters[i].name);
+		}
+
+		for (let i = 0; i < previous.voters.length; i++) {
+			if (changedNames.indexOf(previous.voters[i].name) === -1) {
+				applied.voters.push(previous.voters[i]);
+			}
+		}
+
+		for (let i = 0; i < this.voters.length; i++) {
+			applied.voters.push(this.voters[i]);
+		}
+
+		// Keep the server's order, by name
+		applied.voters.sort((a: Voter, b: Voter) => a.name < b.name ? -1 : a.name > b.name ? 1 : 0);
+
+		return applied;
 	}
-}
\ No newline at end of file
+}
@@ -1,8 +1,13 @@
 package com.fusionalliance.internal.planpokerserver;
 
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fusionalliance.internal.planpokerserver.utility.Configuration;
 import com.fusionalliance.internal.planpokerserver.vo.ClientRequest;
 import com.fusionalliance.internal.planpokerserver.vo.ServerResponse;
 import com.fusionalliance.internal.planpokerserver.vo.ServerUpdate;
@@ -14,6 +19,7 @@ public class Application implements //
 		CommunicationsServer.VoterDroppedListener //
 {
 	private static final Logger LOG = LoggerFactory.getLogger(Application.class);
+	private static final String SERVER_BUSY = "The server is busy; please try again.";
 
 	public static void main(String[] args) {
 		new Application().run();
@@ -21,15 +27,21 @@ public class Application implements //
 
 	private final Model model;
 	private final CommunicationsServer communicationsServer;
+	/** The model is single-writer: every model call runs on this actor's thread, fed by a lock-free queue */
+	private final ModelActor modelActor = new ModelActor("model", Configuration.getModelQueueCapacity(), Configuration.getModelBatchSize(),
+			ModelActor.WaitStrategy.parse(Configuration.getModelWaitStrategy()));
+	private final int updateCoalesceMillis = Configuration.getUpdateCoalesceMillis();
 
 	public Application() {
-		model = new Model(this::handleUpdateGenerated);
+		model = new Model(this);
 		communicationsServer = new CommunicationsServer(this::handleRequestReceived, this::handleVoterConnected, this::handleVoterDropped);
 	}
 
 	public void run() {
 		LOG.info("The server is starting.");
 
+		modelActor.start();
+
 		try {
 			communicationsServer.run();
 		} catch (final Exception e) {
@@ -47,12 +59,60 @@ public class Application implements //
 	}
 
 	@Override
-	public void handleUpdateGenerated(final ServerUpdate serverUpdateParm) {
-		communicationsServer.broadcastServerUpdate(serverUpdateParm);
+	public void handleUpdateGenerated(final ServerUpdate serverUpdateParm, final Set<String> skippedVoterNamesParm) {
+		communicationsServer.broadcastServerUpdate(serverUpdateParm, skippedVoterNamesParm);
+	}
+
+	@Override
+	public void handleSnapshotGenerated(final ServerUpdate snapshotParm, final Set<String> voterNamesParm) {
+		communicationsServer.sendServerUpdate(snapshotParm, voterNamesParm);
+	}
+
+	/**
+	 * Flush the model's server update once the batch is over. Runs on the model thread, so with no window the flush runs after the batch of
+	 * requests being taken from the queue, and a burst of requests is broadcast once.
+	 */
+	@Override
+	public void handleUpdatePending() {
+		if (updateCoalesceMillis == 0) {
+			modelActor.execute(model::flushServerUpdate);
+		} else {
+			modelActor.schedule(model::flushServerUpdate, updateCoalesceMillis);
+		}
+	}
+
+	@Override
+	public void handleRequestReceived(final ClientRequest clientRequestParm, final Consumer<ServerResponse> responseCallbackParm) {
+		try {
+			modelActor.execute(() -> responseCallbackParm.accept(processRequest(clientRequestParm)));
+		} catch (final RejectedExecutionException e) {
+			// The model is too far behind; shed the request rather than stall the reactor
+			LOG.warn("Rejecting request from " + clientRequestParm.getVoterName() + ": " + e.getMessage());
+
+			responseCallbackParm.accept(new ServerResponse(SERVER_BUSY));
+		}
+	}
+
+	@Override
+	public void handleVoterConnected(final String voterNameParm, final boolean deltaUpdatesParm) {
+		modelActor.executeControl(() -> model.doConnected(voterNameParm, deltaUpdatesParm));
 	}
 
 	@Override
-	public ServerResponse handleRequestReceived(final ClientRequest clientRequestParm) {
+	public void handleVoterDropped(String voterNameParm) {
+		modelActor.executeControl(() -> {
+			communicationsServer.removeVoterWebSocket(voterNameParm);
+			model.removeVoter(voterNameParm);
+		});
+	}
+
+	/**
+	 * Apply a client request to the model. Runs on the model thread.
+	 * 
+	 * @param clientRequestParm required
+	 * @return not null
+	 */
+	private ServerResponse processRequest(final ClientRequest clientRequestParm) {
 		final ServerResponse serverResponse;
 		final String voterName = clientRequestParm.getVoterName();
 
@@ -98,6 +158,10 @@ public class Application implements //
 				communicationsServer.removeVoterWebSocket(voterName);
 			}
 
+			break;
+		case RESYNC:
+			serverResponse = model.doResync(voterName);
+
 			break;
 		default:
 			// This shouldn't happen
@@ -107,15 +171,4 @@ public class Application implements //
 		return serverResponse;
 	}
 
-	@Override
-	public void handleVoterConnected(final String voterNameParm) {
-		model.doConnected(voterNameParm);
-	}
-
-	@Override
-	public void handleVoterDropped(String voterNameParm) {
-		communicationsServer.removeVoterWebSocket(voterNameParm);
-		model.removeVoter(voterNameParm);
-	}
-
 }
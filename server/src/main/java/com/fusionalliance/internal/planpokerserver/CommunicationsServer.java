@@ -2,91 +2,153 @@ package com.fusionalliance.internal.planpokerserver;
 
 import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
 
-import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.net.StandardSocketOptions;
-import java.net.URL;
 import java.nio.ByteBuffer;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.EventListener;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fusionalliance.internal.planpokerserver.io.BroadcastMessage;
+import com.fusionalliance.internal.planpokerserver.io.BufferPool;
+import com.fusionalliance.internal.planpokerserver.io.ClientConnection;
 import com.fusionalliance.internal.planpokerserver.io.HttpHeader;
 import com.fusionalliance.internal.planpokerserver.io.HttpRequest;
 import com.fusionalliance.internal.planpokerserver.io.HttpRequestMethods;
+import com.fusionalliance.internal.planpokerserver.io.HttpResponseEncoder;
 import com.fusionalliance.internal.planpokerserver.io.HttpUtility;
-import com.fusionalliance.internal.planpokerserver.io.SocketChannelUtility;
+import com.fusionalliance.internal.planpokerserver.io.JsonWriter;
+import com.fusionalliance.internal.planpokerserver.io.PerMessageDeflate;
+import com.fusionalliance.internal.planpokerserver.io.PooledBuffer;
+import com.fusionalliance.internal.planpokerserver.io.Reactor;
+import com.fusionalliance.internal.planpokerserver.io.StaticAsset;
+import com.fusionalliance.internal.planpokerserver.io.StaticAssetCache;
 import com.fusionalliance.internal.planpokerserver.io.WebSocketFrame;
 import com.fusionalliance.internal.planpokerserver.io.WebSocketOpCode;
 import com.fusionalliance.internal.planpokerserver.io.WebSocketUtility;
 import com.fusionalliance.internal.planpokerserver.utility.CheckCondition;
+import com.fusionalliance.internal.planpokerserver.utility.CheckCondition.ConditionNotMetException;
 import com.fusionalliance.internal.planpokerserver.utility.CommException;
+import com.fusionalliance.internal.planpokerserver.utility.Configuration;
 import com.fusionalliance.internal.planpokerserver.utility.InternalException;
 import com.fusionalliance.internal.planpokerserver.utility.LoggerUtility;
+import com.fusionalliance.internal.planpokerserver.vo.BinaryServerUpdate;
 import com.fusionalliance.internal.planpokerserver.vo.ClientRequest;
 import com.fusionalliance.internal.planpokerserver.vo.ServerResponse;
 import com.fusionalliance.internal.planpokerserver.vo.ServerUpdate;
 import com.google.common.collect.ImmutableList;
-import com.google.gson.Gson;
 
-public class CommunicationsServer {
+public class CommunicationsServer implements Reactor.ConnectionListener {
 	private static final Logger LOG = LoggerFactory.getLogger(CommunicationsServer.class);
 
-	private static final String KEEP_ALIVE = "Keep alive";
+	private static final byte[] KEEP_ALIVE = "Keep alive".getBytes(StandardCharsets.UTF_8);
+	/** The classpath directory holding the Angular app */
+	private static final String DIST_ROOT = "/dist";
 	private static final List<HttpHeader> ERROR_HEADERS = ImmutableList.of( //
 			new HttpHeader("Content-Type", "text/plain; charset=utf-8") //
 	);
-	private static final Gson GSON = new Gson();
+	private static final HttpResponseEncoder NOT_FOUND_RESPONSE = new HttpResponseEncoder("HTTP/1.1 404 Not Found", ERROR_HEADERS);
+	private static final HttpResponseEncoder BAD_REQUEST_RESPONSE = new HttpResponseEncoder("HTTP/1.1 400 Bad Request", ERROR_HEADERS);
+	private static final HttpResponseEncoder METHOD_NOT_ALLOWED_RESPONSE = new HttpResponseEncoder("HTTP/1.1 405 Method Not Allowed",
+			ImmutableList.of(new HttpHeader("Allow", "GET, POST")));
+	private static final HttpResponseEncoder OK_RESPONSE = new HttpResponseEncoder("HTTP/1.1 200 OK", ImmutableList.of( //
+			new HttpHeader("Content-Type", HttpUtility.CONTENT_TYPE_MAP.get("json")) //
+	));
+	private static final ByteBuffer BODY_MISSING_BODY = ByteBuffer.wrap("400 Bad Request: Body content is missing.".getBytes(StandardCharsets.UTF_8))
+			.asReadOnlyBuffer();
+	/** The body of every successful POST response, encoded once */
+	private static final ByteBuffer SUCCESS_BODY = encodeServerResponse(new ServerResponse());
+	/** The Sec-WebSocket-Protocol value that selects JSON server updates; see {@link BinaryServerUpdate#PROTOCOL} */
+	private static final String JSON_PROTOCOL = "planpoker.json.v1";
 
 	private final ClientRequestListener clientRequestListener;
 	private final VoterConnectedListener voterConnectedListener;
 	private final VoterDroppedListener voterDroppedListener;
-	private final Selector selector;
-	private final Map<String, SocketChannel> webSocketByVoterName = new HashMap<>();
+	private final ServerSocketChannel serverSocket;
+	private final Reactor[] reactors;
+	/** The Angular app, loaded once at startup */
+	private final StaticAssetCache staticAssetCache;
+	private final Map<String, ClientConnection> webSocketByVoterName = new ConcurrentHashMap<>();
+	private final long heartbeatIntervalMillis = Configuration.getHeartbeatIntervalMillis();
+	private final int heartbeatMaxMissed = Configuration.getHeartbeatMaxMissed();
+	private final int webSocketMaxMessageLength = Configuration.getWebSocketMaxMessageLength();
+	private final int webSocketFragmentLength = Configuration.getWebSocketFragmentLength();
+	private final int slowConsumerMillis = Configuration.getSlowConsumerMillis();
+	private final int httpIdleTimeoutMillis = Configuration.getHttpIdleTimeoutMillis();
+	private final int httpMaxRequestsPerConnection = Configuration.getHttpMaxRequestsPerConnection();
+	/** The JSON length of the last server update, a guess at the next; used only on the model thread */
+	private int lastServerUpdateLength = 1024;
 
 	/** The next WebSocket connect request must specify this voter name */
-	private Set<String> connectPendingVoters = new HashSet<>();
+	private Set<String> connectPendingVoters = ConcurrentHashMap.newKeySet();
 
+	/**
+	 * Constructor using the configured port and reactor count. See {@link Configuration}.
+	 */
 	public CommunicationsServer(
 			final ClientRequestListener clientRequestListenerParm, //
 			final VoterConnectedListener voterConnectedListenerParm, //
 			final VoterDroppedListener voterDroppedListenerParm) {
+		this(clientRequestListenerParm, voterConnectedListenerParm, voterDroppedListenerParm, Configuration.getPort(),
+				Configuration.getReactorCount());
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param clientRequestListenerParm  required
+	 * @param voterConnectedListenerParm required
+	 * @param voterDroppedListenerParm   required
+	 * @param portParm                   0 selects an ephemeral port
+	 * @param reactorCountParm           the number of selector threads, at least 1
+	 */
+	public CommunicationsServer(
+			final ClientRequestListener clientRequestListenerParm, //
+			final VoterConnectedListener voterConnectedListenerParm, //
+			final VoterDroppedListener voterDroppedListenerParm, //
+			final int portParm, //
+			final int reactorCountParm) {
 		check(clientRequestListenerParm != null, "The ClientRequestListner may not be null.");
 		check(voterConnectedListenerParm != null, "The VoterConnectedListener may not be null.");
 		check(voterDroppedListenerParm != null, "The VoterDroppedListener may not be null.");
+		check(reactorCountParm > 0, "There must be at least one reactor.");
 
 		clientRequestListener = clientRequestListenerParm;
 		voterConnectedListener = voterConnectedListenerParm;
 		voterDroppedListener = voterDroppedListenerParm;
 
-		try {
-			selector = Selector.open();
-		} catch (final Exception e) {
-			LoggerUtility.logIssueWithStackTrace(LOG, "Failed to open selector.", false, e);
+		final String assetDirectory = Configuration.getAssetDirectory();
+		if (assetDirectory == null) {
+			staticAssetCache = new StaticAssetCache(DIST_ROOT);
+		} else {
+			staticAssetCache = new StaticAssetCache(Paths.get(assetDirectory));
+		}
 
-			throw new InternalException();
+		reactors = new Reactor[reactorCountParm];
+		for (int i = 0; i < reactorCountParm; i++) {
+			reactors[i] = new Reactor("reactor-" + i, this);
 		}
 
 		try {
-			final ServerSocketChannel serverSocket = ServerSocketChannel.open();
-			serverSocket.configureBlocking(false);
-			serverSocket.bind(new InetSocketAddress(40080));
-			serverSocket.register(selector, SelectionKey.OP_ACCEPT);
+			// The acceptor thread blocks on accept; only the reactors use selectors
+			serverSocket = ServerSocketChannel.open();
+			serverSocket.bind(new InetSocketAddress(portParm));
 		} catch (final Exception e) {
 			LoggerUtility.logIssueWithStackTrace(LOG, "Failed to create server socket.", false, e);
 
@@ -94,66 +156,202 @@ public class CommunicationsServer {
 		}
 	}
 
+	/**
+	 * Start the reactors, then accept connections on the calling thread, handing each to the next reactor in turn. Returns after
+	 * {@link #shutdown()}.
+	 */
 	public void run() {
-		try {
-			int keysUpdated = 0;
-			Iterator<SelectionKey> selectedKeyIterator = null;
-			SelectionKey key = null;
+		LOG.info("Accepting connections on port " + getPort() + " with reactors: " + reactors.length);
+
+		for (Reactor reactor : reactors) {
+			reactor.start();
+		}
 
+		int nextReactor = 0;
+
+		try {
 			while (true) {
-				keysUpdated = selector.select();
+				final SocketChannel socket = serverSocket.accept();
 
-				if (keysUpdated == 0) {
+				if (!configureAcceptedSocket(socket)) {
 					continue;
 				}
 
-				selectedKeyIterator = selector.selectedKeys().iterator();
-
-				while (selectedKeyIterator.hasNext()) {
-					key = selectedKeyIterator.next();
-					selectedKeyIterator.remove();
+				reactors[nextReactor].register(socket);
 
-					if (key.isAcceptable()) {
-						handleAccept((ServerSocketChannel) key.channel());
-					} else if (key.isReadable()) {
-						handleRead(key);
-					} else {
-						LOG.warn("Unexpected key operation: " + key.readyOps());
-					}
-
-					key = null;
+				nextReactor++;
+				if (nextReactor == reactors.length) {
+					nextReactor = 0;
 				}
-
-				selectedKeyIterator = null;
 			}
+		} catch (final ClosedChannelException cce) {
+			// Shut down
 		} catch (final Exception e) {
-			LoggerUtility.logIssueWithStackTrace(LOG, "Fatal error in selector loop!", false, e);
+			LoggerUtility.logIssueWithStackTrace(LOG, "Fatal error in acceptor loop!", false, e);
 		} finally {
-			// Add close sockets logic here
+			shutdown();
+		}
+	}
+
+	/**
+	 * Stop accepting connections and stop the reactors, closing their connections.
+	 */
+	public void shutdown() {
+		try {
+			serverSocket.close();
+		} catch (final Exception e) {
+			// Do nothing
+		}
+
+		for (Reactor reactor : reactors) {
+			reactor.shutdown();
+		}
+
+		staticAssetCache.close();
+	}
+
+	/**
+	 * Return the port the server is bound to.
+	 * 
+	 * @return
+	 */
+	public int getPort() {
+		return serverSocket.socket().getLocalPort();
+	}
+
+	/**
+	 * Broadcast the server update to all connected voters. This never waits on a socket: each WebSocket is handed the one shared message, which
+	 * replaces any update it has not yet started to write, and its reactor writes it. A WebSocket whose previous update has been waiting too long
+	 * is evicted.
+	 * <p>
+	 * A client that does not apply deltas is never sent one; see {@link ClientConnection#isDeltaUpdates()}.
+	 * 
+	 * @param serverUpdateParm      required
+	 * @param skippedVoterNamesParm required, may be empty; these voters are not sent the update
+	 */
+	public void broadcastServerUpdate(final ServerUpdate serverUpdateParm, final Set<String> skippedVoterNamesParm) {
+		check(serverUpdateParm != null, "The server update may not be null.");
+		check(skippedVoterNamesParm != null, "The skipped voter names may not be null.");
+
+		final List<Entry<String, ClientConnection>> recipients = new ArrayList<>(webSocketByVoterName.size());
+		for (Entry<String, ClientConnection> webSocketByVoterNameEntry : webSocketByVoterName.entrySet()) {
+			if (!skippedVoterNamesParm.contains(webSocketByVoterNameEntry.getKey()) && webSocketByVoterNameEntry.getValue().isDeltaUpdates()) {
+				recipients.add(webSocketByVoterNameEntry);
+			}
 		}
+
+		sendToWebSockets(createMessage(serverUpdateParm, recipients, true), recipients);
 	}
 
 	/**
-	 * Broadcast the server update to all connected voters.
+	 * Send the server update to some connected voters, such as a snapshot to voters that just connected. Unlike a broadcast delta, the update is
+	 * never replaced by a later one before it is written to a client that applies deltas, since those would have no state to apply to. A client
+	 * that does not apply deltas is sent only snapshots, so it may skip to the latest.
 	 * 
 	 * @param serverUpdateParm required
+	 * @param voterNamesParm   required; voters without a WebSocket are ignored
 	 */
-	public void broadcastServerUpdate(final ServerUpdate serverUpdateParm) {
+	public void sendServerUpdate(final ServerUpdate serverUpdateParm, final Set<String> voterNamesParm) {
 		check(serverUpdateParm != null, "The server update may not be null.");
+		check(voterNamesParm != null, "The voter names may not be null.");
 
-		final String serverUpdateJson = GSON.toJson(serverUpdateParm);
-		final WebSocketFrame webSocketFrame = new WebSocketFrame(true, WebSocketOpCode.TEXT, false,
-				serverUpdateJson.getBytes(StandardCharsets.UTF_8));
+		final List<Entry<String, ClientConnection>> deltaRecipients = new ArrayList<>(voterNamesParm.size());
+		final List<Entry<String, ClientConnection>> snapshotOnlyRecipients = new ArrayList<>();
+		for (String voterName : voterNamesParm) {
+			final ClientConnection connection = webSocketByVoterName.get(voterName);
 
-		// Keep track of voters whose Web sockets failed for later removal
-		final Set<String> failedVoterNames = new HashSet<>();
+			if (connection == null) {
+				continue;
+			}
+
+			if (connection.isDeltaUpdates()) {
+				deltaRecipients.add(new SimpleImmutableEntry<>(voterName, connection));
+			} else {
+				snapshotOnlyRecipients.add(new SimpleImmutableEntry<>(voterName, connection));
+			}
+		}
+
+		if (!deltaRecipients.isEmpty()) {
+			sendToWebSockets(createMessage(serverUpdateParm, deltaRecipients, false), deltaRecipients);
+		}
+
+		if (!snapshotOnlyRecipients.isEmpty()) {
+			sendToWebSockets(createMessage(serverUpdateParm, snapshotOnlyRecipients, true), snapshotOnlyRecipients);
+		}
+	}
 
-		for (Entry<String, SocketChannel> webSocketByVoterNameEntry : webSocketByVoterName.entrySet()) {
+	/**
+	 * Return the server update as a message, in only the forms the recipients need: JSON text, binary, or both.
+	 * 
+	 * @param serverUpdateParm required
+	 * @param recipientsParm   required
+	 * @param replaceableParm  false if the message may not be replaced by a later one before it is written
+	 * @return
+	 */
+	private BroadcastMessage createMessage(final ServerUpdate serverUpdateParm, final List<Entry<String, ClientConnection>> recipientsParm,
+			final boolean replaceableParm) {
+		boolean textNeeded = false;
+		boolean binaryNeeded = false;
+		for (Entry<String, ClientConnection> recipient : recipientsParm) {
+			if (recipient.getValue().isBinaryUpdates()) {
+				binaryNeeded = true;
+			} else {
+				textNeeded = true;
+			}
+		}
+
+		// With no recipients, the message is released unused; text is the cheaper form to build
+		PooledBuffer text = null;
+		if (textNeeded || !binaryNeeded) {
+			// Leave room for the frame header, so that the JSON becomes the frame without a copy
+			final JsonWriter jsonWriter = new JsonWriter(BufferPool.SHARED, WebSocketFrame.MAX_HEADER_LENGTH, lastServerUpdateLength);
 			try {
-				SocketChannelUtility.writeToSocket(webSocketFrame.getReadOnlyBuffer(), webSocketByVoterNameEntry.getValue());
-			} catch (final CommException ce) {
-				failedVoterNames.add(webSocketByVoterNameEntry.getKey());
+				serverUpdateParm.writeJson(jsonWriter);
+			} catch (final RuntimeException e) {
+				jsonWriter.discard();
+
+				throw e;
 			}
+
+			text = jsonWriter.finish();
+			lastServerUpdateLength = text.getBuffer().remaining();
+		}
+
+		final BinaryServerUpdate binaryServerUpdate = binaryNeeded ? new BinaryServerUpdate(serverUpdateParm) : null;
+
+		return new BroadcastMessage(text, binaryServerUpdate, webSocketFragmentLength, replaceableParm);
+	}
+
+	/**
+	 * Hand the message to each WebSocket, then drop the caller's reference. Voters whose WebSockets failed or fell behind are dropped.
+	 * 
+	 * @param messageParm    required; released before return
+	 * @param recipientsParm required, voter names and their WebSockets
+	 */
+	private void sendToWebSockets(final BroadcastMessage messageParm, final List<Entry<String, ClientConnection>> recipientsParm) {
+		// Keep track of voters whose Web sockets failed or fell behind, for later removal
+		final Set<String> failedVoterNames = new HashSet<>();
+
+		// Every connection holds its own reference to the one message
+		try {
+			for (Entry<String, ClientConnection> recipient : recipientsParm) {
+				try {
+					if (!recipient.getValue().sendLatest(messageParm.retain(), slowConsumerMillis)) {
+						LOG.warn("Evicting WebSocket that fell behind by millis: " + slowConsumerMillis + ", queued bytes: "
+								+ recipient.getValue().getOutboundBytes() + ", voter: " + recipient.getKey());
+
+						failedVoterNames.add(recipient.getKey());
+					}
+				} catch (final CommException ce) {
+					failedVoterNames.add(recipient.getKey());
+				}
+			}
+		} finally {
+			messageParm.release();
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("WebSocket compression ratio: " + String.format("%.2f", PerMessageDeflate.getCompressionRatio()));
 		}
 
 		for (String failedVoterName : failedVoterNames) {
@@ -176,148 +374,485 @@ public class CommunicationsServer {
 	 * @param voterNameParm
 	 */
 	public void removeVoterWebSocket(final String voterNameParm) {
-		final SocketChannel socket = webSocketByVoterName.remove(voterNameParm);
+		final ClientConnection connection = webSocketByVoterName.remove(voterNameParm);
 
-		final WebSocketFrame closeRequestFrame = new WebSocketFrame(true, WebSocketOpCode.CLOSE, false, new byte[0]);
-		try {
-			SocketChannelUtility.writeToSocket(closeRequestFrame.getReadOnlyBuffer(), socket);
-		} catch (final CommException ce) {
-			// Already logged, no further action
-			// We expect the write to fail if the voter is being removed cause of a bad socket
-		}
-		try {
-			socket.close();
-		} catch (final Exception e) {
-			// Do nothing
+		// Already removed
+		if (connection == null) {
+			return;
 		}
+
+		closeWebSocket(connection);
 	}
 
-	private void handleAccept(ServerSocketChannel serverSocketParm) {
-		try {
-			final SocketChannel socket = serverSocketParm.accept();
+	/**
+	 * Return the round trip time measured by the last answered heartbeat of a connected voter.
+	 * 
+	 * @param voterNameParm required
+	 * @return -1 if the voter is not connected or no heartbeat was answered yet
+	 */
+	public long getRoundTripMicros(final String voterNameParm) {
+		final ClientConnection connection = webSocketByVoterName.get(voterNameParm);
 
-			if (socket == null) {
-				System.out.println("Null on accept.");
+		if (connection == null || connection.getRoundTripNanos() == -1) {
+			return -1;
+		}
 
-				return;
-			}
+		return connection.getRoundTripNanos() / 1000;
+	}
+
+	/**
+	 * Return the compression ratio of the WebSocket messages sent with permessage-deflate: bytes before compression over bytes after.
+	 * 
+	 * @return 0 if nothing was compressed yet
+	 */
+	public double getWebSocketCompressionRatio() {
+		return PerMessageDeflate.getCompressionRatio();
+	}
+
+	/**
+	 * Prepare an accepted socket for its reactor.
+	 * 
+	 * @param socketParm
+	 * @return false if the socket could not be configured and was closed
+	 */
+	private boolean configureAcceptedSocket(final SocketChannel socketParm) {
+		try {
+			socketParm.configureBlocking(false);
+			socketParm.setOption(StandardSocketOptions.TCP_NODELAY, Boolean.TRUE);
 
-			socket.configureBlocking(false);
-			socket.setOption(StandardSocketOptions.TCP_NODELAY, Boolean.TRUE);
-			socket.register(selector, SelectionKey.OP_READ);
+			return true;
 		} catch (final Exception e) {
 			LoggerUtility.logIssueWithStackTrace(LOG, "Error accepting socket.", false, e);
+
+			closeSocket(socketParm);
+
+			return false;
 		}
 	}
 
-	private void handleRead(final SelectionKey keyParm) throws CommException {
-		try {
-			final SocketChannel socket = (SocketChannel) keyParm.channel();
+	/**
+	 * Start the idle timeout of a new connection.
+	 * 
+	 * @param connectionParm required
+	 */
+	@Override
+	public void handleRegistered(final ClientConnection connectionParm) {
+		scheduleIdleCheck(connectionParm, httpIdleTimeoutMillis);
+	}
 
+	/**
+	 * Read whatever bytes are ready and dispatch each complete request or WebSocket frame. Partial requests and frames remain in the connection's
+	 * parser or decoder until the selector reports more bytes.
+	 * 
+	 * @param connectionParm required
+	 */
+	@Override
+	public void handleReadable(final ClientConnection connectionParm) {
+		final SocketChannel socket = connectionParm.getSocket();
+
+		try {
 			if (!socket.isConnected()) {
 				return;
 			}
 
-			final ByteBuffer buffer = SocketChannelUtility.readUnblocked(socket);
+			if (connectionParm.isWebSocket()) {
+				handleWebSocketRead(connectionParm);
+
+				return;
+			}
 
 			// Socket closed during read
-			if (buffer == null) {
+			if (connectionParm.getRequestParser().read(socket) == -1) {
 				return;
 			}
 
-			buffer.flip();
-			final HttpRequest request = new HttpRequest(buffer);
-			buffer.clear();
+			connectionParm.recordHttpActivity(System.currentTimeMillis());
 
-			if (request.getMethod() == HttpRequestMethods.GET) {
-				// Standard GET request
-				if (!request.getHeaders().containsKey("Upgrade")) {
-					processGet(request.getPath(), socket);
+			processHttpRequests(connectionParm);
+		} catch (final CommException ce) {
+			// Already logged
+			handleFailed(connectionParm);
+		} catch (final Exception e) {
+			LoggerUtility.logIssueWithStackTrace(LOG, "Error while reading socket.", false, e);
 
-					return;
-				}
+			handleFailed(connectionParm);
+		}
+	}
 
-				// Handle upgrade to WebSocket request
-				processWebSocket(request, socket);
+	/**
+	 * Process each complete HTTP request received, in order. Pipelined requests are taken one at a time: a request waits while the model works on
+	 * the one before it, so that the responses go out in the order of the requests. A connection that is closing takes no more requests.
+	 * 
+	 * @param connectionParm required, not a WebSocket
+	 * @throws CommException
+	 */
+	private void processHttpRequests(final ClientConnection connectionParm) throws CommException {
+		HttpRequest request = null;
 
-				return;
-			}
+		while (!connectionParm.isHttpResponsePending() && !connectionParm.isClosing() && (request = nextHttpRequest(connectionParm)) != null) {
+			connectionParm.beginHttpRequest(selectConnectionHeader(request, connectionParm));
+
+			processRequest(request, connectionParm);
 
-			if (request.getMethod() == HttpRequestMethods.POST) {
-				processPost(request.getBody(), socket);
+			// Any bytes following the upgrade request are WebSocket frames
+			if (connectionParm.isWebSocket()) {
+				processWebSocketFrames(connectionParm);
 
 				return;
 			}
 
-			LOG.warn("Unknown request method: " + request.getMethod().name());
+			if (!connectionParm.isHttpResponsePending()) {
+				completeHttpResponse(connectionParm);
+			}
+		}
+	}
+
+	/**
+	 * Return the next complete HTTP request received. A malformed request is answered with 400 Bad Request, telling what is wrong, and the
+	 * connection closes, since where the next request starts is unknown.
+	 * 
+	 * @param connectionParm required
+	 * @return null if no complete request is available, or the request was malformed
+	 * @throws CommException
+	 */
+	private HttpRequest nextHttpRequest(final ClientConnection connectionParm) throws CommException {
+		try {
+			return connectionParm.getRequestParser().nextRequest();
+		} catch (final ConditionNotMetException e) {
+			LOG.warn("Malformed request: " + e.getMessage());
+
+			connectionParm.beginHttpRequest("close");
+			BAD_REQUEST_RESPONSE.write(("400 Bad Request: " + e.getMessage()).getBytes(StandardCharsets.UTF_8), connectionParm);
+			connectionParm.closeAfterFlush();
+
+			return null;
+		}
+	}
+
+	/**
+	 * Return the Connection header for the response to a request: close if the client asked for it or the connection reached its request limit;
+	 * keep-alive for an HTTP/1.0 client that asked to keep the connection; otherwise none, as HTTP/1.1 keeps connections by default. An upgrade
+	 * is never closed.
+	 * 
+	 * @param requestParm    required
+	 * @param connectionParm required
+	 * @return null if the response needs no Connection header
+	 */
+	private String selectConnectionHeader(final HttpRequest requestParm, final ClientConnection connectionParm) {
+		if (requestParm.getHeader("Upgrade") != null) {
+			return null;
+		}
+
+		if (!requestParm.isKeepAlive() || connectionParm.getHttpRequestCount() + 1 >= httpMaxRequestsPerConnection) {
+			return "close";
+		}
+
+		return "HTTP/1.0".equals(requestParm.getVersion()) ? "keep-alive" : null;
+	}
+
+	/**
+	 * Finish with the current HTTP request once its response is queued: the connection closes after the response is written if the response said
+	 * so, and otherwise waits for the next request.
+	 * 
+	 * @param connectionParm required
+	 */
+	private void completeHttpResponse(final ClientConnection connectionParm) {
+		connectionParm.recordHttpActivity(System.currentTimeMillis());
+
+		if ("close".equals(connectionParm.getHttpConnectionHeader())) {
+			connectionParm.closeAfterFlush();
+		}
+	}
+
+	/**
+	 * Finish with an HTTP request whose response the model thread queued, then take the requests received meanwhile. Invoked on the reactor thread.
+	 * 
+	 * @param connectionParm required
+	 */
+	private void resumeHttpRequests(final ClientConnection connectionParm) {
+		connectionParm.setHttpResponsePending(false);
+		completeHttpResponse(connectionParm);
+
+		try {
+			processHttpRequests(connectionParm);
+		} catch (final CommException ce) {
+			// Already logged
+			handleFailed(connectionParm);
 		} catch (final Exception e) {
-			LoggerUtility.logIssueWithStackTrace(LOG, "Error while reading socket.", false, e);
+			LoggerUtility.logIssueWithStackTrace(LOG, "Error while processing pipelined requests.", false, e);
+
+			handleFailed(connectionParm);
 		}
 	}
 
-	private void processGet(final String pathParm, final SocketChannel socketParm) {
-		final URL pathUrl = getClass().getResource("/dist" + pathParm);
+	/**
+	 * Schedule the next idle check on the connection's reactor. Invoked on the reactor thread.
+	 * 
+	 * @param connectionParm  required
+	 * @param delayMillisParm
+	 */
+	private void scheduleIdleCheck(final ClientConnection connectionParm, final long delayMillisParm) {
+		connectionParm.getReactor().schedule(() -> checkIdle(connectionParm), delayMillisParm);
+	}
 
-		// Resource not found
-		if (pathUrl == null) {
-			LOG.warn("Unknown resource requested: " + pathParm);
-			try {
-				HttpUtility.writeToSocket("HTTP/1.1 404 Not Found", ERROR_HEADERS, "404 Not Found: " + pathParm, socketParm);
-			} catch (final Exception e) {
-				LoggerUtility.logIssueWithStackTrace(LOG, "Failed to send 404 response to client.", false, e);
+	/**
+	 * Close an HTTP connection that has neither received bytes nor completed a response for the idle timeout, including one stalled partway through
+	 * a request; otherwise, check again when the timeout could next expire. WebSockets rely on their heartbeat instead. A connection closed
+	 * meanwhile simply stops its timer here.
+	 * 
+	 * @param connectionParm required
+	 */
+	private void checkIdle(final ClientConnection connectionParm) {
+		if (!connectionParm.getSocket().isOpen() || connectionParm.isWebSocket()) {
+			return;
+		}
+
+		// Waiting on the model is not idleness
+		if (connectionParm.isHttpResponsePending()) {
+			scheduleIdleCheck(connectionParm, httpIdleTimeoutMillis);
+
+			return;
+		}
+
+		final long idleMillis = System.currentTimeMillis() - connectionParm.getHttpLastActiveMillis();
+		if (idleMillis < httpIdleTimeoutMillis) {
+			scheduleIdleCheck(connectionParm, httpIdleTimeoutMillis - idleMillis);
+
+			return;
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Closing HTTP connection idle for millis: " + idleMillis + ", requests served: " + connectionParm.getHttpRequestCount());
+		}
+
+		connectionParm.closeAfterFlush();
+	}
+
+	/**
+	 * Read whatever bytes are ready on a WebSocket and process each complete frame. A closed socket drops the voter right away.
+	 * 
+	 * @param connectionParm required
+	 * @throws CommException
+	 */
+	private void handleWebSocketRead(final ClientConnection connectionParm) throws CommException {
+		if (connectionParm.getWebSocketDecoder().read(connectionParm.getSocket()) == -1) {
+			handleWebSocketClosed(connectionParm);
+
+			return;
+		}
+
+		processWebSocketFrames(connectionParm);
+	}
+
+	/**
+	 * Process each complete frame received on a WebSocket.
+	 * 
+	 * @param connectionParm required
+	 * @throws CommException
+	 */
+	private void processWebSocketFrames(final ClientConnection connectionParm) throws CommException {
+		WebSocketFrame frame = null;
+
+		while ((frame = connectionParm.getWebSocketDecoder().nextFrame()) != null) {
+			// RFC 6455: the server must close the connection on an unmasked client frame
+			check(frame.isMasked(), "WebSocket client frame is not masked.");
+
+			switch (frame.getOpCode()) {
+			case PING:
+				connectionParm.send(WebSocketFrame.encode(true, WebSocketOpCode.PONG, false, frame.getPayloadBuffer()));
+
+				break;
+			case PONG:
+				handlePong(frame, connectionParm);
+
+				break;
+			case CLOSE:
+				handleWebSocketClosed(connectionParm);
+
+				return;
+			default:
+				ByteBuffer message = connectionParm.getWebSocketDecoder().addToMessage(frame);
+
+				if (message != null && connectionParm.getWebSocketDecoder().isMessageCompressed()) {
+					message = connectionParm.getPerMessageDeflate().decompress(message, webSocketMaxMessageLength);
+				}
+
+				// Text or binary, a message from the client is a request, as JSON
+				if (message != null) {
+					processWebSocketRequest(message, connectionParm);
+				}
+
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Handle a PONG. The first PONG, answering the ping sent with the upgrade, completes the voter's connection; later PONGs answer heartbeats.
+	 * 
+	 * @param frameParm      required
+	 * @param connectionParm required
+	 */
+	private void handlePong(final WebSocketFrame frameParm, final ClientConnection connectionParm) {
+		final ByteBuffer payload = frameParm.getPayloadBuffer();
+		connectionParm.recordPong(payload, System.nanoTime());
+
+		final String voterName = connectionParm.getVoterName();
+
+		if (webSocketByVoterName.get(voterName) == connectionParm) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Heartbeat round trip micros for " + voterName + ": " + connectionParm.getRoundTripNanos() / 1000);
 			}
 
 			return;
 		}
 
-		final InputStream inputStream;
-		try {
-			inputStream = pathUrl.openStream();
-		} catch (final Exception e) {
-			LoggerUtility.logIssueWithStackTrace(LOG, "Unable to open input stream for resource: " + pathParm, true, e);
+		if (!payload.equals(ByteBuffer.wrap(KEEP_ALIVE))) {
+			LOG.warn("Unexpected PONG payload from: " + voterName);
+
+			return;
+		}
+
+		webSocketByVoterName.put(voterName, connectionParm);
+
+		voterConnectedListener.handleVoterConnected(voterName, connectionParm.isDeltaUpdates());
+	}
+
+	/**
+	 * Handle a WebSocket closed by the client, either with a CLOSE frame or by closing the socket. A connected voter is dropped; otherwise, the close
+	 * is acknowledged and the socket closed.
+	 * 
+	 * @param connectionParm required
+	 */
+	private void handleWebSocketClosed(final ClientConnection connectionParm) {
+		final String voterName = connectionParm.getVoterName();
+
+		// Dropping the voter removes the WebSocket, which answers the CLOSE and closes the socket
+		if (webSocketByVoterName.get(voterName) == connectionParm) {
+			voterDroppedListener.handleVoterDropped(voterName);
+
+			return;
+		}
+
+		closeWebSocket(connectionParm);
+	}
+
+	/**
+	 * Handle a failed connection. A connected voter is dropped; any other connection is closed.
+	 * 
+	 * @param connectionParm required
+	 */
+	@Override
+	public void handleFailed(final ClientConnection connectionParm) {
+		connectionParm.close();
 
+		final String voterName = connectionParm.getVoterName();
+		if (voterName != null && webSocketByVoterName.get(voterName) == connectionParm) {
+			voterDroppedListener.handleVoterDropped(voterName);
+		}
+	}
+
+	/**
+	 * Send a CLOSE frame, if the socket is still open, and close the socket once it is written.
+	 * 
+	 * @param connectionParm required
+	 */
+	private void closeWebSocket(final ClientConnection connectionParm) {
+		if (connectionParm.getSocket().isOpen()) {
 			try {
-				HttpUtility.writeToSocket("HTTP/1.1 500 Internal Error", ERROR_HEADERS, "500 Internal error processing: " + pathParm, socketParm);
-			} catch (final Exception e1) {
-				LoggerUtility.logIssueWithStackTrace(LOG, "Failed to send 500 response to client.", false, e1);
+				connectionParm.send(WebSocketFrame.encode(true, WebSocketOpCode.CLOSE, false, new byte[0]));
+			} catch (final CommException ce) {
+				// Already logged, no further action
+				// We expect the write to fail if the voter is being removed cause of a bad socket
 			}
+		}
+
+		connectionParm.closeAfterFlush();
+	}
+
+	/**
+	 * Dispatch a complete request.
+	 * 
+	 * @param requestParm    required
+	 * @param connectionParm required
+	 * @throws CommException
+	 */
+	private void processRequest(final HttpRequest requestParm, final ClientConnection connectionParm) throws CommException {
+		if (requestParm.getMethod() == HttpRequestMethods.GET) {
+			// Standard GET request
+			if (requestParm.getHeader("Upgrade") == null) {
+				processGet(requestParm, connectionParm);
+
+				return;
+			}
+
+			// Handle upgrade to WebSocket request
+			processWebSocket(requestParm, connectionParm);
 
 			return;
 		}
 
-		final int separator = pathParm.lastIndexOf('.');
-		final String extension;
-		if (separator == -1) {
-			extension = "";
-		} else {
-			extension = pathParm.substring(separator + 1);
-		}
-		final String contentType;
-		if (HttpUtility.CONTENT_TYPE_MAP.containsKey(extension)) {
-			contentType = HttpUtility.CONTENT_TYPE_MAP.get(extension);
-		} else {
-			contentType = HttpUtility.CONTENT_TYPE_MAP.get("");
+		if (requestParm.getMethod() == HttpRequestMethods.POST) {
+			processPost(requestParm.getBody(), connectionParm);
+
+			return;
 		}
 
+		LOG.warn("Unsupported request method: " + requestParm.getMethod().name());
+
+		METHOD_NOT_ALLOWED_RESPONSE.write(connectionParm);
+	}
+
+	/**
+	 * Close the socket, ignoring errors.
+	 * 
+	 * @param socketParm required
+	 */
+	private void closeSocket(final SocketChannel socketParm) {
 		try {
-			final List<HttpHeader> headers = ImmutableList.of(new HttpHeader("Content-Type", contentType));
-			HttpUtility.writeToSocket("HTTP/1.1 200 OK", headers, inputStream, socketParm);
+			socketParm.close();
 		} catch (final Exception e) {
-			LoggerUtility.logIssueWithStackTrace(LOG, "Failed to send resource: " + pathParm, true, e);
-		} finally {
+			// Do nothing
+		}
+	}
+
+	/**
+	 * Serve a static file from the cache, gzipped if the client accepts it. A client that already holds the current version gets a 304.
+	 * 
+	 * @param requestParm    required
+	 * @param connectionParm required
+	 */
+	private void processGet(final HttpRequest requestParm, final ClientConnection connectionParm) {
+		final String path = requestParm.getPath();
+		final StaticAsset asset = staticAssetCache.get(path);
+
+		// Resource not found
+		if (asset == null) {
+			LOG.warn("Unknown resource requested: " + path);
 			try {
-				inputStream.close();
+				NOT_FOUND_RESPONSE.write(("404 Not Found: " + path).getBytes(StandardCharsets.UTF_8), connectionParm);
 			} catch (final Exception e) {
-				// do nothing
+				LoggerUtility.logIssueWithStackTrace(LOG, "Failed to send 404 response to client.", false, e);
 			}
+
+			return;
 		}
-	}
 
-	private void processWebSocket(final HttpRequest requestParm, final SocketChannel socket) throws CommException {
-		// Stop handling read requests on the read selector
-		// WebSocket requests must be handled separately
-		socket.keyFor(selector).cancel();
+		try {
+			asset.send(connectionParm, HttpUtility.acceptsGzip(requestParm.getHeader("Accept-Encoding")), requestParm.getHeader("If-None-Match"));
+		} catch (final Exception e) {
+			LoggerUtility.logIssueWithStackTrace(LOG, "Failed to send resource: " + path, true, e);
+		}
+	}
 
+	/**
+	 * Upgrade the connection to a WebSocket. The connection stays on its reactor; the voter is connected once the client answers the initial PING.
+	 * 
+	 * @param requestParm    required
+	 * @param connectionParm required
+	 * @throws CommException
+	 */
+	private void processWebSocket(final HttpRequest requestParm, final ClientConnection connectionParm) throws CommException {
 		// Verify that the path is properly formed and that this upgrade was preceded by a join request
 		check(requestParm.getPathSteps().size() == 2, "Invalid WebSocket request path: " + requestParm.getPath());
 		check("webSocket".equals(requestParm.getPathSteps().get(0)),
@@ -327,17 +862,7 @@ public class CommunicationsServer {
 
 		connectPendingVoters.remove(voterName);
 
-		try {
-			socket.configureBlocking(true);
-			// We only read for ping/pong responses; expect them to come back quickly
-			socket.socket().setSoTimeout(500);
-		} catch (final Exception e) {
-			LoggerUtility.logIssueWithStackTrace(LOG, "Unable to configure WebSocket for blocking.", false, e);
-
-			throw new CommException();
-		}
-
-		final String secWebSocketKey = requestParm.getHeaders().get(WebSocketUtility.SEC_WEBSOCKET_KEY);
+		final String secWebSocketKey = requestParm.getHeader(WebSocketUtility.SEC_WEBSOCKET_KEY);
 		CheckCondition.check(StringUtils.isNotBlank(secWebSocketKey), "Sec-WebSocket-Key is missing.");
 
 		List<HttpHeader> headers = new ArrayList<>();
@@ -345,58 +870,77 @@ public class CommunicationsServer {
 		headers.add(new HttpHeader("Connection", "Upgrade"));
 		headers.add(new HttpHeader(WebSocketUtility.SEC_WEBSOCKET_ACCEPT, WebSocketUtility.calculateSecWebSocketAccept(secWebSocketKey)));
 
+		final PerMessageDeflate perMessageDeflate = PerMessageDeflate.negotiate(requestParm.getHeader(PerMessageDeflate.SEC_WEBSOCKET_EXTENSIONS));
+		if (perMessageDeflate != null) {
+			headers.add(new HttpHeader(PerMessageDeflate.SEC_WEBSOCKET_EXTENSIONS, perMessageDeflate.getResponseHeader()));
+		}
+
+		// Without a subprotocol, server updates are JSON snapshots, as they were before subprotocols were offered; clients built before deltas,
+		// such as an older bundle still cached by a browser, read every update as the whole room
+		final String protocol = WebSocketUtility.selectProtocol(requestParm.getHeader(WebSocketUtility.SEC_WEBSOCKET_PROTOCOL),
+				BinaryServerUpdate.PROTOCOL, JSON_PROTOCOL);
+		if (protocol != null) {
+			headers.add(new HttpHeader(WebSocketUtility.SEC_WEBSOCKET_PROTOCOL, protocol));
+		}
+
 		// Perform upgrade
-		HttpUtility.writeToSocket("HTTP/1.1 101 Switching Protocols", headers, new byte[0], socket);
+		HttpUtility.writeToSocket("HTTP/1.1 101 Switching Protocols", headers, new byte[0], connectionParm);
 
-		// Perform ping test
-		if (!performWebSocketPing(socket)) {
-			LoggerUtility.logIssueWithStackTrace(LOG, "WebSocket failed initial ping test.", false, null);
+		connectionParm.upgradeToWebSocket(voterName, webSocketMaxMessageLength, perMessageDeflate, BinaryServerUpdate.PROTOCOL.equals(protocol),
+				protocol != null);
 
-			throw new CommException();
-		}
+		// Verify that the client answers before announcing the voter; see handlePong()
+		connectionParm.send(WebSocketFrame.encode(true, WebSocketOpCode.PING, false, KEEP_ALIVE));
 
-		webSocketByVoterName.put(voterName, socket);
+		// A client that never answers is dropped by the heartbeat, the same as one that stops answering later
+		connectionParm.recordPingSent(0);
+		scheduleHeartbeat(connectionParm);
+	}
 
-		voterConnectedListener.handleVoterConnected(voterName);
+	/**
+	 * Schedule the next heartbeat on the connection's reactor. Invoked on the reactor thread.
+	 * 
+	 * @param connectionParm required, a WebSocket
+	 */
+	private void scheduleHeartbeat(final ClientConnection connectionParm) {
+		connectionParm.getReactor().schedule(() -> sendHeartbeat(connectionParm), heartbeatIntervalMillis);
 	}
 
 	/**
-	 * Perform a WebSocket ping/pong. Return true if successful.
+	 * Send a heartbeat PING carrying the send time, which the client echoes in its PONG. A connection that missed too many heartbeats is dropped
+	 * instead. A connection closed in the meantime simply stops its heartbeat here, rather than cancelling the timer from another thread.
 	 * 
-	 * @param socketParm required
-	 * @return
-	 * @throws CommException
+	 * @param connectionParm required, a WebSocket
 	 */
-	private boolean performWebSocketPing(final SocketChannel socketParm) {
-		check(socketParm != null, "The socket may not be null.");
+	private void sendHeartbeat(final ClientConnection connectionParm) {
+		if (!connectionParm.getSocket().isOpen()) {
+			return;
+		}
 
-		final String pingMessage = KEEP_ALIVE;
-		final WebSocketFrame writeFrame = new WebSocketFrame(true, WebSocketOpCode.PING, false, pingMessage.getBytes(StandardCharsets.UTF_8));
+		final String voterName = connectionParm.getVoterName();
 
-		try {
-			SocketChannelUtility.writeToSocket(writeFrame.getReadOnlyBuffer(), socketParm);
-		} catch (final Exception e) {
-			e.printStackTrace();
+		if (connectionParm.getMissedHeartbeats() >= heartbeatMaxMissed) {
+			LOG.warn("Dropping WebSocket after missed heartbeats: " + connectionParm.getMissedHeartbeats() + ", voter: " + voterName);
 
-			return false;
+			handleWebSocketClosed(connectionParm);
+
+			return;
 		}
 
-		// Receive Pong
-		final ByteBuffer readBuffer = ByteBuffer.allocate(100);
+		final long sentNanos = System.nanoTime();
+		final byte[] payload = ByteBuffer.allocate(Long.BYTES).putLong(sentNanos).array();
+
 		try {
-			socketParm.read(readBuffer);
-		} catch (final Exception e) {
-			e.printStackTrace();
+			connectionParm.send(WebSocketFrame.encode(true, WebSocketOpCode.PING, false, payload));
+		} catch (final CommException ce) {
+			// Already logged
+			handleFailed(connectionParm);
 
-			return false;
+			return;
 		}
 
-		readBuffer.flip();
-		final WebSocketFrame readFrame = new WebSocketFrame(readBuffer);
-
-		final String pingResponse = new String(readFrame.getPayload(), StandardCharsets.UTF_8);
-
-		return KEEP_ALIVE.equals(pingResponse);
+		connectionParm.recordPingSent(sentNanos);
+		scheduleHeartbeat(connectionParm);
 	}
 
 	/**
@@ -405,13 +949,13 @@ public class CommunicationsServer {
 	 * If a comm error occurs and the voter name is available, then remove the voter. However, this is only possible if the request is valid and the
 	 * error occurs when sending a response.
 	 * 
-	 * @param bodyParm
-	 * @param socketParm
+	 * @param bodyParm       the request body, read in place; null if missing
+	 * @param connectionParm
 	 */
-	private void processPost(String bodyParm, SocketChannel socketParm) {
-		if (StringUtils.isBlank(bodyParm)) {
+	private void processPost(ByteBuffer bodyParm, ClientConnection connectionParm) {
+		if (bodyParm == null || !bodyParm.hasRemaining()) {
 			try {
-				HttpUtility.writeToSocket("HTTP/1.1 400 Bad Request", ERROR_HEADERS, "400 Bad Request: Body content is missing.", socketParm);
+				BAD_REQUEST_RESPONSE.write(BODY_MISSING_BODY, connectionParm);
 			} catch (final Exception e) {
 				LoggerUtility.logIssueWithStackTrace(LOG, "Unable to write body content missing response.", false, e);
 				;
@@ -423,13 +967,13 @@ public class CommunicationsServer {
 		final ClientRequest clientRequest;
 
 		try {
-			clientRequest = GSON.fromJson(bodyParm, ClientRequest.class);
+			clientRequest = ClientRequest.readJson(bodyParm);
 		} catch (final Exception e) {
-			e.printStackTrace();
+			LOG.warn("Client request not recognized: " + e.getMessage());
 
 			try {
-				HttpUtility.writeToSocket("HTTP/1.1 400 Bad Request", ERROR_HEADERS, "400 Bad Request: Body content not recognized: " + bodyParm,
-						socketParm);
+				BAD_REQUEST_RESPONSE.write(("400 Bad Request: Body content not recognized: " + e.getMessage()).getBytes(StandardCharsets.UTF_8),
+						connectionParm);
 			} catch (final Exception e1) {
 				LoggerUtility.logIssueWithStackTrace(LOG, "Unable to write body content not recognized response.", false, e);
 				;
@@ -441,7 +985,7 @@ public class CommunicationsServer {
 		final String errorMessage = clientRequest.validate();
 		if (errorMessage != null) {
 			try {
-				HttpUtility.writeToSocket("HTTP/1.1 400 Bad Request", ERROR_HEADERS, "400 Bad Request: " + errorMessage, socketParm);
+				BAD_REQUEST_RESPONSE.write(("400 Bad Request: " + errorMessage).getBytes(StandardCharsets.UTF_8), connectionParm);
 			} catch (final Exception e) {
 				LoggerUtility.logIssueWithStackTrace(LOG, "Unable to write body content invalid response.", false, e);
 				;
@@ -450,20 +994,118 @@ public class CommunicationsServer {
 			return;
 		}
 
-		final ServerResponse clientResponse = clientRequestListener.handleRequestReceived(clientRequest);
-
-		final String clientResponseJson = GSON.toJson(clientResponse);
+		// The response is written when the model thread completes the request; until then, later requests wait
+		connectionParm.setHttpResponsePending(true);
+		clientRequestListener.handleRequestReceived(clientRequest, clientResponse -> writeServerResponse(clientResponse, connectionParm));
+	}
 
-		final List<HttpHeader> headers = ImmutableList.of( //
-				new HttpHeader("Content-Type", HttpUtility.CONTENT_TYPE_MAP.get("json")) //
-		);
+	/**
+	 * Write the server response for a POST. A success, the usual response, is always the same body. This may be invoked on any thread.
+	 * 
+	 * @param clientResponseParm required
+	 * @param connectionParm     required
+	 */
+	private void writeServerResponse(final ServerResponse clientResponseParm, final ClientConnection connectionParm) {
 		try {
-			HttpUtility.writeToSocket("HTTP/1.1 200 OK", headers, clientResponseJson, socketParm);
+			if (clientResponseParm.isError()) {
+				final JsonWriter jsonWriter = new JsonWriter(BufferPool.SHARED, 0, 64);
+				clientResponseParm.writeJson(jsonWriter);
+
+				OK_RESPONSE.write(jsonWriter.finish(), connectionParm);
+			} else {
+				OK_RESPONSE.write(SUCCESS_BODY, connectionParm);
+			}
 		} catch (final Exception e) {
 			LoggerUtility.logIssueWithStackTrace(LOG, "Unable to write OK response.", false, e);
 		}
 
-		return;
+		connectionParm.getReactor().execute(() -> resumeHttpRequests(connectionParm));
+	}
+
+	/**
+	 * Return the JSON of a server response in a read-only buffer, for a response sent often.
+	 * 
+	 * @param serverResponseParm required
+	 * @return
+	 */
+	private static ByteBuffer encodeServerResponse(final ServerResponse serverResponseParm) {
+		final JsonWriter jsonWriter = new JsonWriter(BufferPool.SHARED, 0, 64);
+		serverResponseParm.writeJson(jsonWriter);
+
+		final PooledBuffer pooledBuffer = jsonWriter.finish();
+		final byte[] json = new byte[pooledBuffer.getBuffer().remaining()];
+		pooledBuffer.getBuffer().get(json);
+		pooledBuffer.release();
+
+		return ByteBuffer.wrap(json).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Handle a client request received on a WebSocket, the same as a POST but for the reply, which goes back on the WebSocket. Each request carries
+	 * an id chosen by the client, which leads the reply. A request without an id cannot be answered, so it is ignored.
+	 * <p>
+	 * A WebSocket speaks only for its own voter.
+	 * 
+	 * @param messageParm    required, the message payload, read in place
+	 * @param connectionParm required, a WebSocket
+	 */
+	private void processWebSocketRequest(final ByteBuffer messageParm, final ClientConnection connectionParm) {
+		final String voterName = connectionParm.getVoterName();
+		final ClientRequest clientRequest;
+
+		try {
+			clientRequest = ClientRequest.readJson(messageParm);
+		} catch (final Exception e) {
+			LOG.warn("WebSocket client request not recognized from " + voterName + ": " + e.getMessage());
+
+			return;
+		}
+
+		final int requestId = clientRequest.getRequestId();
+		if (requestId <= 0) {
+			LOG.warn("Ignoring WebSocket client request without a request id from: " + voterName);
+
+			return;
+		}
+
+		String errorMessage = clientRequest.validate();
+		if (errorMessage == null && !voterName.equals(clientRequest.getVoterName())) {
+			errorMessage = "The voter does not match the WebSocket: " + clientRequest.getVoterName();
+		}
+		if (errorMessage == null && webSocketByVoterName.get(voterName) != connectionParm) {
+			errorMessage = "The WebSocket is not connected.";
+		}
+
+		if (errorMessage != null) {
+			writeWebSocketResponse(new ServerResponse(errorMessage), requestId, connectionParm);
+
+			return;
+		}
+
+		// The response is written when the model thread completes the request
+		clientRequestListener.handleRequestReceived(clientRequest,
+				clientResponse -> writeWebSocketResponse(clientResponse, requestId, connectionParm));
+	}
+
+	/**
+	 * Write the server response for a request received on a WebSocket, as a text message, whatever the WebSocket's server updates are. This may be
+	 * invoked on any thread.
+	 * 
+	 * @param clientResponseParm required
+	 * @param requestIdParm      the request's id
+	 * @param connectionParm     required, a WebSocket
+	 */
+	private void writeWebSocketResponse(final ServerResponse clientResponseParm, final int requestIdParm, final ClientConnection connectionParm) {
+		// Leave room for the frame header, as for server updates
+		final JsonWriter jsonWriter = new JsonWriter(BufferPool.SHARED, WebSocketFrame.MAX_HEADER_LENGTH, 64);
+		clientResponseParm.writeJson(jsonWriter, requestIdParm);
+
+		try {
+			connectionParm.sendMessage(new BroadcastMessage(jsonWriter.finish(), null, webSocketFragmentLength, false));
+		} catch (final CommException ce) {
+			// Already logged
+			handleFailed(connectionParm);
+		}
 	}
 
 	/**
@@ -471,12 +1113,12 @@ public class CommunicationsServer {
 	 */
 	public interface ClientRequestListener extends EventListener {
 		/**
-		 * Process a client request, returning a server response.
+		 * Process a client request. The server response is passed to the callback, which may be invoked on another thread.
 		 * 
-		 * @param clientRequest required
-		 * @return not null
+		 * @param clientRequest    required
+		 * @param responseCallback required, invoked exactly once with a non-null response
 		 */
-		ServerResponse handleRequestReceived(final ClientRequest clientRequest);
+		void handleRequestReceived(final ClientRequest clientRequest, final Consumer<ServerResponse> responseCallback);
 	}
 
 	/**
@@ -490,9 +1132,10 @@ public class CommunicationsServer {
 		 * <p>
 		 * Voters connect by establishing WebSocket connection.
 		 * 
-		 * @param voterName required
+		 * @param voterName    required
+		 * @param deltaUpdates true if the voter's client applies deltas; otherwise, it is sent a snapshot with every update
 		 */
-		void handleVoterConnected(final String voterName);
+		void handleVoterConnected(final String voterName, final boolean deltaUpdates);
 	}
 
 	/**
@@ -1,8 +1,15 @@
 package com.fusionalliance.internal.planpokerserver;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EventListener;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.commons.lang3.StringUtils;
@@ -23,6 +30,22 @@ public class Model {
 
 	final ServerUpdateListener serverUpdateListener;
 
+	/** Events published since the last server update, oldest first */
+	private final List<String> pendingMessages = new ArrayList<>();
+	/** Voters added or changed since the last server update */
+	private final Set<String> changedVoterNames = new TreeSet<>();
+	/** Voters removed since the last server update; never also in {@link #changedVoterNames} */
+	private final Set<String> removedVoterNames = new TreeSet<>();
+	/** Voters to be sent a snapshot rather than the next delta */
+	private final Set<String> snapshotVoterNames = new LinkedHashSet<>();
+	/** Voters whose clients do not apply deltas, so they are sent a snapshot with every server update */
+	private final Set<String> snapshotOnlyVoterNames = new HashSet<>();
+
+	/** The listener was told of the pending update, and the flush has not yet run */
+	private boolean flushRequested = false;
+	/** The sequence number of the last server update; each delta follows the previous one by 1 */
+	private long sequence = 0;
+
 	/** 0 = no vote 1 = vote in progress 2 = vote complete */
 	private int voteStatus = 0;
 
@@ -49,8 +72,7 @@ public class Model {
 		voteStatus = 0;
 		clearVotes();
 
-		final ServerUpdate serverUpdate = generateServerUpdate("Vote canceled by: " + voterNameParm);
-		serverUpdateListener.handleUpdateGenerated(serverUpdate);
+		publishEvent("Vote canceled by: " + voterNameParm);
 
 		return new ServerResponse();
 	}
@@ -62,14 +84,13 @@ public class Model {
 
 		voteStatus = 2;
 
-		final ServerUpdate serverUpdate = generateServerUpdate("Vote ended by: " + voterNameParm);
-		serverUpdateListener.handleUpdateGenerated(serverUpdate);
+		publishEvent("Vote ended by: " + voterNameParm);
 
 		return new ServerResponse();
 	}
 
 	/**
-	 * Add the voter, step 1 of 2. See {@link #doConnected(String)}.
+	 * Add the voter, step 1 of 2. See {@link #doConnected(String, boolean)}.
 	 * <p>
 	 * This is a standard request for the voter to join. If this request is successful, then the client must create a WebSocket connection.
 	 * 
@@ -82,6 +103,7 @@ public class Model {
 		}
 
 		voterByName.put(voterNameParm, new Voter(voterNameParm));
+		markChanged(voterNameParm);
 
 		return new ServerResponse();
 	}
@@ -91,16 +113,22 @@ public class Model {
 	 * <p>
 	 * After the join request, the client creates a WebSocket connection; this method is invoked after that connection is complete.
 	 * 
-	 * @param voterNameParm required, must exist
+	 * @param voterNameParm    required, must exist
+	 * @param deltaUpdatesParm true if the voter's client applies deltas; otherwise, it is sent a snapshot with every server update
 	 * @return null if success; otherwise, an error message
 	 */
-	public ServerResponse doConnected(String voterNameParm) {
+	public ServerResponse doConnected(String voterNameParm, final boolean deltaUpdatesParm) {
 		if (!checkVoterJoined(voterNameParm)) {
 			return new ServerResponse(UNKNOWN_VOTER + voterNameParm);
 		}
 
-		final ServerUpdate serverUpdate = generateServerUpdate("A new voter joined: " + voterNameParm);
-		serverUpdateListener.handleUpdateGenerated(serverUpdate);
+		if (!deltaUpdatesParm) {
+			snapshotOnlyVoterNames.add(voterNameParm);
+		}
+
+		// The new voter has no state to apply a delta to
+		snapshotVoterNames.add(voterNameParm);
+		publishEvent("A new voter joined: " + voterNameParm);
 
 		return new ServerResponse();
 	}
@@ -110,10 +138,9 @@ public class Model {
 			return new ServerResponse(UNKNOWN_VOTER + voterNameParm);
 		}
 
-		voterByName.remove(voterNameParm);
+		removeVoterByName(voterNameParm);
 
-		final ServerUpdate serverUpdate = generateServerUpdate("A voter left: " + voterNameParm);
-		serverUpdateListener.handleUpdateGenerated(serverUpdate);
+		publishEvent("A voter left: " + voterNameParm);
 
 		return new ServerResponse();
 	}
@@ -126,8 +153,7 @@ public class Model {
 		voteStatus = 0;
 		clearVotes();
 
-		final ServerUpdate serverUpdate = generateServerUpdate("Refresh requested by: " + voterNameParm);
-		serverUpdateListener.handleUpdateGenerated(serverUpdate);
+		publishEvent("Refresh requested by: " + voterNameParm);
 
 		return new ServerResponse();
 	}
@@ -140,8 +166,7 @@ public class Model {
 		voteStatus = 1;
 		clearVotes();
 
-		final ServerUpdate serverUpdate = generateServerUpdate("Vote started by: " + voterNameParm);
-		serverUpdateListener.handleUpdateGenerated(serverUpdate);
+		publishEvent("Vote started by: " + voterNameParm);
 
 		return new ServerResponse();
 	}
@@ -157,9 +182,9 @@ public class Model {
 
 		final Voter voter = voterByName.get(voterNameParm);
 		voter.setVote(voteParm);
+		markChanged(voterNameParm);
 
-		final ServerUpdate serverUpdate = generateServerUpdate("Vote by: " + voterNameParm);
-		serverUpdateListener.handleUpdateGenerated(serverUpdate);
+		publishEvent("Vote by: " + voterNameParm);
 
 		boolean voteComplete = true;
 		for (Voter loopVoter : voterByName.values()) {
@@ -182,11 +207,28 @@ public class Model {
 			return new ServerResponse(UNKNOWN_VOTER + voterNameParm);
 		}
 
-		if (voterByName.remove(voterNameToDropParm) != null) {
-			final ServerUpdate serverUpdate = generateServerUpdate("A voter was dropped: " + voterNameToDropParm);
-			serverUpdateListener.handleUpdateGenerated(serverUpdate);
+		if (removeVoterByName(voterNameToDropParm)) {
+			publishEvent("A voter was dropped: " + voterNameToDropParm);
+		}
+
+		return new ServerResponse();
+	}
+
+	/**
+	 * Send the voter a snapshot of the whole model with the next server update. The client asks for one when it finds a gap in the sequence of
+	 * deltas.
+	 * 
+	 * @param voterNameParm required
+	 * @return
+	 */
+	public ServerResponse doResync(String voterNameParm) {
+		if (!checkVoterJoined(voterNameParm)) {
+			return new ServerResponse(UNKNOWN_VOTER + voterNameParm);
 		}
 
+		snapshotVoterNames.add(voterNameParm);
+		requestFlush();
+
 		return new ServerResponse();
 	}
 
@@ -198,10 +240,12 @@ public class Model {
 	 * @param voterNameToDropParm
 	 */
 	public void removeVoter(final String voterNameToDropParm) {
-		voterByName.remove(voterNameToDropParm);
+		// Already removed, such as a voter that left and then closed the WebSocket
+		if (!removeVoterByName(voterNameToDropParm)) {
+			return;
+		}
 
-		final ServerUpdate serverUpdate = generateServerUpdate("A voter dropped because of comm errors: " + voterNameToDropParm);
-		serverUpdateListener.handleUpdateGenerated(serverUpdate);
+		publishEvent("A voter dropped because of comm errors: " + voterNameToDropParm);
 	}
 
 	/**
@@ -223,17 +267,130 @@ public class Model {
 	}
 
 	/**
-	 * Generate a server update from the current model state.
+	 * Broadcast one server update holding the changes, and every event, since the last flush; voters awaiting a snapshot, and voters whose clients
+	 * do not apply deltas, are sent the whole model instead. The listener is told when the first change of a batch is published, see
+	 * {@link ServerUpdateListener#handleUpdatePending()}; it decides when the batch ends. Runs on the model thread.
+	 */
+	public void flushServerUpdate() {
+		flushRequested = false;
+
+		// Clients that do not apply deltas need a snapshot of every update, not only when they connect or resync
+		final Set<String> snapshotRecipientNames;
+		if (pendingMessages.isEmpty() || snapshotOnlyVoterNames.isEmpty()) {
+			snapshotRecipientNames = snapshotVoterNames;
+		} else {
+			snapshotRecipientNames = new LinkedHashSet<>(snapshotVoterNames);
+			snapshotRecipientNames.addAll(snapshotOnlyVoterNames);
+		}
+
+		if (!pendingMessages.isEmpty()) {
+			sequence++;
+
+			final List<Voter> changedVoters = new ArrayList<>(changedVoterNames.size());
+			for (String changedVoterName : changedVoterNames) {
+				changedVoters.add(voterByName.get(changedVoterName));
+			}
+
+			final ServerUpdate delta = new ServerUpdate(sequence, false, pendingMessages, voteStatus, calculateAverageVote(), changedVoters,
+					removedVoterNames);
+
+			serverUpdateListener.handleUpdateGenerated(delta, snapshotRecipientNames);
+		}
+
+		if (!snapshotRecipientNames.isEmpty()) {
+			final ServerUpdate snapshot = new ServerUpdate(sequence, true, pendingMessages, voteStatus, calculateAverageVote(),
+					new TreeSet<Voter>(voterByName.values()), Collections.<String>emptySet());
+
+			serverUpdateListener.handleSnapshotGenerated(snapshot, snapshotRecipientNames);
+		}
+
+		pendingMessages.clear();
+		changedVoterNames.clear();
+		removedVoterNames.clear();
+		snapshotVoterNames.clear();
+	}
+
+	/**
+	 * Record an event for the next server update. Only the first change of a batch notifies the listener, so that a burst of mutations, such as the
+	 * last vote of a round ending the vote, is broadcast once.
 	 * 
 	 * @param messageParm required
-	 * @return
 	 */
-	private ServerUpdate generateServerUpdate(final String messageParm) {
+	private void publishEvent(final String messageParm) {
 		CheckCondition.check(StringUtils.isNotBlank(messageParm), "The message is blank.");
 
-		final ServerUpdate serverUpdate = new ServerUpdate(messageParm, voteStatus, new TreeSet<Voter>(voterByName.values()));
+		pendingMessages.add(messageParm);
+		requestFlush();
+	}
 
-		return serverUpdate;
+	/**
+	 * Tell the listener a server update is pending, once per batch.
+	 */
+	private void requestFlush() {
+		if (flushRequested) {
+			return;
+		}
+
+		flushRequested = true;
+		serverUpdateListener.handleUpdatePending();
+	}
+
+	/**
+	 * Record that the voter was added or changed, for the next delta.
+	 * 
+	 * @param voterNameParm required
+	 */
+	private void markChanged(final String voterNameParm) {
+		removedVoterNames.remove(voterNameParm);
+		changedVoterNames.add(voterNameParm);
+	}
+
+	/**
+	 * Remove the voter, recording the removal for the next delta.
+	 * 
+	 * @param voterNameParm
+	 * @return false if the voter was not joined
+	 */
+	private boolean removeVoterByName(final String voterNameParm) {
+		if (voterByName.remove(voterNameParm) == null) {
+			return false;
+		}
+
+		changedVoterNames.remove(voterNameParm);
+		snapshotVoterNames.remove(voterNameParm);
+		snapshotOnlyVoterNames.remove(voterNameParm);
+		removedVoterNames.add(voterNameParm);
+
+		return true;
+	}
+
+	/**
+	 * Return the average of the votes, rounded half up. Only available once the vote is complete; "?" votes are not counted.
+	 * 
+	 * @return -1 if the vote is not complete, or no one voted other than "?"
+	 */
+	private int calculateAverageVote() {
+		if (voteStatus != 2) {
+			return -1;
+		}
+
+		int validVoters = 0;
+		int sumVotes = 0;
+		for (Voter voter : voterByName.values()) {
+			if (!voter.isHasVoted() || voter.getVote() == 0) {
+				continue;
+			}
+
+			validVoters++;
+			sumVotes += voter.getVote();
+		}
+
+		// Boundary case: vote ended with no one voting or every voting "?"
+		if (validVoters == 0) {
+			return -1;
+		}
+
+		return new BigDecimal(sumVotes).divide(new BigDecimal(validVoters), 0, BigDecimal.ROUND_HALF_UP).intValue();
 	}
 
 	/**
@@ -241,7 +398,10 @@ public class Model {
 	 */
 	private void clearVotes() {
 		for (Voter voter : voterByName.values()) {
-			voter.setVote(-1);
+			if (voter.isHasVoted()) {
+				voter.setVote(-1);
+				markChanged(voter.getName());
+			}
 		}
 	}
 
@@ -250,10 +410,25 @@ public class Model {
 	 */
 	public interface ServerUpdateListener extends EventListener {
 		/**
-		 * Process a server update event.
+		 * Process a server update event: a delta, to be broadcast to every voter but those about to be sent a snapshot.
 		 * 
-		 * @param serverUpdate required
+		 * @param serverUpdate      required
+		 * @param skippedVoterNames required, may be empty; valid only during the call
+		 */
+		void handleUpdateGenerated(final ServerUpdate serverUpdate, final Set<String> skippedVoterNames);
+
+		/**
+		 * Process a snapshot of the whole model, to be sent to the named voters only.
+		 * 
+		 * @param snapshot   required
+		 * @param voterNames required, not empty; valid only during the call
+		 */
+		void handleSnapshotGenerated(final ServerUpdate snapshot, final Set<String> voterNames);
+
+		/**
+		 * The model changed and a server update is pending. Arrange for {@link Model#flushServerUpdate()} to run on the model thread once the batch
+		 * of mutations is over.
 		 */
-		void handleUpdateGenerated(final ServerUpdate serverUpdate);
+		void handleUpdatePending();
 	}
 }
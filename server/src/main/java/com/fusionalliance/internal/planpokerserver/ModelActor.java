@@ -0,0 +1,305 @@
+package com.fusionalliance.internal.planpokerserver;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fusionalliance.internal.planpokerserver.utility.HashedTimerWheel;
+import com.fusionalliance.internal.planpokerserver.utility.LoggerUtility;
+import com.fusionalliance.internal.planpokerserver.utility.MpscRingBuffer;
+
+/**
+ * This class implements the model's actor: a dedicated thread that runs every model event in turn, so that the model has a single writer and
+ * needs no locks. Events, such as a client request or a voter connecting or dropping, come from the reactor threads through a bounded
+ * {@link MpscRingBuffer}; each carries the callback that completes it, such as writing the response.
+ * <p>
+ * The thread takes events in batches. Work the events hand back through {@link #execute(Runnable)}, such as flushing the server update, runs
+ * once the batch is over, so that a burst of requests is broadcast once. Timers, such as the update coalesce window, run on the same thread.
+ * <p>
+ * While no event is waiting, the thread waits as its {@link WaitStrategy} says.
+ * <p>
+ * The producers are the reactors, so a full queue must not stall them: a producer waits at most {@link #MAX_FULL_WAIT_NANOS} for room, then the
+ * event is rejected with a {@link RejectedExecutionException}, and the caller sheds it, such as by answering a client request that the server is
+ * busy. Control events, such as a voter connecting or dropping, must not be lost; {@link #executeControl(Runnable)} queues them apart, unbounded,
+ * but there are at most two per connection.
+ */
+public final class ModelActor implements Executor {
+	private static final Logger LOG = LoggerFactory.getLogger(ModelActor.class);
+
+	private static final long TIMER_TICK_MILLIS = 10;
+	/** 512 ticks of 10 millis: one rotation covers about 5 seconds */
+	private static final int TIMER_BUCKETS = 512;
+	/** How long a producer backs off while the queue is full */
+	private static final long FULL_BACKOFF_NANOS = 50_000;
+	/** The longest a producer waits for room before its event is rejected */
+	private static final long MAX_FULL_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final MpscRingBuffer<Runnable> events;
+	/** Events that may not be rejected; run ahead of the ring's */
+	private final Queue<Runnable> controlEvents = new ConcurrentLinkedQueue<>();
+	private final int batchSize;
+	private final WaitStrategy waitStrategy;
+	private final Thread thread;
+	private final Consumer<Runnable> eventRunner = this::runTask;
+	/** Work handed back by the model thread itself, run after the batch; used only on the model thread */
+	private final Queue<Runnable> batchTasks = new ArrayDeque<>();
+	private final HashedTimerWheel timerWheel = new HashedTimerWheel(TIMER_TICK_MILLIS, TIMER_BUCKETS, nowMillis());
+
+	/** True while the model thread is parked, or about to park; producers then wake it */
+	private volatile boolean parked = false;
+	private volatile boolean running = true;
+
+	/**
+	 * Constructor
+	 *
+	 * @param nameParm          required, used as the thread name
+	 * @param capacityParm      the most events that may wait, a power of 2
+	 * @param batchSizeParm     the most events taken before the work they handed back is run, at least 1
+	 * @param waitStrategyParm  required
+	 */
+	public ModelActor(final String nameParm, final int capacityParm, final int batchSizeParm, final WaitStrategy waitStrategyParm) {
+		check(nameParm != null, "The name may not be null.");
+		check(batchSizeParm > 0, "The batch size must be at least 1.");
+		check(waitStrategyParm != null, "The wait strategy may not be null.");
+
+		events = new MpscRingBuffer<>(capacityParm);
+		batchSize = batchSizeParm;
+		waitStrategy = waitStrategyParm;
+		thread = new Thread(this::run, nameParm);
+	}
+
+	/**
+	 * Start the model thread. Events queued before then wait for it.
+	 */
+	public void start() {
+		thread.start();
+	}
+
+	/**
+	 * Stop the model thread once its current batch is over.
+	 */
+	public void shutdown() {
+		running = false;
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Run the task on the model thread. From another thread, the task is queued as an event, waiting briefly while the queue is full; from the
+	 * model thread, it runs once the current batch is over.
+	 *
+	 * @param taskParm required
+	 * @throws RejectedExecutionException if the queue stayed full; the task will not run
+	 */
+	@Override
+	public void execute(final Runnable taskParm) {
+		check(taskParm != null, "The task may not be null.");
+
+		if (isModelThread()) {
+			batchTasks.add(taskParm);
+
+			return;
+		}
+
+		if (!events.offer(taskParm)) {
+			final long deadlineNanos = System.nanoTime() + MAX_FULL_WAIT_NANOS;
+
+			// The model is behind; slowing the producer, briefly, is the back pressure
+			do {
+				if (System.nanoTime() - deadlineNanos >= 0) {
+					throw new RejectedExecutionException("The model queue is full.");
+				}
+
+				LockSupport.parkNanos(FULL_BACKOFF_NANOS);
+			} while (!events.offer(taskParm));
+		}
+
+		wakeUp();
+	}
+
+	/**
+	 * Run a control event on the model thread, one that may not be lost, such as a voter connecting or dropping. It is never rejected and never
+	 * waits; it runs ahead of the events already queued.
+	 *
+	 * @param taskParm required
+	 */
+	public void executeControl(final Runnable taskParm) {
+		check(taskParm != null, "The task may not be null.");
+
+		if (isModelThread()) {
+			batchTasks.add(taskParm);
+
+			return;
+		}
+
+		controlEvents.add(taskParm);
+		wakeUp();
+	}
+
+	private void wakeUp() {
+		if (parked) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	/**
+	 * Run the task on the model thread after the delay. Must be called on the model thread.
+	 *
+	 * @param taskParm        required
+	 * @param delayMillisParm the minimum delay; the task may run up to one tick late
+	 * @return a handle for cancelling the timer
+	 */
+	public HashedTimerWheel.Timer schedule(final Runnable taskParm, final long delayMillisParm) {
+		check(isModelThread(), "Timers may only be scheduled on the model thread.");
+
+		return timerWheel.schedule(taskParm, delayMillisParm);
+	}
+
+	/**
+	 * Return true if the caller is running on the model thread.
+	 *
+	 * @return
+	 */
+	public boolean isModelThread() {
+		return Thread.currentThread() == thread;
+	}
+
+	/**
+	 * The event loop: the timers due, the control events, a batch of events, then the work they handed back; then wait if there was nothing to do.
+	 */
+	private void run() {
+		while (running) {
+			// Always advance, even with no timers pending, so that a timer scheduled by the next event counts its delay from now rather than from
+			// the last time the wheel moved
+			timerWheel.advance(nowMillis());
+
+			final boolean ranControlEvents = runControlEvents();
+
+			final int eventCount = events.drain(eventRunner, batchSize);
+
+			final boolean ranBatchTasks = runBatchTasks();
+
+			if (!ranControlEvents && eventCount == 0 && !ranBatchTasks) {
+				waitForEvents();
+			}
+		}
+	}
+
+	/**
+	 * Run the control events queued so far.
+	 *
+	 * @return true if any were run
+	 */
+	private boolean runControlEvents() {
+		boolean ran = false;
+		Runnable controlEvent = null;
+
+		while ((controlEvent = controlEvents.poll()) != null) {
+			runTask(controlEvent);
+			ran = true;
+		}
+
+		return ran;
+	}
+
+	/**
+	 * Run the work handed back during the batch. Work handed back meanwhile is left for the next pass, so events are never starved.
+	 *
+	 * @return true if any work was run
+	 */
+	private boolean runBatchTasks() {
+		final int taskCount = batchTasks.size();
+
+		for (int i = 0; i < taskCount; i++) {
+			runTask(batchTasks.poll());
+		}
+
+		return taskCount > 0;
+	}
+
+	private void runTask(final Runnable taskParm) {
+		try {
+			taskParm.run();
+		} catch (final Exception e) {
+			LoggerUtility.logIssueWithStackTrace(LOG, "Model task failed.", false, e);
+		}
+	}
+
+	/**
+	 * Wait for an event, no longer than the next timer tick.
+	 */
+	private void waitForEvents() {
+		switch (waitStrategy) {
+		case BUSY_SPIN:
+			break;
+		case YIELD:
+			Thread.yield();
+
+			break;
+		case PARK:
+			// Announce the park before the last look, so that a producer either is seen here or sees the flag; see MpscRingBuffer.offer()
+			parked = true;
+
+			if (running && events.isEmpty() && controlEvents.isEmpty()) {
+				final long waitMillis = timerWheel.millisUntilNextTick(nowMillis());
+
+				if (waitMillis == 0) {
+					LockSupport.park(this);
+				} else {
+					LockSupport.parkNanos(this, waitMillis * 1_000_000L);
+				}
+			}
+
+			parked = false;
+
+			break;
+		}
+	}
+
+	/**
+	 * Return a monotonic clock in millis, unaffected by changes to the system time.
+	 *
+	 * @return
+	 */
+	private static long nowMillis() {
+		return System.nanoTime() / 1_000_000;
+	}
+
+	/**
+	 * This enum lists the ways the model thread may wait for events. Busy-spinning answers soonest but keeps a core busy; yielding leaves the core
+	 * to other threads that are ready; parking, the default, costs nothing while idle but each event that finds the thread parked pays for a
+	 * wake-up.
+	 */
+	public enum WaitStrategy {
+		BUSY_SPIN, //
+		YIELD, //
+		PARK, //
+		;
+
+		/**
+		 * Return the strategy named, ignoring case and treating '-' as '_', such as busy-spin.
+		 *
+		 * @param nameParm required
+		 * @return PARK if the name is unknown
+		 */
+		public static WaitStrategy parse(final String nameParm) {
+			try {
+				return valueOf(nameParm.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+			} catch (final IllegalArgumentException e) {
+				LOG.warn("Unknown model wait strategy: " + nameParm + "; using park");
+
+				return PARK;
+			}
+		}
+	}
+}
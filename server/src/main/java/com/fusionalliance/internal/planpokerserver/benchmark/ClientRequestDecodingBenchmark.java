@@ -0,0 +1,164 @@
+package com.fusionalliance.internal.planpokerserver.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.fusionalliance.internal.planpokerserver.io.BufferPool;
+import com.fusionalliance.internal.planpokerserver.io.JsonWriter;
+import com.fusionalliance.internal.planpokerserver.io.PooledBuffer;
+import com.fusionalliance.internal.planpokerserver.vo.ClientRequest;
+import com.google.gson.Gson;
+
+/**
+ * This class checks {@link ClientRequest#readJson(ByteBuffer)} against requests written by {@link JsonWriter}, checks that malformed bodies are
+ * rejected, then compares its cost with decoding the body to a String and parsing that with Gson, as POSTs did.
+ * <p>
+ * Every body is read from a read-only view of a pooled buffer, as {@link com.fusionalliance.internal.planpokerserver.io.HttpRequest} provides
+ * it, so that the reader sees a single buffer class, as it does in the server.
+ * <p>
+ * Usage: <code>ClientRequestDecodingBenchmark [millisPerCase]</code>
+ */
+public final class ClientRequestDecodingBenchmark {
+	private static final String[] REQUEST_TYPES = { "join", "startVote", "vote", "endVote", "cancelVote", "refresh", "leave", "dropVoter",
+			"resync" };
+	private static final char[] AWKWARD_CHARS = { 'a', 'Z', '0', ' ', '"', '\\', '/', '<', '\n', '\u0000', '\u00e9', '\u20ac', '\u2028', '\ud83d',
+			'\ude00' };
+	private static final String[] MALFORMED = { "", "{", "}", "[]", "null", "{\"vote\":}", "{\"vote\":1.5}", "{\"vote\":99999999999}",
+			"{\"voterName\":\"a}", "{\"voterName\":\"\\x\"}", "{\"voterName\":\"\u0001\"}", "{\"vote\":1,}", "{\"vote\":1 \"info\":\"\"}",
+			"{'vote':1}", "{vote:1}", "{\"vote\":1}x", "{\"a\":[1,2,{\"b\":tru}]}", "{\"a\":01}" };
+	private static final Gson GSON = new Gson();
+
+	/** Defeats dead code elimination */
+	private static long sink = 0;
+
+	public static void main(final String[] args) throws Exception {
+		final int millisPerCase = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+		verify();
+
+		final byte[] body = "{\"requestType\":\"vote\",\"voterName\":\"Voter number 17\",\"vote\":5,\"info\":\"\"}".getBytes(StandardCharsets.UTF_8);
+		final PooledBuffer pooledBuffer = BufferPool.SHARED.acquire(body.length);
+		pooledBuffer.getBuffer().put(body).flip();
+		final ByteBuffer buffer = pooledBuffer.getBuffer().slice().asReadOnlyBuffer();
+
+		runGson(buffer, millisPerCase);
+		final double gsonNanos = runGson(buffer, millisPerCase);
+		runReader(buffer, millisPerCase);
+		final double readerNanos = runReader(buffer, millisPerCase);
+
+		System.out.println(String.format("%8s %12s %12s %8s", "bytes", "gson ns", "reader ns", "speedup"));
+		System.out.println(String.format("%8d %12.0f %12.0f %7.1fx", body.length, gsonNanos, readerNanos, gsonNanos / readerNanos));
+		System.out.println("(" + sink + ")");
+
+		pooledBuffer.release();
+	}
+
+	/**
+	 * Fail unless every generated request is read back as written and every malformed body is rejected.
+	 */
+	private static void verify() {
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		for (int i = 0; i < 10_000; i++) {
+			final int requestType = random.nextInt(REQUEST_TYPES.length + 1);
+			final String voterName = randomString(random);
+			final int vote = random.nextInt(-1, 11);
+			final String info = randomString(random);
+
+			final JsonWriter jsonWriter = new JsonWriter(BufferPool.SHARED, 0, 64);
+			jsonWriter.beginObject();
+			if (random.nextBoolean()) {
+				jsonWriter.name("unknown").beginArray().value(randomString(random)).value(random.nextBoolean()).endArray();
+			}
+			jsonWriter.name("requestType").value(requestType < REQUEST_TYPES.length ? REQUEST_TYPES[requestType] : randomString(random));
+			jsonWriter.name("voterName").value(voterName);
+			jsonWriter.name("vote").value(vote);
+			jsonWriter.name("info").value(info);
+			jsonWriter.endObject();
+
+			final PooledBuffer pooledBuffer = jsonWriter.finish();
+			final ClientRequest clientRequest = ClientRequest.readJson(pooledBuffer.getBuffer().slice().asReadOnlyBuffer());
+			pooledBuffer.release();
+
+			final String expectedRequestType = requestType < REQUEST_TYPES.length ? REQUEST_TYPES[requestType] : null;
+			final String actualRequestType = clientRequest.getRequestType() == null ? null : REQUEST_TYPES[clientRequest.getRequestType().ordinal()];
+			if (!Objects.equals(expectedRequestType, actualRequestType) || !voterName.equals(clientRequest.getVoterName())
+					|| vote != clientRequest.getVote() || !info.equals(clientRequest.getInfo())) {
+				throw new IllegalStateException("Request read incorrectly: " + voterName + " / " + clientRequest.getVoterName());
+			}
+		}
+
+		for (String malformed : MALFORMED) {
+			final byte[] body = malformed.getBytes(StandardCharsets.UTF_8);
+			final PooledBuffer pooledBuffer = BufferPool.SHARED.acquire(body.length);
+			pooledBuffer.getBuffer().put(body).flip();
+
+			try {
+				ClientRequest.readJson(pooledBuffer.getBuffer().slice().asReadOnlyBuffer());
+			} catch (final RuntimeException e) {
+				continue;
+			} finally {
+				pooledBuffer.release();
+			}
+
+			throw new IllegalStateException("Malformed body accepted: " + malformed);
+		}
+	}
+
+	private static String randomString(final ThreadLocalRandom randomParm) {
+		final StringBuilder builder = new StringBuilder();
+		for (int i = randomParm.nextInt(12); i > 0; i--) {
+			builder.append(AWKWARD_CHARS[randomParm.nextInt(AWKWARD_CHARS.length)]);
+		}
+
+		// A lone surrogate does not survive UTF-8
+		return new String(builder.toString().getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decode repeatedly for the period, as POSTs did with Gson: the body bytes to a String, then the String to a request.
+	 *
+	 * @return nanos per request
+	 */
+	private static double runGson(final ByteBuffer bufferParm, final int millisParm) {
+		final long startNanos = System.nanoTime();
+		final long endNanos = startNanos + millisParm * 1_000_000L;
+		long iterations = 0;
+
+		while (System.nanoTime() < endNanos) {
+			final byte[] bodyBytes = new byte[bufferParm.remaining()];
+			bufferParm.duplicate().get(bodyBytes);
+			sink += GSON.fromJson(new String(bodyBytes, StandardCharsets.UTF_8), ClientRequest.class).getVote();
+			iterations++;
+		}
+
+		return (System.nanoTime() - startNanos) / (double) iterations;
+	}
+
+	/**
+	 * Decode repeatedly for the period, in place.
+	 *
+	 * @return nanos per request
+	 */
+	private static double runReader(final ByteBuffer bufferParm, final int millisParm) {
+		final long startNanos = System.nanoTime();
+		final long endNanos = startNanos + millisParm * 1_000_000L;
+		long iterations = 0;
+
+		while (System.nanoTime() < endNanos) {
+			sink += ClientRequest.readJson(bufferParm).getVote();
+			iterations++;
+		}
+
+		return (System.nanoTime() - startNanos) / (double) iterations;
+	}
+
+	/**
+	 * Hidden constructor
+	 */
+	private ClientRequestDecodingBenchmark() {
+		// Do nothing
+	}
+}
@@ -0,0 +1,191 @@
+package com.fusionalliance.internal.planpokerserver.benchmark;
+
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import com.fusionalliance.internal.planpokerserver.io.BufferPool;
+import com.fusionalliance.internal.planpokerserver.io.HttpRequest;
+import com.fusionalliance.internal.planpokerserver.io.HttpRequestMethods;
+import com.fusionalliance.internal.planpokerserver.io.PooledBuffer;
+
+/**
+ * This class checks {@link HttpRequest} against well-formed and malformed heads, then compares its cost with parsing the head as a String, as
+ * requests were parsed before: decoded whole, split into lines and headers with regular expressions, each path step URL decoded, and the headers
+ * copied into a map to look one up.
+ * <p>
+ * Every request is read from a slice of a pooled buffer, as {@link com.fusionalliance.internal.planpokerserver.io.HttpRequestParser} provides it.
+ * <p>
+ * Usage: <code>HttpRequestParsingBenchmark [millisPerCase]</code>
+ */
+public final class HttpRequestParsingBenchmark {
+	private static final String BROWSER_GET = "GET /main.js HTTP/1.1\r\n" //
+			+ "Host: localhost:40080\r\n" //
+			+ "Connection: keep-alive\r\n" //
+			+ "User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36\r\n" //
+			+ "Accept: */*\r\n" //
+			+ "Sec-Fetch-Site: same-origin\r\n" //
+			+ "Sec-Fetch-Mode: no-cors\r\n" //
+			+ "Sec-Fetch-Dest: script\r\n" //
+			+ "Referer: http://localhost:40080/\r\n" //
+			+ "Accept-Encoding: gzip, deflate, br\r\n" //
+			+ "Accept-Language: en-US,en;q=0.9\r\n" //
+			+ "If-None-Match: \"5f3e-18c1a2b3c4d\"\r\n" //
+			+ "\r\n";
+	private static final String[] MALFORMED = { "get / HTTP/1.1\r\n\r\n", "GET / HTTP/1.2\r\n\r\n", "GET /a b HTTP/1.1\r\n\r\n",
+			"GET x HTTP/1.1\r\n\r\n", "GET /%4 HTTP/1.1\r\n\r\n", "GET / HTTP/1.1\r\nA : b\r\n\r\n", "GET / HTTP/1.1\r\nA: b\r\n c\r\n\r\n",
+			"GET / HTTP/1.1\r\nA: b\nC: d\r\n\r\n", "GET / HTTP/1.1\r\n: b\r\n\r\n", "GET / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n",
+			"GET / HTTP/1.1\n\r\n\r\n" };
+
+	/** Defeats dead code elimination */
+	private static long sink = 0;
+
+	public static void main(final String[] args) throws Exception {
+		final int millisPerCase = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+		verify();
+
+		final PooledBuffer pooledBuffer = toPooledBuffer(BROWSER_GET);
+		final ByteBuffer buffer = pooledBuffer.getBuffer().slice();
+
+		runStrings(buffer, millisPerCase);
+		final double stringNanos = runStrings(buffer, millisPerCase);
+		runParser(buffer, millisPerCase);
+		final double parserNanos = runParser(buffer, millisPerCase);
+
+		System.out.println(String.format("%8s %12s %12s %8s", "bytes", "strings ns", "parser ns", "speedup"));
+		System.out.println(String.format("%8d %12.0f %12.0f %7.1fx", buffer.remaining(), stringNanos, parserNanos, stringNanos / parserNanos));
+		System.out.println("(" + sink + ")");
+
+		pooledBuffer.release();
+	}
+
+	/**
+	 * Fail unless well-formed requests are read as expected and every malformed head is rejected.
+	 */
+	private static void verify() {
+		final PooledBuffer browserGet = toPooledBuffer(BROWSER_GET);
+		final HttpRequest request = new HttpRequest(browserGet.getBuffer().slice(), browserGet.getBuffer().remaining());
+		expect(request.getMethod() == HttpRequestMethods.GET, "method");
+		expect("/main.js".equals(request.getPath()), "path");
+		expect("gzip, deflate, br".equals(request.getHeader("accept-encoding")), "Accept-Encoding");
+		expect(request.getHeader("Upgrade") == null, "Upgrade");
+		expect(request.isKeepAlive(), "keep-alive");
+		expect(request.getHeaders().size() == 11, "header count");
+		expect(request.getBody() == null, "body");
+		browserGet.release();
+
+		final String post = "POST /webSocket/J%C3%BCrgen%20K/?x=%zz HTTP/1.0\r\nx-custom:a\r\nX-Custom:  b \r\nContent-Length: 2\r\n\r\n{}";
+		final PooledBuffer postBuffer = toPooledBuffer(post);
+		final HttpRequest postRequest = new HttpRequest(postBuffer.getBuffer().slice(), post.indexOf("{}"));
+		expect(postRequest.getMethod() == HttpRequestMethods.POST, "method");
+		expect("/webSocket/J\u00fcrgen K".equals(postRequest.getPath()), "decoded path");
+		expect(postRequest.getPathSteps().size() == 2 && "J\u00fcrgen K".equals(postRequest.getPathSteps().get(1)), "path steps");
+		expect("a, b".equals(postRequest.getHeader("X-CUSTOM")), "repeated header");
+		expect(!postRequest.isKeepAlive(), "HTTP/1.0 closes");
+		expect(postRequest.getBody().remaining() == 2, "body");
+		postBuffer.release();
+
+		for (String malformed : MALFORMED) {
+			final PooledBuffer pooledBuffer = toPooledBuffer(malformed);
+
+			try {
+				new HttpRequest(pooledBuffer.getBuffer().slice(), pooledBuffer.getBuffer().remaining());
+			} catch (final RuntimeException e) {
+				continue;
+			} finally {
+				pooledBuffer.release();
+			}
+
+			throw new IllegalStateException("Malformed head accepted: " + malformed);
+		}
+	}
+
+	private static void expect(final boolean conditionParm, final String whatParm) {
+		if (!conditionParm) {
+			throw new IllegalStateException("Request read incorrectly: " + whatParm);
+		}
+	}
+
+	private static PooledBuffer toPooledBuffer(final String requestParm) {
+		final byte[] bytes = requestParm.getBytes(StandardCharsets.UTF_8);
+		final PooledBuffer pooledBuffer = BufferPool.SHARED.acquire(bytes.length);
+		pooledBuffer.getBuffer().put(bytes).flip();
+
+		return pooledBuffer;
+	}
+
+	/**
+	 * Parse repeatedly for the period, as requests were parsed before, then look up the headers the server reads.
+	 *
+	 * @return nanos per request
+	 */
+	private static double runStrings(final ByteBuffer bufferParm, final int millisParm) throws Exception {
+		final long startNanos = System.nanoTime();
+		final long endNanos = startNanos + millisParm * 1_000_000L;
+		long iterations = 0;
+
+		while (System.nanoTime() < endNanos) {
+			final byte[] headBytes = new byte[bufferParm.remaining() - 4];
+			bufferParm.duplicate().get(headBytes);
+			final String[] headLines = new String(headBytes, StandardCharsets.UTF_8).split("\\r\\n");
+			final String[] startLinePieces = headLines[0].split(" ");
+
+			final List<String> pathSteps = new ArrayList<>();
+			final String[] pathSplits = startLinePieces[1].split("/");
+			for (int i = 1; i < pathSplits.length; i++) {
+				pathSteps.add(URLDecoder.decode(pathSplits[i], StandardCharsets.UTF_8.name()));
+			}
+			final String path = pathSteps.stream().collect(Collectors.joining("/", "/", ""));
+
+			final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			for (int i = 1; i < headLines.length; i++) {
+				final String[] keyValue = headLines[i].split(": ");
+				headers.put(keyValue[0], keyValue[1]);
+			}
+
+			sink += path.length() + HttpRequestMethods.valueOf(startLinePieces[0]).ordinal();
+			sink += new HashMap<>(headers).containsKey("Upgrade") ? 1 : 0;
+			sink += headers.get("Connection").length() + headers.get("Accept-Encoding").length() + headers.get("If-None-Match").length();
+			iterations++;
+		}
+
+		return (System.nanoTime() - startNanos) / (double) iterations;
+	}
+
+	/**
+	 * Parse repeatedly for the period in place, then look up the headers the server reads.
+	 *
+	 * @return nanos per request
+	 */
+	private static double runParser(final ByteBuffer bufferParm, final int millisParm) {
+		final long startNanos = System.nanoTime();
+		final long endNanos = startNanos + millisParm * 1_000_000L;
+		long iterations = 0;
+
+		while (System.nanoTime() < endNanos) {
+			final HttpRequest request = new HttpRequest(bufferParm, bufferParm.remaining());
+
+			sink += request.getPath().length() + request.getMethod().ordinal();
+			sink += request.getHeader("Upgrade") != null ? 1 : 0;
+			sink += request.getHeader("Connection").length() + request.getHeader("Accept-Encoding").length()
+					+ request.getHeader("If-None-Match").length();
+			iterations++;
+		}
+
+		return (System.nanoTime() - startNanos) / (double) iterations;
+	}
+
+	/**
+	 * Hidden constructor
+	 */
+	private HttpRequestParsingBenchmark() {
+		// Do nothing
+	}
+}
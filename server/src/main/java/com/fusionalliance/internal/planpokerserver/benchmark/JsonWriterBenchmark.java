@@ -0,0 +1,167 @@
+package com.fusionalliance.internal.planpokerserver.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.fusionalliance.internal.planpokerserver.io.BufferPool;
+import com.fusionalliance.internal.planpokerserver.io.JsonWriter;
+import com.fusionalliance.internal.planpokerserver.io.PooledBuffer;
+import com.fusionalliance.internal.planpokerserver.io.WebSocketFrame;
+import com.fusionalliance.internal.planpokerserver.vo.ServerResponse;
+import com.fusionalliance.internal.planpokerserver.vo.ServerUpdate;
+import com.fusionalliance.internal.planpokerserver.vo.Voter;
+import com.google.gson.Gson;
+
+/**
+ * This class checks that {@link JsonWriter} produces the same bytes as Gson for server updates and responses, then compares their cost, for
+ * rooms of 10 to 1000 voters.
+ * <p>
+ * The check covers random names drawn from characters Gson escapes, non-ASCII characters, surrogate pairs, and lone surrogates.
+ * <p>
+ * Usage: <code>JsonWriterBenchmark [millisPerCase]</code>
+ */
+public final class JsonWriterBenchmark {
+	private static final int[] ROOM_SIZES = { 10, 50, 250, 1000 };
+	private static final char[] AWKWARD_CHARS = { 'a', 'Z', '0', ' ', '"', '\\', '/', '<', '>', '&', '=', '\'', '\n', '\t', '\u0000', '\u001f',
+			'\u007f', '\u00e9', '\u07ff', '\u0800', '\u20ac', '\u2028', '\u2029', '\uffff', '\ud83d', '\ude00' };
+	private static final Gson GSON = new Gson();
+
+	/** Defeats dead code elimination */
+	private static long sink = 0;
+
+	public static void main(final String[] args) throws Exception {
+		final int millisPerCase = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+		verify();
+
+		System.out.println(String.format("%6s %8s %12s %12s %8s", "voters", "bytes", "gson ns", "writer ns", "speedup"));
+
+		for (int roomSize : ROOM_SIZES) {
+			final TreeSet<Voter> voters = new TreeSet<>();
+			for (int i = 0; i < roomSize; i++) {
+				final Voter voter = new Voter("Voter number " + i);
+				voter.setVote(ThreadLocalRandom.current().nextInt(-1, 11));
+				voters.add(voter);
+			}
+
+			final ServerUpdate serverUpdate = new ServerUpdate(roomSize, true, Collections.singletonList("A new voter joined: Voter number 0"), 2, 5,
+					voters, Collections.<String>emptyList());
+
+			runGson(serverUpdate, millisPerCase);
+			final double gsonNanos = runGson(serverUpdate, millisPerCase);
+			runWriter(serverUpdate, millisPerCase);
+			final double writerNanos = runWriter(serverUpdate, millisPerCase);
+
+			System.out.println(String.format("%6d %8d %12.0f %12.0f %7.1fx", roomSize, GSON.toJson(serverUpdate).getBytes(StandardCharsets.UTF_8).length,
+					gsonNanos, writerNanos, gsonNanos / writerNanos));
+		}
+
+		System.out.println("(" + sink + ")");
+	}
+
+	/**
+	 * Fail unless the writer and Gson produce the same bytes.
+	 */
+	private static void verify() {
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		for (int i = 0; i < 10_000; i++) {
+			final TreeSet<Voter> voters = new TreeSet<>();
+			for (int v = random.nextInt(4); v > 0; v--) {
+				final Voter voter = new Voter("v" + randomString(random));
+				voter.setVote(random.nextInt(-1, 11));
+				voters.add(voter);
+			}
+
+			final boolean withMessage = random.nextBoolean();
+			final ServerUpdate serverUpdate = new ServerUpdate(random.nextLong(Long.MAX_VALUE), random.nextBoolean(),
+					withMessage ? Arrays.asList(randomString(random), randomString(random)) : Collections.<String>emptyList(), random.nextInt(3),
+					random.nextInt(-1, 11), voters, Arrays.asList(randomString(random)));
+			compare(GSON.toJson(serverUpdate), writeJson(serverUpdate));
+
+			final ServerResponse serverResponse = random.nextBoolean() ? new ServerResponse() : new ServerResponse("x" + randomString(random));
+			final JsonWriter jsonWriter = new JsonWriter(BufferPool.SHARED, 0, 16);
+			serverResponse.writeJson(jsonWriter);
+			compare(GSON.toJson(serverResponse), jsonWriter.finish());
+		}
+	}
+
+	private static String randomString(final ThreadLocalRandom randomParm) {
+		final StringBuilder builder = new StringBuilder();
+		for (int i = randomParm.nextInt(12); i > 0; i--) {
+			builder.append(AWKWARD_CHARS[randomParm.nextInt(AWKWARD_CHARS.length)]);
+		}
+
+		return builder.toString();
+	}
+
+	private static PooledBuffer writeJson(final ServerUpdate serverUpdateParm) {
+		final JsonWriter jsonWriter = new JsonWriter(BufferPool.SHARED, WebSocketFrame.MAX_HEADER_LENGTH, 16);
+		serverUpdateParm.writeJson(jsonWriter);
+
+		return jsonWriter.finish();
+	}
+
+	/**
+	 * Fail unless the buffer holds the UTF-8 of the JSON. Releases the buffer.
+	 */
+	private static void compare(final String jsonParm, final PooledBuffer pooledBufferParm) {
+		final ByteBuffer written = pooledBufferParm.getBuffer();
+		final byte[] writtenBytes = new byte[written.remaining()];
+		written.duplicate().get(writtenBytes);
+		pooledBufferParm.release();
+
+		if (!Arrays.equals(jsonParm.getBytes(StandardCharsets.UTF_8), writtenBytes)) {
+			throw new IllegalStateException("Output differs from Gson:\n" + jsonParm + "\n" + new String(writtenBytes, StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Serialize repeatedly for the period, as broadcasts did with Gson: a String, then its UTF-8 bytes.
+	 *
+	 * @return nanos per update
+	 */
+	private static double runGson(final ServerUpdate serverUpdateParm, final int millisParm) {
+		final long startNanos = System.nanoTime();
+		final long endNanos = startNanos + millisParm * 1_000_000L;
+		long iterations = 0;
+
+		while (System.nanoTime() < endNanos) {
+			sink += GSON.toJson(serverUpdateParm).getBytes(StandardCharsets.UTF_8).length;
+			iterations++;
+		}
+
+		return (System.nanoTime() - startNanos) / (double) iterations;
+	}
+
+	/**
+	 * Serialize repeatedly for the period into pooled buffers.
+	 *
+	 * @return nanos per update
+	 */
+	private static double runWriter(final ServerUpdate serverUpdateParm, final int millisParm) {
+		final long startNanos = System.nanoTime();
+		final long endNanos = startNanos + millisParm * 1_000_000L;
+		long iterations = 0;
+
+		while (System.nanoTime() < endNanos) {
+			final PooledBuffer pooledBuffer = writeJson(serverUpdateParm);
+			sink += pooledBuffer.getBuffer().remaining();
+			pooledBuffer.release();
+			iterations++;
+		}
+
+		return (System.nanoTime() - startNanos) / (double) iterations;
+	}
+
+	/**
+	 * Hidden constructor
+	 */
+	private JsonWriterBenchmark() {
+		// Do nothing
+	}
+}
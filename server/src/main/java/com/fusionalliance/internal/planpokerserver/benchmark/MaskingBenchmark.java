@@ -0,0 +1,169 @@
+package com.fusionalliance.internal.planpokerserver.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.fusionalliance.internal.planpokerserver.io.WebSocketFrame;
+
+/**
+ * This class compares {@link WebSocketFrame#applyMask(ByteBuffer, int, int, int)} with the byte-at-a-time loop it replaced, over heap and direct
+ * buffers, for payloads from 16 B to 64 KB.
+ * <p>
+ * Each case is warmed up before it is timed, so that both loops are compiled. Both results are checked against each other before timing.
+ * <p>
+ * Run heap and direct buffers in separate JVMs: a server's pool holds only one kind, and mixing them in one run makes the buffer calls
+ * polymorphic, which hides the difference being measured.
+ * <p>
+ * Usage: <code>MaskingBenchmark [heap|direct] [millisPerCase]</code>
+ */
+public final class MaskingBenchmark {
+	private static final int[] PAYLOAD_LENGTHS = { 16, 64, 256, 1024, 4096, 16384, 65536 };
+
+	/** Maskings between clock reads */
+	private static final int BATCH = 256;
+
+	/** Defeats dead code elimination */
+	private static long sink = 0;
+
+	public static void main(final String[] args) throws Exception {
+		final boolean direct = args.length > 0 && "direct".equals(args[0]);
+		final int millisPerCase = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		final int mask = ThreadLocalRandom.current().nextInt();
+
+		// Tails of every length, and either byte order
+		for (int payloadLength = 0; payloadLength < 40; payloadLength++) {
+			verify(allocate(direct, payloadLength), payloadLength, mask);
+			verify(allocate(direct, payloadLength).order(ByteOrder.LITTLE_ENDIAN), payloadLength, mask);
+		}
+
+		System.out.println(String.format("%-7s %8s %14s %14s %8s", "buffer", "bytes", "byte MB/s", "word MB/s", "speedup"));
+
+		for (int payloadLength : PAYLOAD_LENGTHS) {
+			final ByteBuffer buffer = allocate(direct, payloadLength);
+			verify(buffer, payloadLength, mask);
+
+			final double byteRate = measure(buffer, payloadLength, mask, false, millisPerCase);
+			final double wordRate = measure(buffer, payloadLength, mask, true, millisPerCase);
+
+			System.out.println(String.format("%-7s %8d %14.0f %14.0f %7.1fx", direct ? "direct" : "heap", payloadLength, byteRate, wordRate,
+					wordRate / byteRate));
+		}
+
+		System.out.println("(" + sink + ")");
+	}
+
+	private static ByteBuffer allocate(final boolean directParm, final int capacityParm) {
+		return directParm ? ByteBuffer.allocateDirect(capacityParm) : ByteBuffer.allocate(capacityParm);
+	}
+
+	/**
+	 * Fail unless both loops produce the same bytes.
+	 */
+	private static void verify(final ByteBuffer bufferParm, final int lengthParm, final int maskParm) {
+		for (int i = 0; i < lengthParm; i++) {
+			bufferParm.put(i, (byte) ThreadLocalRandom.current().nextInt());
+		}
+
+		final ByteBuffer copy = allocate(bufferParm.isDirect(), lengthParm).order(bufferParm.order());
+		copy.put(bufferParm.duplicate()).flip();
+
+		applyMaskByByte(bufferParm, 0, lengthParm, maskParm);
+		WebSocketFrame.applyMask(copy, 0, lengthParm, maskParm);
+
+		for (int i = 0; i < lengthParm; i++) {
+			if (bufferParm.get(i) != copy.get(i)) {
+				throw new IllegalStateException("Masking differs at " + i + " of " + lengthParm);
+			}
+		}
+	}
+
+	/**
+	 * Return the MB/s masked by one loop: warm up for the full period, then time the same period.
+	 */
+	private static double measure(final ByteBuffer bufferParm, final int lengthParm, final int maskParm, final boolean wordParm,
+			final int millisParm) {
+		if (wordParm) {
+			runByWord(bufferParm, lengthParm, maskParm, millisParm);
+		} else {
+			runByByte(bufferParm, lengthParm, maskParm, millisParm);
+		}
+
+		final long startNanos = System.nanoTime();
+		final long iterations = wordParm ? runByWord(bufferParm, lengthParm, maskParm, millisParm)
+				: runByByte(bufferParm, lengthParm, maskParm, millisParm);
+		final long elapsedNanos = System.nanoTime() - startNanos;
+
+		return iterations * (double) lengthParm / elapsedNanos * 1000;
+	}
+
+	/**
+	 * Mask repeatedly for the period with {@link WebSocketFrame#applyMask(ByteBuffer, int, int, int)}. Each loop has its own method, so that the
+	 * compiler sees one loop per call site.
+	 *
+	 * @return the number of times the buffer was masked
+	 */
+	private static long runByWord(final ByteBuffer bufferParm, final int lengthParm, final int maskParm, final int millisParm) {
+		final long endNanos = System.nanoTime() + millisParm * 1_000_000L;
+		long iterations = 0;
+
+		while (System.nanoTime() < endNanos) {
+			// Enough work between clock reads that the clock does not dominate small payloads
+			for (int i = 0; i < BATCH; i++) {
+				WebSocketFrame.applyMask(bufferParm, 0, lengthParm, maskParm);
+			}
+
+			iterations += BATCH;
+		}
+
+		sink += bufferParm.get(0);
+
+		return iterations;
+	}
+
+	/**
+	 * Mask repeatedly for the period with the old loop.
+	 *
+	 * @return the number of times the buffer was masked
+	 */
+	private static long runByByte(final ByteBuffer bufferParm, final int lengthParm, final int maskParm, final int millisParm) {
+		final long endNanos = System.nanoTime() + millisParm * 1_000_000L;
+		long iterations = 0;
+
+		while (System.nanoTime() < endNanos) {
+			for (int i = 0; i < BATCH; i++) {
+				applyMaskByByte(bufferParm, 0, lengthParm, maskParm);
+			}
+
+			iterations += BATCH;
+		}
+
+		sink += bufferParm.get(0);
+
+		return iterations;
+	}
+
+	/**
+	 * The loop used before masking went word at a time.
+	 */
+	private static void applyMaskByByte(final ByteBuffer bufferParm, final int offsetParm, final int lengthParm, final int maskParm) {
+		final byte[] mask = { (byte) (maskParm >>> 24), (byte) (maskParm >>> 16), (byte) (maskParm >>> 8), (byte) maskParm };
+
+		int maskIndex = 0;
+		for (int i = offsetParm; i < offsetParm + lengthParm; i++) {
+			bufferParm.put(i, (byte) (bufferParm.get(i) ^ mask[maskIndex]));
+
+			maskIndex++;
+			if (maskIndex >= mask.length) {
+				maskIndex = 0;
+			}
+		}
+	}
+
+	/**
+	 * Hidden constructor
+	 */
+	private MaskingBenchmark() {
+		// Do nothing
+	}
+}
@@ -0,0 +1,207 @@
+package com.fusionalliance.internal.planpokerserver.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fusionalliance.internal.planpokerserver.ModelActor;
+
+/**
+ * This class checks that {@link ModelActor} runs every event from several producers, each producer's in order, that a full queue rejects events
+ * but not control events, and that a timer scheduled after the model thread was idle waits its full delay, then compares the time to hand
+ * events to the model thread with the single thread executor the model ran on before, for each wait strategy.
+ * <p>
+ * Usage: <code>ModelQueueBenchmark [producers] [eventsPerProducer]</code>
+ */
+public final class ModelQueueBenchmark {
+	private static final int CAPACITY = 8192;
+	private static final int BATCH_SIZE = 256;
+	private static final long IDLE_MILLIS = 1000;
+	private static final long TIMER_DELAY_MILLIS = 300;
+
+	/** Written only on the model thread */
+	private static long[] lastSeen;
+	private static long outOfOrder = 0;
+
+	public static void main(final String[] args) throws Exception {
+		final int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		final int eventsPerProducer = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+		verifyRejectsWhenFull();
+
+		for (ModelActor.WaitStrategy waitStrategy : ModelActor.WaitStrategy.values()) {
+			verifyTimerAfterIdle(waitStrategy);
+		}
+
+		System.out.println(String.format("%-12s %12s", "queue", "ns/event"));
+
+		for (int round = 0; round < 2; round++) {
+			final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "model"));
+			final double executorNanos = run(executor, producers, eventsPerProducer);
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.SECONDS);
+			print(round, "executor", executorNanos);
+
+			for (ModelActor.WaitStrategy waitStrategy : ModelActor.WaitStrategy.values()) {
+				final ModelActor modelActor = new ModelActor("model", CAPACITY, BATCH_SIZE, waitStrategy);
+				modelActor.start();
+				final double actorNanos = run(modelActor::execute, producers, eventsPerProducer);
+				modelActor.shutdown();
+				print(round, waitStrategy.name().toLowerCase(), actorNanos);
+			}
+		}
+	}
+
+	/**
+	 * Fail unless a full queue rejects an event, promptly, yet still takes a control event, which then runs first.
+	 */
+	private static void verifyRejectsWhenFull() throws InterruptedException {
+		final int capacity = 16;
+		final ModelActor modelActor = new ModelActor("model", capacity, BATCH_SIZE, ModelActor.WaitStrategy.PARK);
+		final StringBuilder ran = new StringBuilder();
+
+		// Not yet started, so nothing is taken from the queue
+		for (int i = 0; i < capacity; i++) {
+			modelActor.execute(() -> ran.append('e'));
+		}
+
+		final long startNanos = System.nanoTime();
+		try {
+			modelActor.execute(() -> ran.append('x'));
+
+			throw new IllegalStateException("A full queue accepted an event");
+		} catch (final RejectedExecutionException e) {
+			final long waitedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+
+			if (waitedMillis > 100) {
+				throw new IllegalStateException("A full queue kept the producer waiting for millis: " + waitedMillis);
+			}
+		}
+
+		final CountDownLatch done = new CountDownLatch(1);
+		modelActor.executeControl(() -> ran.append('c'));
+		modelActor.start();
+		modelActor.execute(done::countDown);
+		done.await();
+		modelActor.shutdown();
+
+		if (!ran.toString().equals("c" + StringUtils.repeat('e', capacity))) {
+			throw new IllegalStateException("Events ran incorrectly when full: " + ran);
+		}
+	}
+
+	/**
+	 * Fail if a timer scheduled after the model thread was idle fires before its delay.
+	 *
+	 * @param waitStrategyParm required
+	 */
+	private static void verifyTimerAfterIdle(final ModelActor.WaitStrategy waitStrategyParm) throws InterruptedException {
+		final ModelActor modelActor = new ModelActor("model", CAPACITY, BATCH_SIZE, waitStrategyParm);
+		modelActor.start();
+		Thread.sleep(IDLE_MILLIS);
+
+		final CountDownLatch fired = new CountDownLatch(1);
+		final long[] elapsedMillis = { -1 };
+
+		modelActor.execute(() -> {
+			final long scheduledNanos = System.nanoTime();
+
+			modelActor.schedule(() -> {
+				elapsedMillis[0] = (System.nanoTime() - scheduledNanos) / 1_000_000;
+				fired.countDown();
+			}, TIMER_DELAY_MILLIS);
+		});
+
+		final boolean firedInTime = fired.await(TIMER_DELAY_MILLIS * 10, TimeUnit.MILLISECONDS);
+		modelActor.shutdown();
+
+		if (!firedInTime || elapsedMillis[0] < TIMER_DELAY_MILLIS) {
+			throw new IllegalStateException("A " + TIMER_DELAY_MILLIS + " ms timer scheduled after idling fired after " + elapsedMillis[0] + " ms");
+		}
+
+		System.out.println(String.format("%-12s %d ms timer after idling fired after %d ms", waitStrategyParm.name().toLowerCase(),
+				TIMER_DELAY_MILLIS, elapsedMillis[0]));
+	}
+
+	private static void print(final int roundParm, final String queueParm, final double nanosParm) {
+		// The first round warms up
+		if (roundParm > 0) {
+			System.out.println(String.format("%-12s %12.1f", queueParm, nanosParm));
+		}
+	}
+
+	/**
+	 * Hand the events from the producers to the model thread and wait until every one has run.
+	 *
+	 * @return nanos per event
+	 */
+	private static double run(final Executor executorParm, final int producersParm, final int eventsPerProducerParm) throws InterruptedException {
+		lastSeen = new long[producersParm];
+		outOfOrder = 0;
+
+		final CountDownLatch done = new CountDownLatch(1);
+		final long total = (long) producersParm * eventsPerProducerParm;
+		final long[] ran = { 0 };
+		final Thread[] threads = new Thread[producersParm];
+
+		final long startNanos = System.nanoTime();
+
+		for (int p = 0; p < producersParm; p++) {
+			final int producer = p;
+
+			threads[p] = new Thread(() -> {
+				for (long sequence = 1; sequence <= eventsPerProducerParm; sequence++) {
+					final long current = sequence;
+
+					final Runnable event = () -> {
+						if (lastSeen[producer] != current - 1) {
+							outOfOrder++;
+						}
+						lastSeen[producer] = current;
+
+						if (++ran[0] == total) {
+							done.countDown();
+						}
+					};
+
+					// The producers outpace the model thread, so the queue may stay full past the wait; offer again, as a client would retry
+					while (true) {
+						try {
+							executorParm.execute(event);
+
+							break;
+						} catch (final RejectedExecutionException e) {
+							Thread.yield();
+						}
+					}
+				}
+			});
+			threads[p].start();
+		}
+
+		done.await();
+		final long elapsedNanos = System.nanoTime() - startNanos;
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		if (outOfOrder != 0) {
+			throw new IllegalStateException("Events ran out of order: " + outOfOrder);
+		}
+
+		return elapsedNanos / (double) total;
+	}
+
+	/**
+	 * Hidden constructor
+	 */
+	private ModelQueueBenchmark() {
+		// Do nothing
+	}
+}
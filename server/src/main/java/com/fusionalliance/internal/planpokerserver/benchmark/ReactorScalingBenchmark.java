@@ -0,0 +1,158 @@
+package com.fusionalliance.internal.planpokerserver.benchmark;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fusionalliance.internal.planpokerserver.CommunicationsServer;
+import com.fusionalliance.internal.planpokerserver.vo.ServerResponse;
+
+/**
+ * This class measures request throughput of {@link CommunicationsServer} as the number of reactors grows from 1 to N.
+ * <p>
+ * Each client thread keeps one connection open and sends POST requests back to back, reading each response before sending the next. The
+ * request listener answers immediately, so the measurement covers the network engine only: accept, parsing, JSON decoding, and response writes.
+ * <p>
+ * Usage: <code>ReactorScalingBenchmark [maxReactors] [clients] [seconds]</code>
+ */
+public final class ReactorScalingBenchmark {
+	private static final byte[] REQUEST_BODY = "{\"requestType\":\"refresh\",\"voterName\":\"benchmark\"}".getBytes(US_ASCII);
+	private static final byte[] REQUEST = concat(("POST /request HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\nContent-Length: "
+			+ REQUEST_BODY.length + "\r\n\r\n").getBytes(US_ASCII), REQUEST_BODY);
+
+	public static void main(final String[] args) throws Exception {
+		final int maxReactors = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		final int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+		final int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		System.out.println("clients=" + clients + " seconds=" + seconds);
+
+		for (int reactors = 1; reactors <= maxReactors; reactors *= 2) {
+			run(reactors, clients, seconds);
+
+			// Always include the maximum, even when it is not a power of two
+			if (reactors < maxReactors && reactors * 2 > maxReactors) {
+				run(maxReactors, clients, seconds);
+			}
+		}
+
+		System.exit(0);
+	}
+
+	/**
+	 * Measure one reactor count.
+	 */
+	private static void run(final int reactorsParm, final int clientsParm, final int secondsParm) throws Exception {
+		final CommunicationsServer server = new CommunicationsServer( //
+				(request, callback) -> callback.accept(new ServerResponse()), //
+				(voterName, deltaUpdates) -> {
+				}, //
+				voterName -> {
+				}, //
+				0, reactorsParm);
+		final Thread serverThread = new Thread(server::run, "acceptor");
+		serverThread.start();
+
+		final LongAdder completed = new LongAdder();
+		final AtomicBoolean measuring = new AtomicBoolean(false);
+		final AtomicBoolean stopping = new AtomicBoolean(false);
+		final CountDownLatch finished = new CountDownLatch(clientsParm);
+
+		for (int i = 0; i < clientsParm; i++) {
+			final Thread clientThread = new Thread(() -> {
+				try (Socket socket = new Socket()) {
+					socket.setTcpNoDelay(true);
+					socket.connect(new InetSocketAddress("localhost", server.getPort()));
+
+					final OutputStream output = socket.getOutputStream();
+					final InputStream input = socket.getInputStream();
+					final byte[] readBuffer = new byte[4096];
+
+					while (!stopping.get()) {
+						output.write(REQUEST);
+						readResponse(input, readBuffer);
+
+						if (measuring.get()) {
+							completed.increment();
+						}
+					}
+				} catch (final Exception e) {
+					System.err.println("Client failed: " + e);
+				} finally {
+					finished.countDown();
+				}
+			});
+			clientThread.start();
+		}
+
+		// Warm up, then measure
+		Thread.sleep(1000);
+		measuring.set(true);
+		final long start = System.nanoTime();
+		Thread.sleep(secondsParm * 1000L);
+		measuring.set(false);
+		final long elapsed = System.nanoTime() - start;
+
+		stopping.set(true);
+		finished.await();
+		server.shutdown();
+		serverThread.join();
+
+		System.out.printf("reactors=%d requests/s=%.0f%n", reactorsParm, completed.sum() * 1e9 / elapsed);
+	}
+
+	/**
+	 * Read one response with a Content-Length body.
+	 */
+	private static void readResponse(final InputStream inputParm, final byte[] bufferParm) throws Exception {
+		int length = 0;
+		int headEnd = -1;
+		int contentLength = -1;
+
+		while (true) {
+			final int bytesRead = inputParm.read(bufferParm, length, bufferParm.length - length);
+			if (bytesRead == -1) {
+				throw new IllegalStateException("Connection closed.");
+			}
+			length += bytesRead;
+
+			if (headEnd == -1) {
+				final String received = new String(bufferParm, 0, length, US_ASCII);
+				headEnd = received.indexOf("\r\n\r\n");
+
+				if (headEnd == -1) {
+					continue;
+				}
+
+				headEnd += 4;
+				final int lengthStart = received.indexOf("Content-Length: ") + "Content-Length: ".length();
+				contentLength = Integer.parseInt(received.substring(lengthStart, received.indexOf("\r\n", lengthStart)));
+			}
+
+			if (length >= headEnd + contentLength) {
+				return;
+			}
+		}
+	}
+
+	private static byte[] concat(final byte[] firstParm, final byte[] secondParm) {
+		final byte[] result = new byte[firstParm.length + secondParm.length];
+		System.arraycopy(firstParm, 0, result, 0, firstParm.length);
+		System.arraycopy(secondParm, 0, result, firstParm.length, secondParm.length);
+
+		return result;
+	}
+
+	/**
+	 * Hidden constructor
+	 */
+	private ReactorScalingBenchmark() {
+		// Do nothing
+	}
+}
@@ -0,0 +1,123 @@
+package com.fusionalliance.internal.planpokerserver.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.fusionalliance.internal.planpokerserver.io.NameDictionary;
+import com.fusionalliance.internal.planpokerserver.vo.BinaryServerUpdate;
+import com.fusionalliance.internal.planpokerserver.vo.ServerUpdate;
+import com.fusionalliance.internal.planpokerserver.vo.Voter;
+import com.google.gson.Gson;
+
+/**
+ * This class compares the JSON server update, as built by Gson, with {@link BinaryServerUpdate}: bytes per broadcast, and the cost of encoding
+ * one, for rooms of 10 to 1000 voters.
+ * <p>
+ * Two updates are measured: the snapshot a voter receives on connecting, and the delta broadcast for one vote. The binary size is given for a
+ * connection that has not seen the names, and for one that has; the timing includes capturing the update, as a broadcast does, and encoding it
+ * for a connection that has seen the names.
+ * <p>
+ * Usage: <code>ServerUpdateEncodingBenchmark [millisPerCase]</code>
+ */
+public final class ServerUpdateEncodingBenchmark {
+	private static final int[] ROOM_SIZES = { 10, 50, 250, 1000 };
+	private static final Gson GSON = new Gson();
+
+	/** Defeats dead code elimination */
+	private static long sink = 0;
+
+	public static void main(final String[] args) throws Exception {
+		final int millisPerCase = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+		System.out.println(String.format("%-8s %6s %8s %10s %10s %10s %10s %7s", "update", "voters", "json B", "binary B", "seen B", "json ns",
+				"binary ns", "speedup"));
+
+		for (int roomSize : ROOM_SIZES) {
+			final TreeSet<Voter> voters = new TreeSet<>();
+			for (int i = 0; i < roomSize; i++) {
+				final Voter voter = new Voter("Voter number " + i);
+				voter.setVote(ThreadLocalRandom.current().nextInt(-1, 11));
+				voters.add(voter);
+			}
+
+			final ServerUpdate snapshot = new ServerUpdate(roomSize, true, Collections.singletonList("A new voter joined: Voter number 0"), 1, -1,
+					voters, Collections.<String>emptyList());
+			final ServerUpdate delta = new ServerUpdate(roomSize + 1, false, Collections.singletonList("Vote by: Voter number 0"), 1, -1,
+					Collections.singletonList(voters.first()), Collections.<String>emptyList());
+
+			report("snapshot", roomSize, snapshot, voters, millisPerCase);
+			report("delta", roomSize, delta, voters, millisPerCase);
+		}
+
+		System.out.println("(" + sink + ")");
+	}
+
+	private static void report(final String labelParm, final int roomSizeParm, final ServerUpdate serverUpdateParm, final TreeSet<Voter> votersParm,
+			final int millisParm) {
+		final int jsonLength = GSON.toJson(serverUpdateParm).getBytes(StandardCharsets.UTF_8).length;
+
+		final BinaryServerUpdate binaryServerUpdate = new BinaryServerUpdate(serverUpdateParm);
+		final NameDictionary dictionary = new NameDictionary();
+		final int unseenLength = binaryServerUpdate.encode(dictionary).remaining();
+
+		// Every name is now in the dictionary, as on a connection that received the snapshot
+		new BinaryServerUpdate(new ServerUpdate(0, true, Collections.<String>emptyList(), 0, -1, votersParm, Collections.<String>emptyList()))
+				.encode(dictionary);
+		final int seenLength = binaryServerUpdate.encode(dictionary).remaining();
+
+		// Warm up, then time
+		runJson(serverUpdateParm, millisParm);
+		final double jsonNanos = runJson(serverUpdateParm, millisParm);
+		runBinary(serverUpdateParm, dictionary, millisParm);
+		final double binaryNanos = runBinary(serverUpdateParm, dictionary, millisParm);
+
+		System.out.println(String.format("%-8s %6d %8d %10d %10d %10.0f %10.0f %6.1fx", labelParm, roomSizeParm, jsonLength, unseenLength, seenLength,
+				jsonNanos, binaryNanos, jsonNanos / binaryNanos));
+	}
+
+	/**
+	 * Encode repeatedly for the period, as the JSON broadcast does.
+	 *
+	 * @return nanos per update
+	 */
+	private static double runJson(final ServerUpdate serverUpdateParm, final int millisParm) {
+		final long startNanos = System.nanoTime();
+		final long endNanos = startNanos + millisParm * 1_000_000L;
+		long iterations = 0;
+
+		while (System.nanoTime() < endNanos) {
+			sink += GSON.toJson(serverUpdateParm).getBytes(StandardCharsets.UTF_8).length;
+			iterations++;
+		}
+
+		return (System.nanoTime() - startNanos) / (double) iterations;
+	}
+
+	/**
+	 * Capture and encode repeatedly for the period, as the binary broadcast does for one connection.
+	 *
+	 * @return nanos per update
+	 */
+	private static double runBinary(final ServerUpdate serverUpdateParm, final NameDictionary dictionaryParm, final int millisParm) {
+		final long startNanos = System.nanoTime();
+		final long endNanos = startNanos + millisParm * 1_000_000L;
+		long iterations = 0;
+
+		while (System.nanoTime() < endNanos) {
+			sink += new BinaryServerUpdate(serverUpdateParm).encode(dictionaryParm).remaining();
+			iterations++;
+		}
+
+		return (System.nanoTime() - startNanos) / (double) iterations;
+	}
+
+	/**
+	 * Hidden constructor
+	 */
+	private ServerUpdateEncodingBenchmark() {
+		// Do nothing
+	}
+}
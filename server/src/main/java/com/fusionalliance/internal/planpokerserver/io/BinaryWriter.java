@@ -0,0 +1,134 @@
+package com.fusionalliance.internal.planpokerserver.io;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class writes a binary WebSocket message into a growable array. Integers are written as unsigned LEB128 varints: seven bits per byte,
+ * low bits first, the high bit set on every byte but the last, so that the small numbers of a server update take one byte.
+ * <p>
+ * A writer is meant to be reused, see {@link #clear()}. This class is not thread safe.
+ */
+public final class BinaryWriter {
+	private byte[] bytes;
+	private int position = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param initialCapacityParm at least 1; the array grows as needed
+	 */
+	public BinaryWriter(final int initialCapacityParm) {
+		check(initialCapacityParm > 0, "The initial capacity must be positive.");
+
+		bytes = new byte[initialCapacityParm];
+	}
+
+	/**
+	 * Discard what was written, keeping the array.
+	 *
+	 * @return this
+	 */
+	public BinaryWriter clear() {
+		position = 0;
+
+		return this;
+	}
+
+	/**
+	 * @param valueParm the low 8 bits are written
+	 * @return this
+	 */
+	public BinaryWriter putByte(final int valueParm) {
+		ensureRemaining(1);
+		bytes[position++] = (byte) valueParm;
+
+		return this;
+	}
+
+	/**
+	 * @param bytesParm required
+	 * @return this
+	 */
+	public BinaryWriter putBytes(final byte[] bytesParm) {
+		ensureRemaining(bytesParm.length);
+		System.arraycopy(bytesParm, 0, bytes, position, bytesParm.length);
+		position += bytesParm.length;
+
+		return this;
+	}
+
+	/**
+	 * @param valueParm at least 0
+	 * @return this
+	 */
+	public BinaryWriter putVarint(final long valueParm) {
+		check(valueParm >= 0, "A varint may not be negative: " + valueParm);
+
+		ensureRemaining(10);
+
+		long value = valueParm;
+		while (value >= 0x80) {
+			bytes[position++] = (byte) (value | 0x80);
+			value >>>= 7;
+		}
+		bytes[position++] = (byte) value;
+
+		return this;
+	}
+
+	/**
+	 * Write the length of the bytes as a varint, then the bytes.
+	 *
+	 * @param utf8Parm required, usually the UTF-8 encoding of a string
+	 * @return this
+	 */
+	public BinaryWriter putLengthPrefixed(final byte[] utf8Parm) {
+		return putVarint(utf8Parm.length).putBytes(utf8Parm);
+	}
+
+	/**
+	 * Write a name through the dictionary: a varint whose low bit is 0 if the rest is the name's index in the dictionary; otherwise, the rest is
+	 * the length of the UTF-8 name that follows, and the name is added to the dictionary.
+	 *
+	 * @param nameParm       required
+	 * @param utf8Parm       required, the UTF-8 encoding of the name
+	 * @param dictionaryParm required, the receiving connection's
+	 * @return this
+	 */
+	public BinaryWriter putName(final String nameParm, final byte[] utf8Parm, final NameDictionary dictionaryParm) {
+		final int index = dictionaryParm.indexOf(nameParm);
+
+		if (index >= 0) {
+			return putVarint((long) index << 1);
+		}
+
+		putVarint(((long) utf8Parm.length << 1) | 1).putBytes(utf8Parm);
+		dictionaryParm.add(nameParm);
+
+		return this;
+	}
+
+	/**
+	 * Return what was written.
+	 *
+	 * @return a view of the array, valid until the next write or {@link #clear()}
+	 */
+	public ByteBuffer toByteBuffer() {
+		return ByteBuffer.wrap(bytes, 0, position);
+	}
+
+	public int position() {
+		return position;
+	}
+
+	private void ensureRemaining(final int lengthParm) {
+		if (bytes.length - position >= lengthParm) {
+			return;
+		}
+
+		bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + lengthParm));
+	}
+}
@@ -0,0 +1,215 @@
+package com.fusionalliance.internal.planpokerserver.io;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class holds one server update on its way to one or more WebSockets. It is immutable once created, and shared by the connections; each
+ * connection asks for the encoding that suits it once the update is about to be written, see {@link ClientConnection#sendLatest}.
+ * <p>
+ * The plain encoding, and the encoding compressed without context, are the same for every connection, so each is created once and shared. A
+ * text that fits in one frame is its own plain encoding: the frame header is written into the room left before it. Otherwise, encodings are
+ * created on first use. Connections keeping a compression context get their own encoding.
+ * <p>
+ * An update may also have a binary form, for connections that negotiated binary messages. Each such connection encodes it against its own
+ * {@link NameDictionary}, so the binary encoding is never shared. Other messages, such as the replies to requests received on a WebSocket, are
+ * text only, and sent as text on every connection; see {@link ClientConnection#sendMessage(BroadcastMessage)}.
+ * <p>
+ * Like {@link PooledBuffer}, the creator holds the first reference and each connection holding the update calls {@link #retain()}; the shared
+ * encodings are released with the last reference.
+ * <p>
+ * This class is thread safe.
+ */
+public final class BroadcastMessage {
+	/** The text of the message, after room for a frame header; never modified once constructed. Null if no connection needs text */
+	private final PooledBuffer text;
+	private final int textStart;
+	private final int textEnd;
+	/** Null if no connection needs binary */
+	private final BinaryForm binaryForm;
+	private final int fragmentLength;
+	private final boolean replaceable;
+	private final AtomicInteger referenceCount = new AtomicInteger(1);
+
+	/** Created on first use; guarded by this */
+	private PooledBuffer plainFrames = null;
+	/** Created on first use; guarded by this */
+	private PooledBuffer compressedFrames = null;
+
+	/**
+	 * Constructor
+	 *
+	 * @param textParm           the text of the message, between the position and the limit, with {@link WebSocketFrame#MAX_HEADER_LENGTH}
+	 *                           bytes free before it, as written by {@link JsonWriter}; this message takes over the reference. Null if no
+	 *                           connection needs text
+	 * @param binaryFormParm     null if no connection needs binary
+	 * @param fragmentLengthParm the largest payload per frame
+	 * @param replaceableParm    false if a later update may not replace this one before it is written, such as a snapshot
+	 */
+	public BroadcastMessage(final PooledBuffer textParm, final BinaryForm binaryFormParm, final int fragmentLengthParm,
+			final boolean replaceableParm) {
+		check(textParm != null || binaryFormParm != null, "The message needs text or a binary form.");
+
+		text = textParm;
+		binaryForm = binaryFormParm;
+		fragmentLength = fragmentLengthParm;
+		replaceable = replaceableParm;
+
+		if (text == null) {
+			textStart = 0;
+			textEnd = 0;
+
+			return;
+		}
+
+		textStart = text.getBuffer().position();
+		textEnd = text.getBuffer().limit();
+
+		// A text that fits in one frame becomes the plain frame where it lies, with no copy
+		if (textEnd - textStart <= fragmentLength) {
+			WebSocketFrame.prependHeader(text.getBuffer(), WebSocketOpCode.TEXT, false);
+			plainFrames = text.retain();
+		}
+	}
+
+	/**
+	 * Return the frames of the message, encoded for a connection. The caller owns the returned reference.
+	 *
+	 * @param perMessageDeflateParm the connection's compression; null if none
+	 * @param nameDictionaryParm    the connection's names, if it negotiated binary messages; otherwise, null
+	 * @return a flipped buffer holding every frame of the message
+	 */
+	PooledBuffer encode(final PerMessageDeflate perMessageDeflateParm, final NameDictionary nameDictionaryParm) {
+		check(referenceCount.get() > 0, "The message was already released.");
+
+		// A message without a binary form, such as the reply to a request, is text on every connection
+		if (nameDictionaryParm != null && binaryForm != null) {
+			return encodeBinary(perMessageDeflateParm, nameDictionaryParm);
+		}
+
+		check(text != null, "The message has no text.");
+
+		if (perMessageDeflateParm != null && perMessageDeflateParm.isServerContextTakeover()) {
+			final ByteBuffer compressedPayload = perMessageDeflateParm.compress(getText());
+
+			return WebSocketFrame.encodeMessage(WebSocketOpCode.TEXT, compressedPayload, fragmentLength, true);
+		}
+
+		synchronized (this) {
+			if (perMessageDeflateParm == null) {
+				if (plainFrames == null) {
+					plainFrames = WebSocketFrame.encodeMessage(WebSocketOpCode.TEXT, getText(), fragmentLength, false);
+				}
+
+				return plainFrames.retain();
+			}
+
+			if (compressedFrames == null) {
+				final ByteBuffer compressedPayload = PerMessageDeflate.compressWithoutContext(getText());
+				compressedFrames = WebSocketFrame.encodeMessage(WebSocketOpCode.TEXT, compressedPayload, fragmentLength, true);
+			}
+
+			return compressedFrames.retain();
+		}
+	}
+
+	/**
+	 * Return the binary frames of the message, encoded against the connection's names.
+	 */
+	private PooledBuffer encodeBinary(final PerMessageDeflate perMessageDeflateParm, final NameDictionary nameDictionaryParm) {
+		check(binaryForm != null, "The message has no binary form.");
+
+		final ByteBuffer binaryPayload = binaryForm.encode(nameDictionaryParm);
+
+		if (perMessageDeflateParm == null) {
+			return WebSocketFrame.encodeMessage(WebSocketOpCode.BINARY, binaryPayload, fragmentLength, false);
+		}
+
+		final ByteBuffer compressedPayload;
+		if (perMessageDeflateParm.isServerContextTakeover()) {
+			compressedPayload = perMessageDeflateParm.compress(binaryPayload);
+		} else {
+			compressedPayload = PerMessageDeflate.compressWithoutContext(binaryPayload);
+		}
+
+		return WebSocketFrame.encodeMessage(WebSocketOpCode.BINARY, compressedPayload, fragmentLength, true);
+	}
+
+	/**
+	 * Add a reference.
+	 *
+	 * @return this
+	 */
+	public BroadcastMessage retain() {
+		check(referenceCount.getAndIncrement() > 0, "The message was already released.");
+
+		return this;
+	}
+
+	/**
+	 * Drop a reference; the last one releases the shared encodings.
+	 */
+	public void release() {
+		final int newCount = referenceCount.decrementAndGet();
+		check(newCount >= 0, "The message was released too often.");
+
+		if (newCount > 0) {
+			return;
+		}
+
+		synchronized (this) {
+			if (plainFrames != null) {
+				plainFrames.release();
+			}
+
+			if (compressedFrames != null) {
+				compressedFrames.release();
+			}
+
+			if (text != null) {
+				text.release();
+			}
+
+			plainFrames = null;
+			compressedFrames = null;
+		}
+	}
+
+	public boolean isReplaceable() {
+		return replaceable;
+	}
+
+	/**
+	 * Return the length of the text.
+	 *
+	 * @return 0 if the message has no text
+	 */
+	public int getPayloadLength() {
+		return textEnd - textStart;
+	}
+
+	/**
+	 * Return a view of the text, without the frame header.
+	 */
+	private ByteBuffer getText() {
+		final ByteBuffer view = text.getBuffer().duplicate();
+		view.limit(textEnd).position(textStart);
+
+		return view;
+	}
+
+	/**
+	 * This interface defines the contract for the binary form of a message.
+	 */
+	public interface BinaryForm {
+		/**
+		 * Encode the message for one connection. Names not yet in the dictionary are sent in full and added.
+		 *
+		 * @param nameDictionaryParm required
+		 * @return a buffer that is valid until the thread's next encoding
+		 */
+		ByteBuffer encode(final NameDictionary nameDictionaryParm);
+	}
+}
@@ -0,0 +1,232 @@
+package com.fusionalliance.internal.planpokerserver.io;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fusionalliance.internal.planpokerserver.utility.Configuration;
+
+/**
+ * This class implements a pool of ByteBuffers in power-of-two size classes, from 512 bytes to 128K. Socket reads, outbound frames, and
+ * responses borrow buffers here instead of allocating new ones, so that bursts of connections and broadcasts do not turn into garbage.
+ * <p>
+ * A request is rounded up to the next size class; requests above the largest class are allocated exactly and simply dropped on release. Each
+ * class keeps at most a fixed number of bytes of idle buffers; beyond that, released buffers are left to the garbage collector. Buffers may be
+ * direct, which saves the JDK's copy into a temporary direct buffer on each socket operation, at the cost of memory outside the heap.
+ * <p>
+ * With leak detection on, every borrowed buffer is tracked with a phantom reference and the stack trace of its acquisition; a
+ * {@link PooledBuffer} that is garbage collected without being released is logged with that trace. This costs a stack trace per acquisition,
+ * so it is meant for debugging. See {@link Configuration#isBufferLeakDetection()}.
+ * <p>
+ * This class is thread safe.
+ */
+public final class BufferPool {
+	private static final Logger LOG = LoggerFactory.getLogger(BufferPool.class);
+
+	/** The pool used by the server */
+	public static final BufferPool SHARED = new BufferPool(Configuration.isDirectBuffers(), Configuration.isBufferLeakDetection());
+
+	private static final int MIN_SIZE_SHIFT = 9;
+	private static final int MAX_SIZE_SHIFT = 17;
+	/** The most bytes of idle buffers kept per size class */
+	private static final int MAX_IDLE_BYTES_PER_CLASS = 4 * 1024 * 1024;
+
+	private final boolean direct;
+	private final boolean leakDetection;
+	private final Queue<ByteBuffer>[] idleBuffersByClass;
+	private final AtomicInteger outstandingCount = new AtomicInteger(0);
+	private final ReferenceQueue<PooledBuffer> leakQueue = new ReferenceQueue<>();
+	/** Tracks each outstanding buffer while leak detection is on; keeps the records reachable until they are enqueued */
+	private final Map<LeakRecord, Boolean> leakRecords = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param directParm        true for direct buffers
+	 * @param leakDetectionParm true to track unreleased buffers
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public BufferPool(final boolean directParm, final boolean leakDetectionParm) {
+		direct = directParm;
+		leakDetection = leakDetectionParm;
+
+		idleBuffersByClass = new Queue[MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1];
+		for (int i = 0; i < idleBuffersByClass.length; i++) {
+			final int size = 1 << (MIN_SIZE_SHIFT + i);
+			idleBuffersByClass[i] = new ArrayBlockingQueue<>(Math.max(16, MAX_IDLE_BYTES_PER_CLASS / size));
+		}
+	}
+
+	/**
+	 * Borrow a buffer with at least the capacity requested. The buffer is cleared: position 0, limit = capacity.
+	 *
+	 * @param minCapacityParm at least 0
+	 * @return
+	 */
+	public PooledBuffer acquire(final int minCapacityParm) {
+		check(minCapacityParm >= 0, "The capacity may not be negative: " + minCapacityParm);
+
+		if (leakDetection) {
+			reportLeaks();
+		}
+
+		final int sizeClass = findSizeClass(minCapacityParm);
+
+		ByteBuffer buffer = null;
+		if (sizeClass == -1) {
+			buffer = allocate(minCapacityParm);
+		} else {
+			buffer = idleBuffersByClass[sizeClass].poll();
+
+			if (buffer == null) {
+				buffer = allocate(1 << (MIN_SIZE_SHIFT + sizeClass));
+			}
+		}
+
+		final PooledBuffer pooledBuffer = new PooledBuffer(this, buffer);
+		outstandingCount.incrementAndGet();
+
+		if (leakDetection) {
+			final LeakRecord leakRecord = new LeakRecord(pooledBuffer, leakQueue, buffer.capacity());
+			leakRecords.put(leakRecord, Boolean.TRUE);
+			pooledBuffer.leakRecord = leakRecord;
+		}
+
+		return pooledBuffer;
+	}
+
+	/**
+	 * Borrow a buffer and fill it with the bytes. The buffer is flipped, ready to be written.
+	 *
+	 * @param bytesParm required
+	 * @return
+	 */
+	public PooledBuffer acquire(final byte[] bytesParm) {
+		final PooledBuffer pooledBuffer = acquire(bytesParm.length);
+		pooledBuffer.getBuffer().put(bytesParm).flip();
+
+		return pooledBuffer;
+	}
+
+	/**
+	 * Return the number of buffers borrowed and not yet released.
+	 *
+	 * @return
+	 */
+	public int getOutstandingCount() {
+		return outstandingCount.get();
+	}
+
+	public boolean isDirect() {
+		return direct;
+	}
+
+	/**
+	 * Take back a buffer whose last reference was released. Invoked by {@link PooledBuffer#release()}.
+	 *
+	 * @param pooledBufferParm required
+	 */
+	void release(final PooledBuffer pooledBufferParm) {
+		outstandingCount.decrementAndGet();
+
+		if (leakDetection) {
+			final LeakRecord leakRecord = pooledBufferParm.leakRecord;
+
+			if (leakRecord != null) {
+				leakRecords.remove(leakRecord);
+				leakRecord.clear();
+			}
+		}
+
+		final ByteBuffer buffer = pooledBufferParm.getBuffer();
+		final int capacity = buffer.capacity();
+
+		// Oversized, or not one of ours
+		if (Integer.bitCount(capacity) != 1 || buffer.isDirect() != direct) {
+			return;
+		}
+
+		final int sizeClass = Integer.numberOfTrailingZeros(capacity) - MIN_SIZE_SHIFT;
+		if (sizeClass < 0 || sizeClass >= idleBuffersByClass.length) {
+			return;
+		}
+
+		buffer.clear();
+
+		// A full class drops the buffer
+		idleBuffersByClass[sizeClass].offer(buffer);
+	}
+
+	/**
+	 * Return the index of the smallest size class holding the capacity.
+	 *
+	 * @param capacityParm
+	 * @return -1 if larger than the largest class
+	 */
+	private static int findSizeClass(final int capacityParm) {
+		if (capacityParm > 1 << MAX_SIZE_SHIFT) {
+			return -1;
+		}
+
+		if (capacityParm <= 1 << MIN_SIZE_SHIFT) {
+			return 0;
+		}
+
+		// Ceiling log2
+		return 32 - Integer.numberOfLeadingZeros(capacityParm - 1) - MIN_SIZE_SHIFT;
+	}
+
+	private ByteBuffer allocate(final int capacityParm) {
+		if (direct) {
+			return ByteBuffer.allocateDirect(capacityParm);
+		}
+
+		return ByteBuffer.allocate(capacityParm);
+	}
+
+	/**
+	 * Log each buffer that was garbage collected without being released.
+	 */
+	private void reportLeaks() {
+		Reference<? extends PooledBuffer> reference = null;
+
+		while ((reference = leakQueue.poll()) != null) {
+			final LeakRecord leakRecord = (LeakRecord) reference;
+
+			// Released at the same time it became unreachable
+			if (leakRecords.remove(leakRecord) == null) {
+				continue;
+			}
+
+			outstandingCount.decrementAndGet();
+
+			LOG.error("Buffer leak: a pooled buffer of " + leakRecord.capacity + " bytes was never released. It was acquired here:",
+					leakRecord.acquisition);
+		}
+	}
+
+	/**
+	 * This class records where a tracked buffer was acquired.
+	 */
+	static final class LeakRecord extends PhantomReference<PooledBuffer> {
+		private final int capacity;
+		private final Throwable acquisition = new Throwable("Buffer acquisition");
+
+		private LeakRecord(final PooledBuffer referentParm, final ReferenceQueue<PooledBuffer> queueParm, final int capacityParm) {
+			super(referentParm, queueParm);
+
+			capacity = capacityParm;
+		}
+	}
+}
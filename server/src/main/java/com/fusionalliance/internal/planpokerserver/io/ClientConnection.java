@@ -0,0 +1,738 @@
+package com.fusionalliance.internal.planpokerserver.io;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fusionalliance.internal.planpokerserver.utility.CommException;
+
+/**
+ * This class holds the state of a single client connection. An instance is attached to the connection's SelectionKey, so that reads can resume
+ * where the previous read stopped. Each connection belongs to one {@link Reactor}; reads happen only on its thread.
+ * <p>
+ * Writes never wait on the socket. {@link #send(ByteBuffer...)} may be called from any thread; sends from other threads are handed to the reactor
+ * thread, which performs the write. Outbound buffers and file regions are queued and written as far as the kernel send buffer allows; OP_WRITE
+ * interest is
+ * registered only while the queue is non-empty, and the selector loop drains the rest via {@link #flush()}. The queued byte count is compared
+ * against high- and low-water marks, so that a stuck consumer can be identified without affecting other connections.
+ * <p>
+ * Server updates are conflated: a WebSocket holds at most one update not yet queued, and a newer update replaces it; see
+ * {@link #sendLatest(BroadcastMessage, long)}. A client that misses a delta this way sees the gap in the sequence and asks for a snapshot,
+ * which is never replaced. The update is encoded, and compressed if need be, only when everything queued before it has been written.
+ */
+public class ClientConnection {
+	private static final Logger LOG = LoggerFactory.getLogger(ClientConnection.class);
+
+	/** Queued bytes above which the connection is considered backlogged */
+	public static final int HIGH_WATER_MARK = 1024 * 1024;
+	/** Queued bytes below which a backlogged connection is considered caught up */
+	public static final int LOW_WATER_MARK = 256 * 1024;
+	/** Maximum buffers passed to a single gathering write */
+	private static final int MAX_GATHER = 16;
+
+	private final SelectionKey key;
+	private final Reactor reactor;
+	private final SocketChannel socket;
+	private final HttpRequestParser requestParser = new HttpRequestParser();
+	/** Holds ByteBuffers, PooledViews, and FileRegions, in the order they are to be written */
+	private final Deque<Object> outboundQueue = new ArrayDeque<>();
+	private final ByteBuffer[] gatherBuffers = new ByteBuffer[MAX_GATHER];
+
+	/** Set when the connection is upgraded to a WebSocket */
+	private WebSocketFrameDecoder webSocketDecoder = null;
+	/** Set when the upgrade negotiated permessage-deflate */
+	private volatile PerMessageDeflate perMessageDeflate = null;
+	/** Set when the upgrade negotiated binary server updates; its contents are guarded by this */
+	private volatile NameDictionary nameDictionary = null;
+	/** Set when the upgrade negotiated a subprotocol, so the client applies deltas; otherwise it is sent a snapshot with every update */
+	private volatile boolean deltaUpdates = false;
+	/** The latest server update, waiting for the outbound queue to drain; guarded by this */
+	private BroadcastMessage pendingUpdate = null;
+	/** Millis at which the pending update started waiting; guarded by this */
+	private long pendingUpdateSince = 0;
+	private volatile String voterName = null;
+
+	private volatile long outboundBytes = 0;
+	/** Millis at which the high-water mark was exceeded; 0 if not backlogged */
+	private volatile long backloggedSince = 0;
+	/** A flush task is queued on the reactor */
+	private boolean flushScheduled = false;
+	/** Close the socket once the outbound queue is drained */
+	private boolean closeAfterFlush = false;
+
+	/** HTTP state, used only on the reactor thread */
+	private int httpRequestCount = 0;
+	/** A request is with the model, and the requests after it wait, so that responses go out in order */
+	private boolean httpResponsePending = false;
+	private long httpLastActiveMillis = System.currentTimeMillis();
+	/** The Connection header of the response to the current request; null if none is needed. Read by the thread writing the response */
+	private volatile String httpConnectionHeader = null;
+
+	/** Heartbeat state, used only on the reactor thread */
+	private long pingSentNanos = 0;
+	private int missedHeartbeats = 0;
+	/** The round trip of the last answered heartbeat; -1 until measured */
+	private volatile long roundTripNanos = -1;
+
+	/**
+	 * Constructor
+	 *
+	 * @param keyParm     required, the key of a registered SocketChannel
+	 * @param reactorParm required, the reactor that owns the key
+	 */
+	public ClientConnection(final SelectionKey keyParm, final Reactor reactorParm) {
+		check(keyParm != null, "The selection key may not be null.");
+		check(keyParm.channel() instanceof SocketChannel, "The selection key is not for a SocketChannel.");
+		check(reactorParm != null, "The reactor may not be null.");
+
+		key = keyParm;
+		reactor = reactorParm;
+		socket = (SocketChannel) keyParm.channel();
+	}
+
+	/**
+	 * Queue the buffers for writing and write as much as the socket currently accepts.
+	 * <p>
+	 * The connection owns the buffers until they are written; callers sharing a buffer must pass a duplicate. When called from a thread other than
+	 * the reactor thread, the write is performed later by the reactor; write errors then close the socket instead of being thrown.
+	 *
+	 * @param buffersParm required, flipped
+	 * @throws CommException
+	 */
+	public void send(final ByteBuffer... buffersParm) throws CommException {
+		check(buffersParm != null, "The buffers may not be null.");
+
+		synchronized (this) {
+			for (ByteBuffer buffer : buffersParm) {
+				check(buffer != null, "The buffer may not be null.");
+
+				if (!buffer.hasRemaining()) {
+					continue;
+				}
+
+				outboundQueue.addLast(buffer);
+				outboundBytes += buffer.remaining();
+			}
+		}
+
+		writeOrSchedule();
+	}
+
+	/**
+	 * Queue a pooled buffer for writing and write as much as the socket currently accepts. The connection takes over one reference, which it
+	 * releases once the buffer is written or the connection closes; a caller sending the same buffer elsewhere must {@link PooledBuffer#retain()}
+	 * it first. The connection writes its own duplicate, so the buffer's position is not disturbed.
+	 *
+	 * @param pooledBufferParm required, flipped
+	 * @throws CommException
+	 */
+	public void send(final PooledBuffer pooledBufferParm) throws CommException {
+		check(pooledBufferParm != null, "The buffer may not be null.");
+
+		final PooledView pooledView = new PooledView(pooledBufferParm);
+
+		synchronized (this) {
+			outboundQueue.addLast(pooledView);
+			outboundBytes += pooledView.view.remaining();
+		}
+
+		writeOrSchedule();
+	}
+
+	/**
+	 * Queue a head followed by a pooled body, and write as much as the socket currently accepts. The connection takes over the body's reference,
+	 * as for {@link #send(PooledBuffer)}.
+	 *
+	 * @param headParm required, flipped
+	 * @param bodyParm required, flipped
+	 * @throws CommException
+	 */
+	public void send(final ByteBuffer headParm, final PooledBuffer bodyParm) throws CommException {
+		check(headParm != null, "The head may not be null.");
+		check(bodyParm != null, "The body may not be null.");
+
+		final PooledView pooledView = new PooledView(bodyParm);
+
+		synchronized (this) {
+			outboundQueue.addLast(headParm);
+			outboundBytes += headParm.remaining();
+
+			outboundQueue.addLast(pooledView);
+			outboundBytes += pooledView.view.remaining();
+		}
+
+		writeOrSchedule();
+	}
+
+	/**
+	 * Queue a head followed by a file region, and write as much as the socket currently accepts. The region is sent with
+	 * {@link FileRegion#transferTo(java.nio.channels.WritableByteChannel)}; a partial transfer resumes when the socket is writable again.
+	 *
+	 * @param headParm   required, flipped
+	 * @param regionParm required, not shared with other sends
+	 * @throws CommException
+	 */
+	public void send(final ByteBuffer headParm, final FileRegion regionParm) throws CommException {
+		check(headParm != null, "The head may not be null.");
+		check(regionParm != null, "The file region may not be null.");
+
+		synchronized (this) {
+			outboundQueue.addLast(headParm);
+			outboundBytes += headParm.remaining();
+
+			if (regionParm.hasRemaining()) {
+				outboundQueue.addLast(regionParm);
+				outboundBytes += regionParm.remaining();
+			}
+		}
+
+		writeOrSchedule();
+	}
+
+	/**
+	 * Offer a server update, replacing the pending one, if any; a pending update that may not be replaced is queued ahead of it instead. The
+	 * update is queued once everything queued before it has been written. The connection takes over one reference; see
+	 * {@link BroadcastMessage#retain()}.
+	 * <p>
+	 * A connection whose pending update has been waiting longer than allowed, or that has been backlogged past the high-water mark longer than
+	 * allowed, has fallen behind; the update is then refused, and the caller should evict the client.
+	 *
+	 * @param updateParm          required
+	 * @param maxPendingMillisParm the longest an update may wait, or the connection stay backlogged
+	 * @return false if the connection has fallen behind
+	 * @throws CommException
+	 */
+	public boolean sendLatest(final BroadcastMessage updateParm, final long maxPendingMillisParm) throws CommException {
+		check(updateParm != null, "The update may not be null.");
+
+		final long nowMillis = System.currentTimeMillis();
+
+		synchronized (this) {
+			// Replies to requests, which are never replaced, may have filled the queue while no update was pending
+			if (getBackloggedMillis(nowMillis) > maxPendingMillisParm) {
+				updateParm.release();
+
+				return false;
+			}
+
+			if (pendingUpdate == null) {
+				pendingUpdateSince = nowMillis;
+			} else if (nowMillis - pendingUpdateSince > maxPendingMillisParm) {
+				updateParm.release();
+
+				return false;
+			} else if (pendingUpdate.isReplaceable()) {
+				pendingUpdate.release();
+			} else {
+				// Written ahead of the newer update, in order
+				queuePendingUpdate();
+			}
+
+			pendingUpdate = updateParm;
+		}
+
+		writeOrSchedule();
+
+		return true;
+	}
+
+	/**
+	 * Queue a message, such as the reply to a request, behind everything queued so far, and write as much as the socket currently accepts. Unlike
+	 * a server update, the message is never replaced. It is encoded, and compressed if need be, as it is queued, under the same lock as updates,
+	 * so that a compression context sees messages in the order they are written. The connection takes over one reference. A message sent once the
+	 * connection is closing is dropped.
+	 *
+	 * @param messageParm required, with text
+	 * @throws CommException
+	 */
+	public void sendMessage(final BroadcastMessage messageParm) throws CommException {
+		check(messageParm != null, "The message may not be null.");
+
+		synchronized (this) {
+			if (closeAfterFlush) {
+				messageParm.release();
+
+				return;
+			}
+
+			queueMessage(messageParm);
+		}
+
+		writeOrSchedule();
+	}
+
+	/**
+	 * Close the socket once everything queued so far has been written.
+	 */
+	public void closeAfterFlush() {
+		synchronized (this) {
+			closeAfterFlush = true;
+		}
+
+		try {
+			writeOrSchedule();
+		} catch (final CommException ce) {
+			// Already logged
+			close();
+		}
+	}
+
+	/**
+	 * Close the socket immediately, discarding anything queued. Pooled buffers held by the connection are returned.
+	 */
+	public void close() {
+		synchronized (this) {
+			for (Object item : outboundQueue) {
+				if (item instanceof PooledView) {
+					((PooledView) item).owner.release();
+				}
+			}
+
+			outboundQueue.clear();
+			outboundBytes = 0;
+
+			if (pendingUpdate != null) {
+				pendingUpdate.release();
+				pendingUpdate = null;
+			}
+		}
+
+		if (perMessageDeflate != null) {
+			perMessageDeflate.end();
+		}
+
+		// The read buffers belong to the reactor thread
+		if (reactor.isReactorThread()) {
+			releaseReadBuffers();
+		} else {
+			reactor.execute(this::releaseReadBuffers);
+		}
+
+		try {
+			socket.close();
+		} catch (final Exception e) {
+			// Do nothing
+		}
+	}
+
+	/**
+	 * Write queued buffers and file regions until the queue is empty or the socket stops accepting bytes. OP_WRITE interest is registered if bytes remain.
+	 *
+	 * @throws CommException
+	 */
+	public synchronized void flush() throws CommException {
+		flushScheduled = false;
+
+		while (true) {
+			if (outboundQueue.isEmpty()) {
+				if (pendingUpdate == null) {
+					break;
+				}
+
+				queuePendingUpdate();
+			}
+
+			final long bytesWritten;
+
+			if (outboundQueue.peekFirst() instanceof FileRegion) {
+				final FileRegion region = (FileRegion) outboundQueue.peekFirst();
+				bytesWritten = SocketChannelUtility.transfer(socket, region);
+
+				if (!region.hasRemaining()) {
+					outboundQueue.removeFirst();
+				}
+			} else {
+				bytesWritten = writeBuffers();
+			}
+
+			outboundBytes -= bytesWritten;
+
+			// Kernel send buffer is full
+			if (bytesWritten == 0) {
+				break;
+			}
+		}
+
+		updateWriteInterest();
+		updateBacklog();
+
+		if (closeAfterFlush && outboundQueue.isEmpty()) {
+			close();
+		}
+	}
+
+	/**
+	 * Move the pending update to the outbound queue, encoded for this connection.
+	 */
+	private void queuePendingUpdate() {
+		queueMessage(pendingUpdate);
+		pendingUpdate = null;
+	}
+
+	/**
+	 * Move a message to the outbound queue, encoded for this connection, and drop the connection's reference. Invoked holding the lock.
+	 */
+	private void queueMessage(final BroadcastMessage messageParm) {
+		final PooledView pooledView = new PooledView(messageParm.encode(perMessageDeflate, nameDictionary));
+
+		messageParm.release();
+
+		outboundQueue.addLast(pooledView);
+		outboundBytes += pooledView.view.remaining();
+	}
+
+	/**
+	 * Write the buffers at the front of the queue, up to the first file region, in one gathering write. Drained buffers are removed.
+	 *
+	 * @return the number of bytes written
+	 * @throws CommException
+	 */
+	private long writeBuffers() throws CommException {
+		int gatherCount = 0;
+		final Iterator<Object> iterator = outboundQueue.iterator();
+		while (iterator.hasNext() && gatherCount < MAX_GATHER) {
+			final Object item = iterator.next();
+
+			if (item instanceof ByteBuffer) {
+				gatherBuffers[gatherCount++] = (ByteBuffer) item;
+			} else if (item instanceof PooledView) {
+				gatherBuffers[gatherCount++] = ((PooledView) item).view;
+			} else {
+				break;
+			}
+		}
+
+		final long bytesWritten = SocketChannelUtility.write(socket, gatherBuffers, gatherCount);
+
+		for (int i = 0; i < gatherCount; i++) {
+			gatherBuffers[i] = null;
+		}
+
+		while (!outboundQueue.isEmpty()) {
+			final Object item = outboundQueue.peekFirst();
+
+			if (item instanceof ByteBuffer && !((ByteBuffer) item).hasRemaining()) {
+				outboundQueue.removeFirst();
+			} else if (item instanceof PooledView && !((PooledView) item).view.hasRemaining()) {
+				outboundQueue.removeFirst();
+				((PooledView) item).owner.release();
+			} else {
+				break;
+			}
+		}
+
+		return bytesWritten;
+	}
+
+	/**
+	 * Return the read buffers to the pool.
+	 */
+	private void releaseReadBuffers() {
+		requestParser.releaseBuffer();
+
+		if (webSocketDecoder != null) {
+			webSocketDecoder.releaseBuffer();
+		}
+	}
+
+	/**
+	 * Return the number of millis the connection has been backlogged: since the queued bytes passed the high-water mark, unless they have since
+	 * drained below the low-water mark.
+	 *
+	 * @param nowMillisParm the current time
+	 * @return 0 if not backlogged
+	 */
+	public long getBackloggedMillis(final long nowMillisParm) {
+		// Read once: the reactor may clear it meanwhile
+		final long since = backloggedSince;
+		if (since == 0) {
+			return 0;
+		}
+
+		return nowMillisParm - since;
+	}
+
+	public long getOutboundBytes() {
+		return outboundBytes;
+	}
+
+	public SelectionKey getKey() {
+		return key;
+	}
+
+	public SocketChannel getSocket() {
+		return socket;
+	}
+
+	public Reactor getReactor() {
+		return reactor;
+	}
+
+	public HttpRequestParser getRequestParser() {
+		return requestParser;
+	}
+
+	/**
+	 * Switch the connection to the WebSocket protocol. Bytes already received after the upgrade request are kept as the start of the first
+	 * frame.
+	 *
+	 * @param voterNameParm        required, the voter that owns this WebSocket
+	 * @param maxMessageLengthParm  the largest message accepted from the client
+	 * @param perMessageDeflateParm the negotiated compression; null if none
+	 * @param binaryUpdatesParm     true if server updates are sent in their binary form
+	 * @param deltaUpdatesParm      true if the client applies deltas; otherwise, it is sent a snapshot with every update
+	 */
+	public void upgradeToWebSocket(final String voterNameParm, final int maxMessageLengthParm, final PerMessageDeflate perMessageDeflateParm,
+			final boolean binaryUpdatesParm, final boolean deltaUpdatesParm) {
+		check(voterNameParm != null, "The voter name may not be null.");
+		check(webSocketDecoder == null, "The connection is already a WebSocket.");
+
+		webSocketDecoder = new WebSocketFrameDecoder(maxMessageLengthParm, perMessageDeflateParm != null);
+		perMessageDeflate = perMessageDeflateParm;
+		nameDictionary = binaryUpdatesParm ? new NameDictionary() : null;
+		deltaUpdates = deltaUpdatesParm;
+		webSocketDecoder.append(requestParser.takeRemaining());
+		voterName = voterNameParm;
+	}
+
+	/**
+	 * Return the WebSocket compression.
+	 *
+	 * @return null unless permessage-deflate was negotiated
+	 */
+	public PerMessageDeflate getPerMessageDeflate() {
+		return perMessageDeflate;
+	}
+
+	/**
+	 * Return true if server updates are sent to this WebSocket in their binary form.
+	 *
+	 * @return
+	 */
+	public boolean isBinaryUpdates() {
+		return nameDictionary != null;
+	}
+
+	/**
+	 * Return true if the client applies deltas, rather than needing a snapshot with every update.
+	 *
+	 * @return
+	 */
+	public boolean isDeltaUpdates() {
+		return deltaUpdates;
+	}
+
+	public boolean isWebSocket() {
+		return webSocketDecoder != null;
+	}
+
+	/**
+	 * Return the WebSocket frame decoder.
+	 *
+	 * @return null unless the connection was upgraded
+	 */
+	public WebSocketFrameDecoder getWebSocketDecoder() {
+		return webSocketDecoder;
+	}
+
+	/**
+	 * Return the voter name.
+	 *
+	 * @return null unless the connection was upgraded
+	 */
+	public String getVoterName() {
+		return voterName;
+	}
+
+	/**
+	 * Start on an HTTP request.
+	 *
+	 * @param connectionHeaderParm the Connection header of the response; "close" if the connection closes once it is written; null if none
+	 */
+	public void beginHttpRequest(final String connectionHeaderParm) {
+		httpRequestCount++;
+		httpConnectionHeader = connectionHeaderParm;
+	}
+
+	/**
+	 * Return the number of HTTP requests started on this connection.
+	 *
+	 * @return
+	 */
+	public int getHttpRequestCount() {
+		return httpRequestCount;
+	}
+
+	/**
+	 * Return the Connection header of the response to the current HTTP request. This may be invoked on any thread.
+	 *
+	 * @return null if none is needed
+	 */
+	public String getHttpConnectionHeader() {
+		return httpConnectionHeader;
+	}
+
+	public boolean isHttpResponsePending() {
+		return httpResponsePending;
+	}
+
+	public void setHttpResponsePending(final boolean httpResponsePendingParm) {
+		httpResponsePending = httpResponsePendingParm;
+	}
+
+	/**
+	 * Record that a request was received or a response completed; the idle timeout runs from the latest.
+	 *
+	 * @param nowMillisParm
+	 */
+	public void recordHttpActivity(final long nowMillisParm) {
+		httpLastActiveMillis = nowMillisParm;
+	}
+
+	public long getHttpLastActiveMillis() {
+		return httpLastActiveMillis;
+	}
+
+	/**
+	 * Return true if the connection is closed, or closes once the outbound queue is drained.
+	 *
+	 * @return
+	 */
+	public synchronized boolean isClosing() {
+		return closeAfterFlush || !socket.isOpen();
+	}
+
+	/**
+	 * Record a heartbeat PING. The PING counts as missed until a PONG arrives.
+	 *
+	 * @param sentNanosParm the System.nanoTime() carried in the PING payload
+	 */
+	public void recordPingSent(final long sentNanosParm) {
+		pingSentNanos = sentNanosParm;
+		missedHeartbeats++;
+	}
+
+	/**
+	 * Record a PONG. Any PONG shows the client is alive; one echoing the last heartbeat payload also yields the round trip time.
+	 *
+	 * @param payloadParm  required, flipped; its position is not changed
+	 * @param nowNanosParm the System.nanoTime() at which the PONG was processed
+	 */
+	public void recordPong(final ByteBuffer payloadParm, final long nowNanosParm) {
+		missedHeartbeats = 0;
+
+		if (payloadParm.remaining() == Long.BYTES && payloadParm.getLong(payloadParm.position()) == pingSentNanos) {
+			roundTripNanos = nowNanosParm - pingSentNanos;
+		}
+	}
+
+	/**
+	 * Return the number of heartbeat PINGs sent since the last PONG.
+	 *
+	 * @return
+	 */
+	public int getMissedHeartbeats() {
+		return missedHeartbeats;
+	}
+
+	/**
+	 * Return the round trip time of the last answered heartbeat.
+	 *
+	 * @return -1 if not yet measured
+	 */
+	public long getRoundTripNanos() {
+		return roundTripNanos;
+	}
+
+	/**
+	 * Write now when on the reactor thread; otherwise, let the reactor write.
+	 *
+	 * @throws CommException
+	 */
+	private void writeOrSchedule() throws CommException {
+		if (reactor.isReactorThread()) {
+			flush();
+
+			return;
+		}
+
+		synchronized (this) {
+			if (flushScheduled) {
+				return;
+			}
+
+			flushScheduled = true;
+		}
+
+		reactor.execute(() -> {
+			try {
+				flush();
+			} catch (final CommException ce) {
+				// Already logged
+				reactor.handleFailed(this);
+			}
+		});
+	}
+
+	/**
+	 * Register OP_WRITE interest only while there is something to write.
+	 */
+	private void updateWriteInterest() {
+		// Closed
+		if (!key.isValid()) {
+			return;
+		}
+
+		final int interestOps = key.interestOps();
+		final int newInterestOps;
+		if (outboundQueue.isEmpty()) {
+			newInterestOps = interestOps & ~SelectionKey.OP_WRITE;
+		} else {
+			newInterestOps = interestOps | SelectionKey.OP_WRITE;
+		}
+
+		if (newInterestOps != interestOps) {
+			key.interestOps(newInterestOps);
+		}
+	}
+
+	/**
+	 * Track crossings of the high- and low-water marks.
+	 */
+	private void updateBacklog() {
+		if (backloggedSince == 0 && outboundBytes > HIGH_WATER_MARK) {
+			backloggedSince = System.currentTimeMillis();
+
+			LOG.warn("Connection is backlogged, queued bytes: " + outboundBytes + ", " + socket);
+
+			return;
+		}
+
+		if (backloggedSince != 0 && outboundBytes < LOW_WATER_MARK) {
+			LOG.info("Connection caught up after millis: " + (System.currentTimeMillis() - backloggedSince) + ", " + socket);
+
+			backloggedSince = 0;
+		}
+	}
+
+	/**
+	 * This class pairs a pooled buffer with the connection's own view of it.
+	 */
+	private static final class PooledView {
+		private final PooledBuffer owner;
+		private final ByteBuffer view;
+
+		private PooledView(final PooledBuffer ownerParm) {
+			owner = ownerParm;
+			view = ownerParm.getBuffer().duplicate();
+		}
+	}
+}
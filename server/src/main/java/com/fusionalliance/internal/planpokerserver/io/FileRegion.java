@@ -0,0 +1,65 @@
+package com.fusionalliance.internal.planpokerserver.io;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * This class describes a range of a file to be written to a socket with {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which
+ * lets the kernel send the bytes straight from the page cache (sendfile) instead of copying them through the heap.
+ * <p>
+ * A region remembers how far it got, so a transfer cut short by a full send buffer resumes where it stopped. The FileChannel may be shared by
+ * many regions, since transferTo with an explicit position does not move the channel's own position.
+ */
+public final class FileRegion {
+	private final FileChannel fileChannel;
+	private long position;
+	private long remaining;
+
+	/**
+	 * Constructor
+	 *
+	 * @param fileChannelParm required, open for reading
+	 * @param positionParm    the first byte to send
+	 * @param countParm       the number of bytes to send
+	 */
+	public FileRegion(final FileChannel fileChannelParm, final long positionParm, final long countParm) {
+		check(fileChannelParm != null, "The file channel may not be null.");
+		check(positionParm >= 0 && countParm >= 0, "The position and count may not be negative.");
+
+		fileChannel = fileChannelParm;
+		position = positionParm;
+		remaining = countParm;
+	}
+
+	/**
+	 * Transfer as many bytes as the target accepts, continuing from the previous transfer.
+	 *
+	 * @param targetParm required, non-blocking
+	 * @return the number of bytes transferred, possibly 0
+	 * @throws IOException
+	 */
+	long transferTo(final WritableByteChannel targetParm) throws IOException {
+		final long bytesTransferred = fileChannel.transferTo(position, remaining, targetParm);
+
+		// Otherwise the write would be retried forever
+		if (bytesTransferred == 0 && position >= fileChannel.size()) {
+			throw new IOException("The file is shorter than the region; was it replaced while the server was running?");
+		}
+
+		position += bytesTransferred;
+		remaining -= bytesTransferred;
+
+		return bytesTransferred;
+	}
+
+	public boolean hasRemaining() {
+		return remaining > 0;
+	}
+
+	public long remaining() {
+		return remaining;
+	}
+}
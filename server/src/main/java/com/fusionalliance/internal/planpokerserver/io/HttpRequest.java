@@ -1,157 +1,214 @@
 package com.fusionalliance.internal.planpokerserver.io;
 
 import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
-import java.net.URLDecoder;
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
 
-import org.apache.commons.lang3.StringUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import com.fusionalliance.internal.planpokerserver.utility.CheckCondition;
-import com.fusionalliance.internal.planpokerserver.utility.InternalException;
-import com.fusionalliance.internal.planpokerserver.utility.LoggerUtility;
+import com.fusionalliance.internal.planpokerserver.utility.CheckCondition.ConditionNotMetException;
 
 /**
- * This class implements an HTTP request. The constructor takes raw request bytes and parses them.
+ * This class implements an HTTP request, parsed in place. The constructor scans the head once, validating it and recording where each piece
+ * lies; the path and the header values are decoded only when asked for. Well-known header names are matched to shared Strings, so a typical
+ * request allocates nothing for its names.
+ * <p>
+ * The request reads the bytes of the {@link HttpRequestParser}, so, like the body, it is valid only until the parser is next called.
  * <p>
  * Note: This implementation expects
  * <ul>
- * <li>the ByteBuffer contains the full content</li>
+ * <li>a request target in origin form, a path starting with '/'</li>
  * <li>UTF-8 encoding</li>
- * <li>body, if any, contains text only</li>
- * <li>no message-trailers</li>
+ * <li>no Transfer-Encoding and no message-trailers</li>
  * </ul>
  */
 public class HttpRequest {
-	private static final Logger LOG = LoggerFactory.getLogger(HttpRequest.class);
+	private static final int INITIAL_HEADER_CAPACITY = 16;
+	private static final int MAX_HEADERS = 100;
+	private static final String HTTP_1_0 = "HTTP/1.0";
+	private static final String HTTP_1_1 = "HTTP/1.1";
+	private static final byte[] HTTP_1_0_BYTES = HTTP_1_0.getBytes(UTF_8);
+	private static final byte[] HTTP_1_1_BYTES = HTTP_1_1.getBytes(UTF_8);
+	private static final HttpRequestMethods[] METHODS = HttpRequestMethods.values();
+	private static final byte[][] METHOD_BYTES = new byte[METHODS.length][];
+	/** Header names sent by browsers and read by this server; a request's header of the same name is given the String here */
+	private static final String[] KNOWN_HEADER_NAMES = { "Host", "Connection", "Upgrade", "Content-Length", "Content-Type", "Transfer-Encoding",
+			"Accept", "Accept-Encoding", "Accept-Language", "User-Agent", "Origin", "Referer", "Cookie", "Cache-Control", "Pragma", "If-None-Match",
+			"If-Modified-Since", "Sec-WebSocket-Key", "Sec-WebSocket-Version", "Sec-WebSocket-Extensions", "Sec-WebSocket-Protocol", "Sec-Fetch-Site",
+			"Sec-Fetch-Mode", "Sec-Fetch-Dest", "Sec-Fetch-User", "Upgrade-Insecure-Requests", "DNT" };
+	/** The lower case ASCII of each known header name */
+	private static final byte[][] KNOWN_HEADER_BYTES = new byte[KNOWN_HEADER_NAMES.length][];
+
+	static {
+		for (int i = 0; i < METHODS.length; i++) {
+			METHOD_BYTES[i] = METHODS[i].name().getBytes(UTF_8);
+		}
+
+		for (int i = 0; i < KNOWN_HEADER_NAMES.length; i++) {
+			KNOWN_HEADER_BYTES[i] = KNOWN_HEADER_NAMES[i].toLowerCase().getBytes(UTF_8);
+		}
+	}
 
+	/** The request bytes, head then body; read with absolute gets */
+	private final ByteBuffer buffer;
 	private final HttpRequestMethods method;
-	private final String path;
-	private final List<String> pathSteps;
 	private final String version;
-	private final Map<String, String> headers = new HashMap<>();
-	private final String body;
+	/** The path, from its leading '/' up to the query or the end of the request target */
+	private final int pathStart;
+	private final int pathEnd;
+	/** True if the path holds percent-encoded bytes */
+	private final boolean pathEncoded;
+	private int headerCount = 0;
+	/** For each header, the start and end of its name and of its trimmed value */
+	private int[] headerBounds = new int[INITIAL_HEADER_CAPACITY * 4];
+	/** For each header, the shared String if the name is well known; otherwise null until the name is needed */
+	private String[] headerNames = new String[INITIAL_HEADER_CAPACITY];
+	/** For each header, the value once decoded */
+	private String[] headerValues = new String[INITIAL_HEADER_CAPACITY];
+	/** A read-only view of the request bytes; null if there is no body */
+	private final ByteBuffer body;
+	/** Decoded on first use */
+	private String path = null;
+	private List<String> pathSteps = null;
 
 	/**
 	 * Constructor
-	 * 
-	 * @param bufferParm a ByteBuffer containing the request bytes; it <b>must</b> be flipped
+	 *
+	 * @param bufferParm    a ByteBuffer containing the request bytes; it <b>must</b> be flipped
+	 * @param bodyStartParm the index following the blank line ending the head
+	 * @throws ConditionNotMetException if the head is malformed; the message tells what is wrong, and where
 	 */
-	public HttpRequest(final ByteBuffer bufferParm) {
+	public HttpRequest(final ByteBuffer bufferParm, final int bodyStartParm) {
 		check(bufferParm != null && bufferParm.limit() > 0, "The buffer passed is null or empty.");
 		check(bufferParm.position() == 0, "The buffer is not flipped.");
+		check(bodyStartParm >= 4 && bodyStartParm <= bufferParm.limit(), "The body start is outside the buffer.");
 
-		final int startBodyIndex = findStartBodyIndex(bufferParm);
+		buffer = bufferParm;
 
-		// Account for the index being zero-based
-		// Drop the blank line and the trailing CRLF
-		final byte[] headBytes = new byte[startBodyIndex - 4];
-		bufferParm.get(headBytes);
+		// Each line ends with CRLF; the blank line's CRLF is not part of any line
+		final int headEnd = bodyStartParm - 2;
 
-		final String[] headLines = new String(headBytes, StandardCharsets.UTF_8).split("\\r\\n");
+		// Request start line: Method SP request-target SP HTTP-version CRLF
+		final int methodEnd = scanToken(0, headEnd);
+		require(methodEnd > 0 && methodEnd < headEnd && buffer.get(methodEnd) == ' ', "Invalid request method", 0);
+		method = matchMethod(methodEnd);
+		require(method != null, "Unsupported request method", 0);
 
-		// Request start line: Method Path Version
-		final String[] startLinePieces = headLines[0].split(" ");
-		check(startLinePieces.length == 3, "Invalid request start line: " + headLines[0]);
+		pathStart = methodEnd + 1;
+		require(pathStart < headEnd && buffer.get(pathStart) == '/', "The request target does not start with '/'", pathStart);
 
-		try {
-			method = HttpRequestMethods.valueOf(startLinePieces[0]);
-		} catch (final Exception e) {
-			LoggerUtility.logIssueWithStackTrace(LOG, "Unknown request method: " + startLinePieces[0], false, e);
+		int queryStart = -1;
+		boolean encoded = false;
+		int position = pathStart;
+		for (; position < headEnd; position++) {
+			final byte current = buffer.get(position);
 
-			throw new InternalException();
-		}
+			if (current == ' ') {
+				break;
+			}
 
-		// Path must have each step URL decoded, then reassembled
-		pathSteps = parsePath(startLinePieces[1]);
-		path = pathSteps.stream().collect(Collectors.joining("/", "/", ""));
+			require(current > ' ' && current != 0x7f, "Invalid character in the request target", position);
 
-		version = startLinePieces[2];
+			// The query is not read, so only the path's percent-encoding matters
+			if (current == '?' && queryStart == -1) {
+				queryStart = position;
+			} else if (current == '%' && queryStart == -1) {
+				require(position + 2 < headEnd && isHexDigit(buffer.get(position + 1)) && isHexDigit(buffer.get(position + 2)),
+						"Invalid percent-encoding in the path", position);
 
-		String[] keyValue = null;
-		for (int i = 1; i < headLines.length; i++) {
-			keyValue = headLines[i].split(": ");
-			check(keyValue.length == 2, "Invalid header: " + headLines[i]);
+				encoded = true;
+			}
+		}
+		pathEnd = queryStart == -1 ? position : queryStart;
+		pathEncoded = encoded;
+
+		require(position < headEnd, "Missing HTTP version", position);
+		position++;
+		if (matches(position, headEnd, HTTP_1_1_BYTES)) {
+			version = HTTP_1_1;
+		} else if (matches(position, headEnd, HTTP_1_0_BYTES)) {
+			version = HTTP_1_0;
+		} else {
+			version = null;
+		}
+		require(version != null, "Unsupported HTTP version", position);
+		position = requireLineEnd(position + HTTP_1_1_BYTES.length, headEnd);
 
-			headers.put(keyValue[0], keyValue[1]);
+		// Header fields: name ":" OWS value OWS CRLF
+		while (position < headEnd) {
+			position = parseHeader(position, headEnd);
 		}
 
-		// We only accept some form of text in the body
+		final int transferEncoding = indexOfHeader("Transfer-Encoding", 0);
+		require(transferEncoding == -1, "Transfer-Encoding is not supported", transferEncoding == -1 ? 0 : headerBounds[transferEncoding * 4]);
+
 		// No body is provided for GET
-		bufferParm.position(startBodyIndex);
-		if (bufferParm.remaining() == 0) {
+		if (bodyStartParm == bufferParm.limit()) {
 			body = null;
 		} else {
-			final byte[] bodyBytes = new byte[bufferParm.remaining()];
-			bufferParm.get(bodyBytes);
-			body = new String(bodyBytes, StandardCharsets.UTF_8);
+			final ByteBuffer bodyBuffer = bufferParm.duplicate();
+			bodyBuffer.position(bodyStartParm);
+			body = bodyBuffer.slice().asReadOnlyBuffer();
 		}
 	}
 
 	/**
-	 * Return a list decoded of path steps.
-	 * 
-	 * @param pathParm required
-	 * @return
+	 * Parse one header line, recording where its name and value lie.
+	 *
+	 * @param lineStartParm
+	 * @param headEndParm
+	 * @return the start of the next line
 	 */
-	private List<String> parsePath(String pathParm) {
-		CheckCondition.check(StringUtils.isNotBlank(pathParm), "Path may not be blank.");
+	private int parseHeader(final int lineStartParm, final int headEndParm) {
+		require(headerCount < MAX_HEADERS, "Too many headers", lineStartParm);
 
-		final List<String> pathSteps = new ArrayList<>();
-		final String[] pathSplits = pathParm.split("/");
+		final byte first = buffer.get(lineStartParm);
+		require(first != ' ' && first != '\t', "Obsolete line folding is not supported", lineStartParm);
 
-		// The first element is empty (before the leading "/")
-		for (int i = 1; i < pathSplits.length; i++) {
-			try {
-				pathSteps.add(URLDecoder.decode(pathSplits[i], StandardCharsets.UTF_8.name()));
-			} catch (final Exception e) {
-				LoggerUtility.logIssueWithStackTrace(LOG, "Error decoding path step: " + pathSplits[i], false, e);
+		final int nameEnd = scanToken(lineStartParm, headEndParm);
+		require(nameEnd > lineStartParm, "Invalid header name", lineStartParm);
+		require(nameEnd < headEndParm && buffer.get(nameEnd) == ':', "Invalid character in a header name", nameEnd);
 
-				throw new InternalException();
-			}
+		int valueStart = nameEnd + 1;
+		while (valueStart < headEndParm && isWhitespace(buffer.get(valueStart))) {
+			valueStart++;
 		}
 
-		return pathSteps;
-	}
+		int lineEnd = valueStart;
+		for (; lineEnd < headEndParm; lineEnd++) {
+			final byte current = buffer.get(lineEnd);
 
-	/**
-	 * Find the position of the start of the body.
-	 * 
-	 * @param bufferParm
-	 * @return
-	 */
-	private int findStartBodyIndex(final ByteBuffer bufferParm) {
-		// The head is delimited by two CRLF.
-		byte lastFourBytes1 = 0;
-		byte lastFourBytes2 = 0;
-		byte lastFourBytes3 = 0;
-		byte lastFourBytes4 = 0;
-
-		int index = 0;
-		for (index = 0; index < bufferParm.limit(); index++) {
-			lastFourBytes1 = lastFourBytes2;
-			lastFourBytes2 = lastFourBytes3;
-			lastFourBytes3 = lastFourBytes4;
-			lastFourBytes4 = bufferParm.get(index);
-
-			if (lastFourBytes1 == 13 && lastFourBytes2 == 10 && lastFourBytes3 == 13 && lastFourBytes4 == 10) {
+			if (current == '\r') {
 				break;
 			}
+
+			// Visible ASCII, white space, or obs-text, which is negative as a byte
+			require(current >= ' ' && current != 0x7f || current == '\t' || current < 0, "Invalid character in a header value", lineEnd);
 		}
 
-		check(index < bufferParm.limit(), "Could not find the end of the head.");
+		int valueEnd = lineEnd;
+		while (valueEnd > valueStart && isWhitespace(buffer.get(valueEnd - 1))) {
+			valueEnd--;
+		}
+
+		if (headerCount == headerNames.length) {
+			headerBounds = Arrays.copyOf(headerBounds, headerBounds.length * 2);
+			headerNames = Arrays.copyOf(headerNames, headerNames.length * 2);
+			headerValues = Arrays.copyOf(headerValues, headerValues.length * 2);
+		}
 
-		final int startBody = index + 1;
+		headerBounds[headerCount * 4] = lineStartParm;
+		headerBounds[headerCount * 4 + 1] = nameEnd;
+		headerBounds[headerCount * 4 + 2] = valueStart;
+		headerBounds[headerCount * 4 + 3] = valueEnd;
+		headerNames[headerCount] = matchKnownHeaderName(lineStartParm, nameEnd);
+		headerCount++;
 
-		return startBody;
+		return requireLineEnd(lineEnd, headEndParm);
 	}
 
 	public HttpRequestMethods getMethod() {
@@ -159,32 +216,344 @@ public class HttpRequest {
 	}
 
 	/**
-	 * Return the decoded path.
-	 * 
+	 * Return the decoded path, without the query. Decoded on first use; a path without percent-encoding or a trailing '/' is taken as is.
+	 *
 	 * @return
 	 */
 	public String getPath() {
+		if (path == null) {
+			if (!pathEncoded && (pathEnd - pathStart == 1 || buffer.get(pathEnd - 1) != '/')) {
+				path = decodeAscii(pathStart, pathEnd);
+			} else {
+				path = "/" + String.join("/", getPathSteps());
+			}
+		}
+
 		return path;
 	}
 
 	/**
-	 * Return the decoded path as a list of steps.
-	 * 
+	 * Return the decoded path as a list of steps. Trailing empty steps are dropped. Decoded on first use.
+	 *
 	 * @return
 	 */
 	public List<String> getPathSteps() {
+		if (pathSteps == null) {
+			final List<String> steps = new ArrayList<>();
+
+			int stepStart = pathStart + 1;
+			for (int index = stepStart; index <= pathEnd; index++) {
+				if (index == pathEnd || buffer.get(index) == '/') {
+					steps.add(pathEncoded ? decodePercent(stepStart, index) : decodeAscii(stepStart, index));
+					stepStart = index + 1;
+				}
+			}
+
+			while (!steps.isEmpty() && steps.get(steps.size() - 1).isEmpty()) {
+				steps.remove(steps.size() - 1);
+			}
+
+			pathSteps = steps;
+		}
+
 		return pathSteps;
 	}
 
+	/**
+	 * Return the HTTP version.
+	 *
+	 * @return HTTP/1.1 or HTTP/1.0
+	 */
 	public String getVersion() {
 		return version;
 	}
 
+	/**
+	 * Return true if the client wants the connection kept open after the response: HTTP/1.1 unless it asks to close, HTTP/1.0 only if it asks
+	 * for keep-alive.
+	 *
+	 * @return
+	 */
+	public boolean isKeepAlive() {
+		final String connection = getHeader("Connection");
+
+		if (HTTP_1_0.equals(version)) {
+			return HttpUtility.containsToken(connection, "keep-alive");
+		}
+
+		return !HttpUtility.containsToken(connection, "close");
+	}
+
+	/**
+	 * Return a copy of the headers. Use {@link #getHeader(String)} to look up a single header without copying.
+	 *
+	 * @return a map whose keys ignore case
+	 */
 	public Map<String, String> getHeaders() {
-		return new HashMap<>(headers);
+		final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+		for (int i = 0; i < headerCount; i++) {
+			if (headerNames[i] == null) {
+				headerNames[i] = decodeAscii(headerBounds[i * 4], headerBounds[i * 4 + 1]);
+			}
+
+			headers.putIfAbsent(headerNames[i], getHeader(headerNames[i]));
+		}
+
+		return headers;
+	}
+
+	/**
+	 * Return the value of a header. The name is matched ignoring case, against the bytes of the request; only the value is decoded, once. A
+	 * header received more than once gives its values joined with commas.
+	 *
+	 * @param nameParm required
+	 * @return null if the header is missing
+	 */
+	public String getHeader(final String nameParm) {
+		int index = indexOfHeader(nameParm, 0);
+		if (index == -1) {
+			return null;
+		}
+
+		String value = headerValue(index);
+		while ((index = indexOfHeader(nameParm, index + 1)) != -1) {
+			value = value + ", " + headerValue(index);
+		}
+
+		return value;
 	}
 
-	public String getBody() {
+	/**
+	 * Return the body, without copying it. The bytes belong to the {@link HttpRequestParser}, so they are only valid until it is next called.
+	 *
+	 * @return a read-only buffer, positioned at the start of the body; null if there is no body
+	 */
+	public ByteBuffer getBody() {
 		return body;
 	}
+
+	/**
+	 * Return the index of the first header with the name, ignoring case, starting with the given index.
+	 *
+	 * @return -1 if there is none
+	 */
+	private int indexOfHeader(final String nameParm, final int fromIndexParm) {
+		for (int i = fromIndexParm; i < headerCount; i++) {
+			final String name = headerNames[i];
+
+			if (name == nameParm || (name != null ? name.equalsIgnoreCase(nameParm) : nameMatches(i, nameParm))) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Return true if the bytes of the header's name match the name, ignoring ASCII case.
+	 */
+	private boolean nameMatches(final int headerIndexParm, final String nameParm) {
+		final int nameStart = headerBounds[headerIndexParm * 4];
+		final int nameEnd = headerBounds[headerIndexParm * 4 + 1];
+		if (nameEnd - nameStart != nameParm.length()) {
+			return false;
+		}
+
+		for (int i = 0; i < nameParm.length(); i++) {
+			if (toLowerCase(buffer.get(nameStart + i)) != Character.toLowerCase(nameParm.charAt(i))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private String headerValue(final int headerIndexParm) {
+		if (headerValues[headerIndexParm] == null) {
+			headerValues[headerIndexParm] = decodeUtf8(headerBounds[headerIndexParm * 4 + 2], headerBounds[headerIndexParm * 4 + 3]);
+		}
+
+		return headerValues[headerIndexParm];
+	}
+
+	/**
+	 * Return the shared String for a well-known header name.
+	 *
+	 * @return null if the name is not well known
+	 */
+	private String matchKnownHeaderName(final int startParm, final int endParm) {
+		final int length = endParm - startParm;
+
+		for (int i = 0; i < KNOWN_HEADER_BYTES.length; i++) {
+			final byte[] known = KNOWN_HEADER_BYTES[i];
+			if (known.length != length) {
+				continue;
+			}
+
+			int matched = 0;
+			while (matched < length && toLowerCase(buffer.get(startParm + matched)) == known[matched]) {
+				matched++;
+			}
+
+			if (matched == length) {
+				return KNOWN_HEADER_NAMES[i];
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Return the method whose name is the bytes before the end; methods are case-sensitive.
+	 *
+	 * @return null if the method is unknown
+	 */
+	private HttpRequestMethods matchMethod(final int endParm) {
+		for (int i = 0; i < METHODS.length; i++) {
+			if (METHOD_BYTES[i].length == endParm && matches(0, endParm, METHOD_BYTES[i])) {
+				return METHODS[i];
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Return the end of the token starting at the index: the first byte that is not a token character, as defined for methods and header names.
+	 */
+	private int scanToken(final int startParm, final int endParm) {
+		int index = startParm;
+		while (index < endParm && isTokenChar(buffer.get(index))) {
+			index++;
+		}
+
+		return index;
+	}
+
+	/**
+	 * Require CRLF at the index.
+	 *
+	 * @return the index following the CRLF
+	 */
+	private int requireLineEnd(final int indexParm, final int headEndParm) {
+		require(indexParm + 1 < headEndParm && buffer.get(indexParm) == '\r' && buffer.get(indexParm + 1) == '\n', "Invalid line ending",
+				indexParm);
+
+		return indexParm + 2;
+	}
+
+	/**
+	 * Return true if the bytes starting at the index are the expected bytes.
+	 */
+	private boolean matches(final int startParm, final int endParm, final byte[] expectedParm) {
+		if (endParm - startParm < expectedParm.length) {
+			return false;
+		}
+
+		for (int i = 0; i < expectedParm.length; i++) {
+			if (buffer.get(startParm + i) != expectedParm[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Decode a range known to be ASCII.
+	 */
+	private String decodeAscii(final int startParm, final int endParm) {
+		final char[] chars = new char[endParm - startParm];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = (char) buffer.get(startParm + i);
+		}
+
+		return new String(chars);
+	}
+
+	private String decodeUtf8(final int startParm, final int endParm) {
+		final byte[] bytes = new byte[endParm - startParm];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(startParm + i);
+		}
+
+		return new String(bytes, UTF_8);
+	}
+
+	/**
+	 * Decode a path step: each %XX is a byte, and the bytes are UTF-8. Unlike form decoding, '+' is left as is.
+	 */
+	private String decodePercent(final int startParm, final int endParm) {
+		final byte[] bytes = new byte[endParm - startParm];
+		int length = 0;
+
+		for (int index = startParm; index < endParm; index++) {
+			final byte current = buffer.get(index);
+
+			if (current == '%') {
+				bytes[length++] = (byte) (Character.digit(buffer.get(index + 1), 16) << 4 | Character.digit(buffer.get(index + 2), 16));
+				index += 2;
+			} else {
+				bytes[length++] = current;
+			}
+		}
+
+		return new String(bytes, 0, length, UTF_8);
+	}
+
+	private static boolean isTokenChar(final byte byteParm) {
+		if ((byteParm >= 'a' && byteParm <= 'z') || (byteParm >= 'A' && byteParm <= 'Z') || (byteParm >= '0' && byteParm <= '9')) {
+			return true;
+		}
+
+		switch (byteParm) {
+		case '!':
+		case '#':
+		case '$':
+		case '%':
+		case '&':
+		case '\'':
+		case '*':
+		case '+':
+		case '-':
+		case '.':
+		case '^':
+		case '_':
+		case '`':
+		case '|':
+		case '~':
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private static boolean isHexDigit(final byte byteParm) {
+		return (byteParm >= '0' && byteParm <= '9') || (byteParm >= 'a' && byteParm <= 'f') || (byteParm >= 'A' && byteParm <= 'F');
+	}
+
+	private static boolean isWhitespace(final byte byteParm) {
+		return byteParm == ' ' || byteParm == '\t';
+	}
+
+	private static byte toLowerCase(final byte byteParm) {
+		return (byteParm >= 'A' && byteParm <= 'Z') ? (byte) (byteParm + ('a' - 'A')) : byteParm;
+	}
+
+	/**
+	 * Throw unless the condition holds. The message is built only on failure.
+	 *
+	 * @param conditionParm
+	 * @param problemParm   required
+	 * @param offsetParm    where in the request the problem lies
+	 * @throws ConditionNotMetException
+	 */
+	private static void require(final boolean conditionParm, final String problemParm, final int offsetParm) {
+		if (conditionParm) {
+			return;
+		}
+
+		throw new ConditionNotMetException(problemParm + " at offset " + offsetParm + ".");
+	}
 }
@@ -0,0 +1,300 @@
+package com.fusionalliance.internal.planpokerserver.io;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import com.fusionalliance.internal.planpokerserver.utility.CheckCondition.ConditionNotMetException;
+import com.fusionalliance.internal.planpokerserver.utility.CommException;
+
+/**
+ * This class implements a resumable HTTP/1.1 request parser. One instance is attached to each connection.
+ * <p>
+ * Each call to {@link #read(SocketChannel)} consumes whatever bytes the socket has ready; it never waits for more. {@link #nextRequest()} then
+ * returns each complete request in turn, or null when the request at the front of the buffer is still incomplete. The parser remembers where it
+ * stopped searching for the end of the head, so bytes are scanned only once regardless of how the request is split across reads.
+ * <p>
+ * The buffer is borrowed from the {@link BufferPool} when bytes arrive and returned once every received request has been returned and
+ * processed, so an idle connection holds no buffer. A request is parsed in place, its head and body views of the buffer, so it is valid only
+ * until the parser is next called.
+ * <p>
+ * Note: This implementation expects
+ * <ul>
+ * <li>the body length, if any, is given by Content-Length</li>
+ * <li>no Transfer-Encoding: chunked request bodies</li>
+ * </ul>
+ */
+public final class HttpRequestParser {
+	private static final int INITIAL_CAPACITY = 8192;
+	private static final int MAX_HEAD_LENGTH = 16384;
+	private static final int MAX_BODY_LENGTH = 65536;
+	private static final byte[] CONTENT_LENGTH = "content-length:".getBytes(US_ASCII);
+
+	/** Holds received bytes; always in write mode (position = end of received data); null while nothing is buffered */
+	private PooledBuffer pooledBuffer = null;
+	private ByteBuffer buffer = null;
+	/** Index of the first byte of the request being parsed */
+	private int requestStart = 0;
+	/** Index at which to resume the search for the end of the head */
+	private int scanIndex = 0;
+	/** Index of the first body byte; -1 until the end of the head is found */
+	private int bodyStart = -1;
+	private int contentLength = 0;
+
+	/**
+	 * Read whatever bytes are ready from the socket. This never blocks and never waits.
+	 *
+	 * @param socketParm required
+	 * @return the number of bytes read; -1 if the socket was closed by the client
+	 * @throws CommException
+	 */
+	public int read(final SocketChannel socketParm) throws CommException {
+		check(socketParm != null, "The socket channel is null.");
+
+		if (buffer == null) {
+			pooledBuffer = BufferPool.SHARED.acquire(INITIAL_CAPACITY);
+			buffer = pooledBuffer.getBuffer();
+		}
+
+		// Reclaim the space used by requests that were already returned
+		if (requestStart > 0) {
+			buffer.flip();
+			buffer.position(requestStart);
+			buffer.compact();
+
+			scanIndex -= requestStart;
+			if (bodyStart != -1) {
+				bodyStart -= requestStart;
+			}
+			requestStart = 0;
+		}
+
+		if (!buffer.hasRemaining()) {
+			grow();
+		}
+
+		final int bytesRead = SocketChannelUtility.read(socketParm, buffer);
+
+		if (buffer.position() == 0) {
+			releaseBuffer();
+		}
+
+		return bytesRead;
+	}
+
+	/**
+	 * Return the next complete request, if any. The request returned before is no longer valid.
+	 *
+	 * @return null if no complete request is available
+	 * @throws ConditionNotMetException if the request is malformed or too long; the message tells what is wrong
+	 */
+	public HttpRequest nextRequest() {
+		if (buffer == null) {
+			return null;
+		}
+
+		final int end = buffer.position();
+
+		// Nothing left over, and the caller is done with the last request: give the buffer back
+		if (requestStart == end) {
+			releaseBuffer();
+
+			return null;
+		}
+
+		if (bodyStart == -1) {
+			final int headEnd = findHeadEnd(end);
+
+			if (headEnd == -1) {
+				check(end - requestStart <= MAX_HEAD_LENGTH, "The request head is too long.");
+
+				return null;
+			}
+
+			bodyStart = headEnd;
+			contentLength = parseContentLength(requestStart, bodyStart);
+		}
+
+		final int requestEnd = bodyStart + contentLength;
+		if (end < requestEnd) {
+			return null;
+		}
+
+		final ByteBuffer requestBuffer = buffer.duplicate();
+		requestBuffer.limit(requestEnd);
+		requestBuffer.position(requestStart);
+		final HttpRequest request = new HttpRequest(requestBuffer.slice(), bodyStart - requestStart);
+
+		requestStart = requestEnd;
+		scanIndex = requestEnd;
+		bodyStart = -1;
+		contentLength = 0;
+
+		return request;
+	}
+
+	/**
+	 * Remove and return the bytes following the last returned request. Used when the protocol changes, such as after a WebSocket upgrade.
+	 *
+	 * @return a flipped buffer, possibly empty
+	 */
+	public ByteBuffer takeRemaining() {
+		if (buffer == null) {
+			return ByteBuffer.allocate(0);
+		}
+
+		final ByteBuffer remaining = ByteBuffer.allocate(buffer.position() - requestStart);
+		final ByteBuffer source = buffer.duplicate();
+		source.flip();
+		source.position(requestStart);
+		remaining.put(source);
+		remaining.flip();
+
+		releaseBuffer();
+
+		return remaining;
+	}
+
+	/**
+	 * Return the buffer to the pool and reset the parse state. Also used when the connection closes.
+	 */
+	public void releaseBuffer() {
+		if (pooledBuffer != null) {
+			pooledBuffer.release();
+		}
+
+		pooledBuffer = null;
+		buffer = null;
+		requestStart = 0;
+		scanIndex = 0;
+		bodyStart = -1;
+		contentLength = 0;
+	}
+
+	/**
+	 * Return true if a partial request has been received.
+	 *
+	 * @return
+	 */
+	public boolean hasPartialRequest() {
+		return buffer != null && buffer.position() > requestStart;
+	}
+
+	/**
+	 * Search for the blank line that ends the head, resuming where the last search stopped.
+	 *
+	 * @param endParm the end of the received data
+	 * @return the index following the blank line; -1 if not found
+	 */
+	private int findHeadEnd(final int endParm) {
+		for (int index = Math.max(scanIndex, requestStart + 3); index < endParm; index++) {
+			if (buffer.get(index) == '\n' && buffer.get(index - 1) == '\r' && buffer.get(index - 2) == '\n' && buffer.get(index - 3) == '\r') {
+				return index + 1;
+			}
+		}
+
+		// Each check looks back three bytes, so a delimiter split across reads is still found
+		scanIndex = Math.max(requestStart + 3, endParm);
+
+		return -1;
+	}
+
+	/**
+	 * Find the Content-Length header in the head and return its value.
+	 *
+	 * @param headStartParm
+	 * @param headEndParm
+	 * @return 0 if there is no Content-Length header
+	 */
+	private int parseContentLength(final int headStartParm, final int headEndParm) {
+		int lineStart = headStartParm;
+
+		for (int index = headStartParm; index < headEndParm; index++) {
+			if (buffer.get(index) != '\n') {
+				continue;
+			}
+
+			if (matchesIgnoreCase(lineStart, index, CONTENT_LENGTH)) {
+				return parseDecimal(lineStart + CONTENT_LENGTH.length, index);
+			}
+
+			lineStart = index + 1;
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Return true if the line starts with the lower case ASCII name.
+	 *
+	 * @param lineStartParm
+	 * @param lineEndParm
+	 * @param nameParm      lower case
+	 * @return
+	 */
+	private boolean matchesIgnoreCase(final int lineStartParm, final int lineEndParm, final byte[] nameParm) {
+		if (lineEndParm - lineStartParm < nameParm.length) {
+			return false;
+		}
+
+		for (int i = 0; i < nameParm.length; i++) {
+			final byte current = buffer.get(lineStartParm + i);
+			final byte lowerCase = (current >= 'A' && current <= 'Z') ? (byte) (current + ('a' - 'A')) : current;
+
+			if (lowerCase != nameParm[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Parse a decimal header value, ignoring surrounding white space.
+	 *
+	 * @param startParm
+	 * @param endParm
+	 * @return
+	 */
+	private int parseDecimal(final int startParm, final int endParm) {
+		long value = 0;
+		int digits = 0;
+
+		for (int index = startParm; index < endParm; index++) {
+			final byte current = buffer.get(index);
+
+			if (current == ' ' || current == '\t' || current == '\r') {
+				continue;
+			}
+
+			check(current >= '0' && current <= '9', "Invalid Content-Length.");
+
+			value = value * 10 + (current - '0');
+			digits++;
+
+			check(value <= MAX_BODY_LENGTH, "The request body is too long.");
+		}
+
+		check(digits > 0, "Content-Length is empty.");
+
+		return (int) value;
+	}
+
+	/**
+	 * Enlarge the buffer to hold a request that does not fit.
+	 */
+	private void grow() {
+		final int maxCapacity = MAX_HEAD_LENGTH + MAX_BODY_LENGTH;
+		check(buffer.capacity() < maxCapacity, "The request is too long.");
+
+		final PooledBuffer newPooledBuffer = BufferPool.SHARED.acquire(Math.min(buffer.capacity() * 2, maxCapacity));
+		buffer.flip();
+		newPooledBuffer.getBuffer().put(buffer);
+
+		pooledBuffer.release();
+		pooledBuffer = newPooledBuffer;
+		buffer = newPooledBuffer.getBuffer();
+	}
+}
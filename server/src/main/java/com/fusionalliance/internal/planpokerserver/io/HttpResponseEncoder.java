@@ -0,0 +1,189 @@
+package com.fusionalliance.internal.planpokerserver.io;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fusionalliance.internal.planpokerserver.utility.CommException;
+
+/**
+ * This class encodes HTTP responses with a given status and headers, which are encoded once. Each response's head is copied from those bytes,
+ * followed by the Content-Length and the Connection header of the connection's current response, then queued on the connection ahead of the
+ * body, which is not copied; the connection sends both in one gathering write. A body may be of any length.
+ * <p>
+ * Instances are immutable, and are meant to be kept in constants and shared by threads.
+ */
+public final class HttpResponseEncoder {
+	private static final byte CR = '\r';
+	private static final byte LF = '\n';
+	private static final byte[] CONTENT_LENGTH_BYTES = "Content-Length: ".getBytes(UTF_8);
+	private static final byte[] CONNECTION_BYTES = "Connection: ".getBytes(UTF_8);
+	private static final byte[] CLOSE_BYTES = "close".getBytes(UTF_8);
+	private static final byte[] KEEP_ALIVE_BYTES = "keep-alive".getBytes(UTF_8);
+	private static final int MAX_LENGTH_DIGITS = 10;
+
+	/** The status line and headers, each ending with CRLF, without the blank line */
+	private final byte[] statusAndHeaders;
+	/** True if the status never has a body, and so no Content-Length: 1xx and 204 */
+	private final boolean bodiless;
+
+	/**
+	 * Constructor
+	 *
+	 * @param responseStatusParm required, such as HTTP/1.1 200 OK
+	 * @param headersParm        required, may be empty; do <i>not</i> include Content-Length, Transfer-Encoding, or Connection, other than
+	 *                           Connection: Upgrade
+	 */
+	public HttpResponseEncoder(final String responseStatusParm, final List<HttpHeader> headersParm) {
+		check(StringUtils.isNotBlank(responseStatusParm), "The response status may not be blank.");
+		check(headersParm != null, "The headers may not be null.");
+
+		final byte[] head = HttpUtility.assembleHead(responseStatusParm, headersParm);
+		statusAndHeaders = new byte[head.length - 2];
+		System.arraycopy(head, 0, statusAndHeaders, 0, statusAndHeaders.length);
+
+		bodiless = responseStatusParm.startsWith("HTTP/1.1 1") || responseStatusParm.startsWith("HTTP/1.1 204");
+	}
+
+	/**
+	 * Write a response without a body to the connection. Bytes the socket does not accept immediately remain queued on the connection.
+	 *
+	 * @param connectionParm required
+	 * @throws CommException
+	 */
+	public void write(final ClientConnection connectionParm) throws CommException {
+		connectionParm.send(encodeHead(0, connectionParm.getHttpConnectionHeader()));
+	}
+
+	/**
+	 * Write a response to the connection. Bytes the socket does not accept immediately remain queued on the connection.
+	 *
+	 * @param bodyBytesParm  required, may be empty; not copied, so it may not be modified afterward
+	 * @param connectionParm required
+	 * @throws CommException
+	 */
+	public void write(final byte[] bodyBytesParm, final ClientConnection connectionParm) throws CommException {
+		check(bodyBytesParm != null, "The body may not be null.");
+
+		connectionParm.send(encodeHead(bodyBytesParm.length, connectionParm.getHttpConnectionHeader()), ByteBuffer.wrap(bodyBytesParm));
+	}
+
+	/**
+	 * Write a response with a constant body, such as one cached in a static field, to the connection. The connection writes a duplicate, so the
+	 * body may be shared. Bytes the socket does not accept immediately remain queued on the connection.
+	 *
+	 * @param sharedBodyParm required, flipped; never modified afterward
+	 * @param connectionParm required
+	 * @throws CommException
+	 */
+	public void write(final ByteBuffer sharedBodyParm, final ClientConnection connectionParm) throws CommException {
+		check(sharedBodyParm != null, "The body may not be null.");
+
+		connectionParm.send(encodeHead(sharedBodyParm.remaining(), connectionParm.getHttpConnectionHeader()), sharedBodyParm.duplicate());
+	}
+
+	/**
+	 * Write a response to the connection, the body straight from its pooled buffer. Bytes the socket does not accept immediately remain queued on
+	 * the connection.
+	 *
+	 * @param bodyParm       required, flipped; the connection takes over the reference
+	 * @param connectionParm required
+	 * @throws CommException
+	 */
+	public void write(final PooledBuffer bodyParm, final ClientConnection connectionParm) throws CommException {
+		check(bodyParm != null, "The body may not be null.");
+
+		connectionParm.send(encodeHead(bodyParm.getBuffer().remaining(), connectionParm.getHttpConnectionHeader()), bodyParm);
+	}
+
+	/**
+	 * Return the head of a response: the encoded status and headers, the Content-Length unless the status is bodiless, the Connection header if
+	 * any, and the blank line. Only the Content-Length digits are formatted; the rest is copied.
+	 *
+	 * @param contentLengthParm    the body length
+	 * @param connectionHeaderParm null if the response needs no Connection header
+	 * @return a new buffer, flipped
+	 */
+	ByteBuffer encodeHead(final int contentLengthParm, final String connectionHeaderParm) {
+		final byte[] connectionValue = connectionValueBytes(connectionHeaderParm);
+		final int lengthDigits = bodiless ? 0 : countDigits(contentLengthParm);
+
+		int headLength = statusAndHeaders.length + 2;
+		if (!bodiless) {
+			headLength += CONTENT_LENGTH_BYTES.length + lengthDigits + 2;
+		}
+		if (connectionValue != null) {
+			headLength += CONNECTION_BYTES.length + connectionValue.length + 2;
+		}
+
+		final byte[] head = new byte[headLength];
+		int position = copy(statusAndHeaders, head, 0);
+
+		if (!bodiless) {
+			position = copy(CONTENT_LENGTH_BYTES, head, position);
+
+			// Digits from the last
+			int remainingLength = contentLengthParm;
+			for (int i = position + lengthDigits - 1; i >= position; i--) {
+				head[i] = (byte) ('0' + remainingLength % 10);
+				remainingLength /= 10;
+			}
+			position += lengthDigits;
+
+			head[position++] = CR;
+			head[position++] = LF;
+		}
+
+		if (connectionValue != null) {
+			position = copy(CONNECTION_BYTES, head, position);
+			position = copy(connectionValue, head, position);
+			head[position++] = CR;
+			head[position++] = LF;
+		}
+
+		head[position++] = CR;
+		head[position] = LF;
+
+		return ByteBuffer.wrap(head);
+	}
+
+	/**
+	 * Return the bytes of a Connection header value; the usual values are encoded once.
+	 */
+	private static byte[] connectionValueBytes(final String connectionHeaderParm) {
+		if (connectionHeaderParm == null) {
+			return null;
+		}
+
+		if ("close".equals(connectionHeaderParm)) {
+			return CLOSE_BYTES;
+		}
+
+		if ("keep-alive".equals(connectionHeaderParm)) {
+			return KEEP_ALIVE_BYTES;
+		}
+
+		return connectionHeaderParm.getBytes(UTF_8);
+	}
+
+	private static int countDigits(final int valueParm) {
+		check(valueParm >= 0, "The content length may not be negative.");
+
+		int digits = 1;
+		for (long limit = 10; digits < MAX_LENGTH_DIGITS && valueParm >= limit; limit *= 10) {
+			digits++;
+		}
+
+		return digits;
+	}
+
+	private static int copy(final byte[] sourceParm, final byte[] targetParm, final int positionParm) {
+		System.arraycopy(sourceParm, 0, targetParm, positionParm, sourceParm.length);
+
+		return positionParm + sourceParm.length;
+	}
+}
@@ -1,31 +1,18 @@
 package com.fusionalliance.internal.planpokerserver.io;
 
-import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-import java.io.BufferedInputStream;
-import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.lang3.StringUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import com.fusionalliance.internal.planpokerserver.utility.CommException;
-import com.fusionalliance.internal.planpokerserver.utility.InternalException;
-import com.fusionalliance.internal.planpokerserver.utility.LoggerUtility;
 import com.google.common.collect.ImmutableMap;
 
 public final class HttpUtility {
-	private static final Logger LOG = LoggerFactory.getLogger(HttpUtility.class);
-
 	public static final String CRLF = "\r\n";
 	private static final byte[] CRLF_BYTES = CRLF.getBytes(UTF_8);
-	private static final int CHUNK_LENGTH = 2048;
+
 	/**
 	 * This is a very limited map of file extensions to MIME types.
 	 * <p>
@@ -48,138 +35,149 @@ public final class HttpUtility {
 			.build();
 
 	/**
-	 * Write to a SocketChannel.
+	 * Write a response to the connection; see {@link HttpResponseEncoder}, which responses sent often should keep in a constant. Bytes the socket
+	 * does not accept immediately remain queued on the connection.
 	 * 
 	 * @param responseStatusParm required
 	 * @param headersParm        required; do <i>not</i> include Content-Length or Transfer-Encoding: chunked
-	 * @param bodyParm           null or empty if no body
-	 * @param socketParm         required
-	 * @throws InternalException
+	 * @param bodyBytesParm      required, may be empty; not copied, so it may not be modified afterward
+	 * @param connectionParm     required
 	 * @throws CommException
 	 */
-	public static void writeToSocket(final String responseStatusParm, final List<HttpHeader> headersParm, final String bodyParm,
-			final SocketChannel socketParm) throws InternalException, CommException {
-		final byte[] bodyBytes;
+	public static void writeToSocket(final String responseStatusParm, final List<HttpHeader> headersParm, final byte[] bodyBytesParm,
+			final ClientConnection connectionParm) throws CommException {
+		new HttpResponseEncoder(responseStatusParm, headersParm).write(bodyBytesParm, connectionParm);
+	}
 
-		if (StringUtils.isEmpty(bodyParm)) {
-			bodyBytes = new byte[0];
+	/**
+	 * Return the content type for the path's extension. See {@link #CONTENT_TYPE_MAP}.
+	 * 
+	 * @param pathParm required
+	 * @return application/octet-stream if the extension is unknown
+	 */
+	public static String getContentType(final String pathParm) {
+		final int separator = pathParm.lastIndexOf('.');
+		final String extension;
+		if (separator == -1 || separator < pathParm.lastIndexOf('/')) {
+			extension = "";
 		} else {
-			bodyBytes = bodyParm.getBytes(UTF_8);
+			extension = pathParm.substring(separator + 1);
+		}
+
+		if (CONTENT_TYPE_MAP.containsKey(extension)) {
+			return CONTENT_TYPE_MAP.get(extension);
 		}
 
-		writeToSocket(responseStatusParm, headersParm, bodyBytes, socketParm);
+		return CONTENT_TYPE_MAP.get("");
 	}
 
 	/**
-	 * Write to a SocketChannel.
+	 * Return true if the content type is text, which compresses well. Images are already compressed.
 	 * 
-	 * @param responseStatusParm required
-	 * @param headersParm        required; do <i>not</i> include Content-Length or Transfer-Encoding: chunked
-	 * @param bodyBytesParm      required, may be empty
-	 * @param socketParm         required
-	 * @throws CommException
+	 * @param contentTypeParm required, a value from {@link #CONTENT_TYPE_MAP}
+	 * @return
 	 */
-	public static void writeToSocket(final String responseStatusParm, final List<HttpHeader> headersParm, final byte[] bodyBytesParm,
-			final SocketChannel socketParm) throws CommException {
-		// If no body, just send headers with no Content-Length
-		if (bodyBytesParm.length == 0) {
-			final byte[] headerBytes = assembleHead(responseStatusParm, headersParm);
-			final ByteBuffer buffer = ByteBuffer.wrap(headerBytes);
-			buffer.position(headerBytes.length);
-			buffer.flip();
-			SocketChannelUtility.writeToSocket(buffer, socketParm);
-
-			return;
+	public static boolean isCompressible(final String contentTypeParm) {
+		return contentTypeParm.startsWith("text/") //
+				|| contentTypeParm.startsWith("application/javascript") //
+				|| contentTypeParm.startsWith("application/json");
+	}
+
+	/**
+	 * Return true if the Accept-Encoding header allows gzip. An explicit gzip entry wins over *; q=0 refuses the coding.
+	 * 
+	 * @param acceptEncodingParm the header value; null if the header is missing
+	 * @return
+	 */
+	public static boolean acceptsGzip(final String acceptEncodingParm) {
+		if (acceptEncodingParm == null) {
+			return false;
 		}
 
-		// If the body is reasonably small, send the response all at once with a Content-Length
-		if (bodyBytesParm.length <= CHUNK_LENGTH) {
-			final List<HttpHeader> allHeaders = new ArrayList<>(headersParm);
-			allHeaders.add(new HttpHeader("Content-Length", Integer.toString(bodyBytesParm.length)));
-			final byte[] headerBytes = assembleHead(responseStatusParm, allHeaders);
+		Boolean wildcardAccepted = null;
 
-			final ByteBuffer byteBuffer = ByteBuffer.allocate(headerBytes.length + bodyBytesParm.length);
-			byteBuffer.put(headerBytes);
-			byteBuffer.put(bodyBytesParm);
-			byteBuffer.flip();
-			SocketChannelUtility.writeToSocket(byteBuffer, socketParm);
+		for (String coding : acceptEncodingParm.split(",")) {
+			final String[] codingPieces = coding.split(";");
+			final String name = codingPieces[0].trim();
 
-			return;
+			boolean accepted = true;
+			for (int i = 1; i < codingPieces.length; i++) {
+				final String parameter = codingPieces[i].trim();
+
+				if (parameter.startsWith("q=")) {
+					accepted = isNonZeroQuality(parameter.substring(2));
+				}
+			}
+
+			if ("gzip".equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) {
+				return accepted;
+			}
+
+			if ("*".equals(name)) {
+				wildcardAccepted = accepted;
+			}
 		}
+
+		return Boolean.TRUE.equals(wildcardAccepted);
 	}
 
 	/**
-	 * Write to a SocketChannel.
+	 * Return true unless the quality value is zero, such as 0, 0.0, or 0.000. An invalid value is treated as 1.
 	 * 
-	 * @param responseStatusParm required
-	 * @param headersParm        required, may be empty
-	 * @param bodyStreamParm     required; always closed before method return
-	 * @param socketParm         required
-	 * @throws CommException
+	 * @param qualityParm required
+	 * @return
 	 */
-	public static void writeToSocket(final String responseStatusParm, final List<HttpHeader> headersParm, final InputStream bodyStreamParm,
-			final SocketChannel socketParm) throws CommException {
-		check(bodyStreamParm != null, "Body input stream may not be null.");
-
-		final BufferedInputStream bufferedBodyStream;
-		if (bodyStreamParm instanceof BufferedInputStream) {
-			bufferedBodyStream = (BufferedInputStream) bodyStreamParm;
-		} else {
-			bufferedBodyStream = new BufferedInputStream(bodyStreamParm);
-		}
-
+	private static boolean isNonZeroQuality(final String qualityParm) {
 		try {
-			final List<HttpHeader> allHeaders = new ArrayList<>(headersParm);
-			allHeaders.add(new HttpHeader("Transfer-Encoding", "chunked"));
-
-			final byte[] headBytes = assembleHead(responseStatusParm, allHeaders);
+			return Double.parseDouble(qualityParm.trim()) > 0;
+		} catch (final NumberFormatException e) {
+			return true;
+		}
+	}
 
-			// Avoid copying the array; requires setting the position
-			final ByteBuffer headBuffer = ByteBuffer.wrap(headBytes);
-			headBuffer.position(headBytes.length);
-			headBuffer.flip();
+	/**
+	 * Return true if a comma-separated header value, such as that of Connection, holds the token, ignoring case.
+	 * 
+	 * @param headerValueParm null if the header is missing
+	 * @param tokenParm       required
+	 * @return
+	 */
+	public static boolean containsToken(final String headerValueParm, final String tokenParm) {
+		if (headerValueParm == null) {
+			return false;
+		}
 
-			SocketChannelUtility.writeToSocket(headBuffer, socketParm);
+		for (String token : headerValueParm.split(",")) {
+			if (tokenParm.equalsIgnoreCase(token.trim())) {
+				return true;
+			}
+		}
 
-			// The buffer needs to be large enough to hold the chunk plus the up to 3 hex-digit length and two CRLF
-			// 800RNbodyRN
-			final byte[] bodyBytes = new byte[CHUNK_LENGTH];
-			final ByteBuffer bodyBuffer = ByteBuffer.allocate(CHUNK_LENGTH + 7);
-			int bytesRead = 0;
+		return false;
+	}
 
-			while (true) {
-				bytesRead = bufferedBodyStream.read(bodyBytes);
-				if (bytesRead == -1) {
-					break;
-				}
+	/**
+	 * Return a prepared head with the Connection header of the connection's current response, if it needs one, added before the blank line.
+	 * Most responses need none, and get the head itself; otherwise, the head is copied.
+	 * 
+	 * @param headParm       required, a complete head, between the position and the limit
+	 * @param connectionParm required
+	 * @return
+	 */
+	public static ByteBuffer withConnectionHeader(final ByteBuffer headParm, final ClientConnection connectionParm) {
+		final String connectionHeader = connectionParm.getHttpConnectionHeader();
+		if (connectionHeader == null) {
+			return headParm;
+		}
 
-				bodyBuffer.clear();
-				bodyBuffer.put(Integer.toHexString(bytesRead).getBytes(UTF_8));
-				bodyBuffer.put(CRLF_BYTES);
-				bodyBuffer.put(bodyBytes, 0, bytesRead);
-				bodyBuffer.put(CRLF_BYTES);
-				bodyBuffer.flip();
+		final byte[] headerLine = new HttpHeader("Connection", connectionHeader).toString().concat(CRLF).getBytes(UTF_8);
+		final ByteBuffer headWithoutBlankLine = headParm.duplicate();
+		headWithoutBlankLine.limit(headWithoutBlankLine.limit() - CRLF_BYTES.length);
 
-				SocketChannelUtility.writeToSocket(bodyBuffer, socketParm);
-			}
+		final ByteBuffer head = ByteBuffer.allocate(headParm.remaining() + headerLine.length);
+		head.put(headWithoutBlankLine).put(headerLine).put(CRLF_BYTES).flip();
 
-			bodyBuffer.clear();
-			bodyBuffer.put("0".getBytes(UTF_8));
-			bodyBuffer.put(CRLF_BYTES);
-			bodyBuffer.put(CRLF_BYTES);
-			bodyBuffer.flip();
-
-			SocketChannelUtility.writeToSocket(bodyBuffer, socketParm);
-		} catch (final Exception e) {
-			LoggerUtility.logIssueWithStackTrace(LOG, "Failure during chunked write.", false, e);
-			throw new CommException();
-		} finally {
-			try {
-				bufferedBodyStream.close();
-			} catch (final Exception e) {
-				// Do nothing
-			}
-		}
+		return head;
 	}
 
 	/**
@@ -189,7 +187,7 @@ public final class HttpUtility {
 	 * @param headersParm
 	 * @return
 	 */
-	private static byte[] assembleHead(String responseStatusParm, List<HttpHeader> headersParm) {
+	static byte[] assembleHead(String responseStatusParm, List<HttpHeader> headersParm) {
 		final StringBuilder responseBuilder = new StringBuilder(500);
 
 		responseBuilder.append(responseStatusParm).append(CRLF);
@@ -0,0 +1,536 @@
+package com.fusionalliance.internal.planpokerserver.io;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+
+import com.fusionalliance.internal.planpokerserver.utility.CheckCondition.ConditionNotMetException;
+
+/**
+ * This class reads UTF-8 JSON straight from a buffer, token by token, for DTOs that read their own fields. It is the counterpart of
+ * {@link JsonWriter}: there is no reflection and no intermediate String.
+ * <p>
+ * Names and enumerated values are matched against tables of UTF-8 bytes in place, so reading them allocates nothing. Other strings are
+ * validated where they stand and only decoded on request, by position, so a reader can check a whole document before allocating anything.
+ * <p>
+ * Malformed JSON raises a {@link ConditionNotMetException} naming the offset of the problem. The reader is strict: no comments, no single
+ * quotes, no unquoted names.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class JsonReader {
+	private static final int MAX_DEPTH = 32;
+	private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+	private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+	private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+
+	private final ByteBuffer buffer;
+	private final int start;
+	private final int limit;
+	private int position;
+	/** The number of open objects and arrays */
+	private int depth = 0;
+	/** Whether each open object or array has no members yet */
+	private final boolean[] empty = new boolean[MAX_DEPTH];
+
+	/**
+	 * Constructor. The buffer's position and limit are left as they are.
+	 *
+	 * @param bufferParm required, the JSON between its position and limit
+	 */
+	public JsonReader(final ByteBuffer bufferParm) {
+		check(bufferParm != null, "The buffer is null.");
+
+		buffer = bufferParm;
+		start = bufferParm.position();
+		limit = bufferParm.limit();
+		position = start;
+	}
+
+	/**
+	 * Build a table of names or values for {@link #nextName(byte[][])} and {@link #nextString(byte[][])}.
+	 *
+	 * @param namesParm required
+	 * @return the UTF-8 of each, in order
+	 */
+	public static byte[][] table(final String... namesParm) {
+		final byte[][] table = new byte[namesParm.length][];
+		for (int i = 0; i < namesParm.length; i++) {
+			table[i] = namesParm[i].getBytes(UTF_8);
+		}
+
+		return table;
+	}
+
+	public void beginObject() {
+		open('{', "Expected '{'");
+	}
+
+	public void endObject() {
+		close('}', "Expected '}'");
+	}
+
+	public void beginArray() {
+		open('[', "Expected '['");
+	}
+
+	public void endArray() {
+		close(']', "Expected ']'");
+	}
+
+	/**
+	 * Return true if another member or element follows in the open object or array, consuming the comma before it.
+	 *
+	 * @return false at the closing bracket
+	 */
+	public boolean hasNext() {
+		check(depth > 0, "Nothing is open.");
+
+		skipWhitespace();
+		require(position < limit, "Unexpected end");
+
+		final byte current = buffer.get(position);
+		if (current == '}' || current == ']') {
+			return false;
+		}
+
+		if (empty[depth - 1]) {
+			empty[depth - 1] = false;
+		} else {
+			require(current == ',', "Expected ',' or a closing bracket");
+			position++;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Read a member name and the colon after it.
+	 *
+	 * @param namesParm required, the names of interest, from {@link #table(String...)}
+	 * @return the index of the name in the table; -1 for any other name, which should be skipped with {@link #skipValue()}
+	 */
+	public int nextName(final byte[][] namesParm) {
+		final int index = nextString(namesParm);
+
+		skipWhitespace();
+		require(position < limit && buffer.get(position) == ':', "Expected ':'");
+		position++;
+
+		return index;
+	}
+
+	/**
+	 * Read a string value and match it against a table, as for an enum.
+	 *
+	 * @param valuesParm required, from {@link #table(String...)}
+	 * @return the index of the value in the table; -1 for any other value
+	 */
+	public int nextString(final byte[][] valuesParm) {
+		final int quote = skipString();
+		final int length = position - quote - 2;
+
+		// A string with escapes never matches; the tables hold plain names
+		for (int i = 0; i < valuesParm.length; i++) {
+			if (matches(valuesParm[i], quote + 1, length)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Check a string value without decoding it. Use {@link #readString(int)} to decode it later.
+	 *
+	 * @return the position of the string, for {@link #readString(int)}
+	 */
+	public int skipString() {
+		skipWhitespace();
+		require(position < limit && buffer.get(position) == '"', "Expected a string");
+
+		final int quote = position++;
+
+		while (true) {
+			require(position < limit, "Unterminated string");
+
+			final byte current = buffer.get(position++);
+
+			if (current == '"') {
+				return quote;
+			}
+
+			require((current & 0xFF) >= 0x20, "Control character in string");
+
+			if (current == '\\') {
+				require(position < limit, "Unterminated escape");
+
+				final byte escaped = buffer.get(position++);
+
+				if (escaped == 'u') {
+					require(position + 4 <= limit, "Unterminated escape");
+
+					for (int i = 0; i < 4; i++) {
+						require(hexValue(buffer.get(position++)) != -1, "Invalid unicode escape");
+					}
+				} else {
+					require(escaped == '"' || escaped == '\\' || escaped == '/' || escaped == 'b' || escaped == 'f' || escaped == 'n' || escaped == 'r'
+							|| escaped == 't', "Invalid escape");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decode a string already checked by {@link #skipString()}. Malformed UTF-8 becomes U+FFFD, as it would in
+	 * {@link String#String(byte[], java.nio.charset.Charset)}.
+	 *
+	 * @param positionParm a position returned by {@link #skipString()}
+	 * @return
+	 */
+	public String readString(final int positionParm) {
+		check(positionParm >= start && positionParm < limit && buffer.get(positionParm) == '"', "No string at: " + positionParm);
+
+		// Never more chars than bytes
+		final char[] chars = new char[limit - positionParm];
+		int length = 0;
+		int index = positionParm + 1;
+
+		while (true) {
+			final int current = buffer.get(index++) & 0xFF;
+
+			if (current == '"') {
+				break;
+			}
+
+			if (current == '\\') {
+				final byte escaped = buffer.get(index++);
+
+				switch (escaped) {
+				case 'b':
+					chars[length++] = '\b';
+					break;
+				case 'f':
+					chars[length++] = '\f';
+					break;
+				case 'n':
+					chars[length++] = '\n';
+					break;
+				case 'r':
+					chars[length++] = '\r';
+					break;
+				case 't':
+					chars[length++] = '\t';
+					break;
+				case 'u':
+					chars[length++] = (char) (hexValue(buffer.get(index)) << 12 | hexValue(buffer.get(index + 1)) << 8
+							| hexValue(buffer.get(index + 2)) << 4 | hexValue(buffer.get(index + 3)));
+					index += 4;
+					break;
+				default:
+					chars[length++] = (char) escaped;
+				}
+			} else if (current < 0x80) {
+				chars[length++] = (char) current;
+			} else {
+				index = decodeUtf8(current, index, chars, length);
+				length += Character.isHighSurrogate(chars[length]) ? 2 : 1;
+			}
+		}
+
+		return new String(chars, 0, length);
+	}
+
+	/**
+	 * Read an integer value.
+	 *
+	 * @return
+	 */
+	public int nextInt() {
+		skipWhitespace();
+
+		final boolean negative = position < limit && buffer.get(position) == '-';
+		if (negative) {
+			position++;
+		}
+
+		long value = 0;
+		int digits = 0;
+
+		while (position < limit) {
+			final byte current = buffer.get(position);
+			if (current < '0' || current > '9') {
+				break;
+			}
+
+			value = value * 10 + (current - '0');
+			digits++;
+			position++;
+
+			require(value <= (long) Integer.MAX_VALUE + 1, "Integer out of range");
+		}
+
+		require(digits > 0, "Expected an integer");
+		require(position == limit || !isNumberPart(buffer.get(position)), "Expected an integer");
+
+		value = negative ? -value : value;
+		require(value <= Integer.MAX_VALUE, "Integer out of range");
+
+		return (int) value;
+	}
+
+	/**
+	 * Consume a null value, if that is what comes next.
+	 *
+	 * @return true if the value was null
+	 */
+	public boolean nextNull() {
+		skipWhitespace();
+
+		if (matches(NULL, position, Math.min(NULL.length, limit - position))) {
+			position += NULL.length;
+
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Check and skip a value of any type, such as that of an unknown member.
+	 */
+	public void skipValue() {
+		skipWhitespace();
+		require(position < limit, "Expected a value");
+
+		final byte current = buffer.get(position);
+
+		switch (current) {
+		case '{':
+			beginObject();
+			while (hasNext()) {
+				skipString();
+				skipWhitespace();
+				require(position < limit && buffer.get(position) == ':', "Expected ':'");
+				position++;
+				skipValue();
+			}
+			endObject();
+			break;
+		case '[':
+			beginArray();
+			while (hasNext()) {
+				skipValue();
+			}
+			endArray();
+			break;
+		case '"':
+			skipString();
+			break;
+		case 't':
+			skipLiteral(TRUE);
+			break;
+		case 'f':
+			skipLiteral(FALSE);
+			break;
+		case 'n':
+			skipLiteral(NULL);
+			break;
+		default:
+			skipNumber();
+		}
+	}
+
+	/**
+	 * Check that nothing but whitespace follows the value read.
+	 */
+	public void endDocument() {
+		check(depth == 0, "The JSON is incomplete.");
+
+		skipWhitespace();
+		require(position == limit, "Unexpected content after the value");
+	}
+
+	private void open(final char bracketParm, final String problemParm) {
+		require(depth < MAX_DEPTH, "Nested too deeply");
+
+		skipWhitespace();
+		require(position < limit && buffer.get(position) == bracketParm, problemParm);
+		position++;
+
+		empty[depth++] = true;
+	}
+
+	private void close(final char bracketParm, final String problemParm) {
+		check(depth > 0, "Nothing to close.");
+
+		skipWhitespace();
+		require(position < limit && buffer.get(position) == bracketParm, problemParm);
+		position++;
+
+		depth--;
+	}
+
+	private void skipLiteral(final byte[] literalParm) {
+		require(matches(literalParm, position, Math.min(literalParm.length, limit - position)), "Invalid literal");
+		position += literalParm.length;
+	}
+
+	/**
+	 * Skip a number, checking it against the JSON grammar: -?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?
+	 */
+	private void skipNumber() {
+		if (buffer.get(position) == '-') {
+			position++;
+		}
+
+		require(position < limit && isDigit(buffer.get(position)), "Expected a value");
+		if (buffer.get(position) == '0') {
+			position++;
+		} else {
+			skipDigits();
+		}
+
+		if (position < limit && buffer.get(position) == '.') {
+			position++;
+			require(position < limit && isDigit(buffer.get(position)), "Invalid number");
+			skipDigits();
+		}
+
+		if (position < limit && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+			position++;
+			if (position < limit && (buffer.get(position) == '+' || buffer.get(position) == '-')) {
+				position++;
+			}
+			require(position < limit && isDigit(buffer.get(position)), "Invalid number");
+			skipDigits();
+		}
+
+		require(position == limit || !isNumberPart(buffer.get(position)), "Invalid number");
+	}
+
+	private void skipDigits() {
+		while (position < limit && isDigit(buffer.get(position))) {
+			position++;
+		}
+	}
+
+	private void skipWhitespace() {
+		while (position < limit) {
+			final byte current = buffer.get(position);
+			if (current != ' ' && current != '\t' && current != '\n' && current != '\r') {
+				return;
+			}
+
+			position++;
+		}
+	}
+
+	/**
+	 * Return true if the bytes at the index are exactly those expected.
+	 */
+	private boolean matches(final byte[] expectedParm, final int indexParm, final int lengthParm) {
+		if (expectedParm.length != lengthParm) {
+			return false;
+		}
+
+		for (int i = 0; i < lengthParm; i++) {
+			if (buffer.get(indexParm + i) != expectedParm[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Decode one multi-byte UTF-8 sequence into the chars: one char, or a surrogate pair. An invalid sequence yields U+FFFD and consumes only the
+	 * lead byte.
+	 *
+	 * @param leadParm   the lead byte, 0x80 or more
+	 * @param indexParm  the index following the lead byte
+	 * @param charsParm  required
+	 * @param lengthParm where to put the char
+	 * @return the index following the sequence
+	 */
+	private int decodeUtf8(final int leadParm, final int indexParm, final char[] charsParm, final int lengthParm) {
+		final int continuations;
+		final int minimum;
+		int codePoint;
+
+		if (leadParm >= 0xC2 && leadParm <= 0xDF) {
+			continuations = 1;
+			minimum = 0x80;
+			codePoint = leadParm & 0x1F;
+		} else if (leadParm >= 0xE0 && leadParm <= 0xEF) {
+			continuations = 2;
+			minimum = 0x800;
+			codePoint = leadParm & 0x0F;
+		} else if (leadParm >= 0xF0 && leadParm <= 0xF4) {
+			continuations = 3;
+			minimum = 0x10000;
+			codePoint = leadParm & 0x07;
+		} else {
+			charsParm[lengthParm] = '\uFFFD';
+
+			return indexParm;
+		}
+
+		for (int i = 0; i < continuations; i++) {
+			final int continuation = indexParm + i < limit ? buffer.get(indexParm + i) & 0xFF : 0;
+			if ((continuation & 0xC0) != 0x80) {
+				charsParm[lengthParm] = '\uFFFD';
+
+				return indexParm;
+			}
+
+			codePoint = codePoint << 6 | continuation & 0x3F;
+		}
+
+		if (codePoint < minimum || codePoint > Character.MAX_CODE_POINT || Character.isSurrogate((char) codePoint) && codePoint < 0x10000) {
+			charsParm[lengthParm] = '\uFFFD';
+
+			return indexParm;
+		}
+
+		Character.toChars(codePoint, charsParm, lengthParm);
+
+		return indexParm + continuations;
+	}
+
+	private static int hexValue(final byte byteParm) {
+		if (byteParm >= '0' && byteParm <= '9') {
+			return byteParm - '0';
+		}
+
+		if (byteParm >= 'a' && byteParm <= 'f') {
+			return byteParm - 'a' + 10;
+		}
+
+		if (byteParm >= 'A' && byteParm <= 'F') {
+			return byteParm - 'A' + 10;
+		}
+
+		return -1;
+	}
+
+	private static boolean isDigit(final byte byteParm) {
+		return byteParm >= '0' && byteParm <= '9';
+	}
+
+	private static boolean isNumberPart(final byte byteParm) {
+		return isDigit(byteParm) || byteParm == '.' || byteParm == 'e' || byteParm == 'E' || byteParm == '+' || byteParm == '-';
+	}
+
+	/**
+	 * Fail, naming the offset, unless the condition holds. The message is only built on failure.
+	 */
+	private void require(final boolean conditionParm, final String problemParm) {
+		if (conditionParm) {
+			return;
+		}
+
+		throw new ConditionNotMetException(problemParm + " at offset " + (position - start) + ".");
+	}
+}
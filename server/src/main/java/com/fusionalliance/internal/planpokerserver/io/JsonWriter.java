@@ -0,0 +1,277 @@
+package com.fusionalliance.internal.planpokerserver.io;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class writes compact UTF-8 JSON straight into a pooled buffer, optionally after room reserved for a frame or message header. Objects are
+ * written by hand, field by field, so there is no reflection and no intermediate String.
+ * <p>
+ * The output is byte for byte what a default Gson instance produces: no whitespace, and strings escaped the way Gson escapes them, including
+ * its HTML-safe escapes of &lt; &gt; &amp; = and '. Writers of DTOs must write the fields Gson would, in declaration order, skipping null
+ * fields.
+ * <p>
+ * ASCII characters are written straight from a table; others are encoded to UTF-8 inline, a lone surrogate becoming '?', as
+ * {@link String#getBytes(java.nio.charset.Charset)} does.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class JsonWriter {
+	private static final int MAX_DEPTH = 32;
+	/** Escapes for ASCII characters; null for those written as is */
+	private static final String[] ASCII_ESCAPES = new String[128];
+
+	static {
+		for (int c = 0; c < 0x20; c++) {
+			ASCII_ESCAPES[c] = String.format("\\u%04x", c);
+		}
+
+		ASCII_ESCAPES['"'] = "\\\"";
+		ASCII_ESCAPES['\\'] = "\\\\";
+		ASCII_ESCAPES['\t'] = "\\t";
+		ASCII_ESCAPES['\b'] = "\\b";
+		ASCII_ESCAPES['\n'] = "\\n";
+		ASCII_ESCAPES['\r'] = "\\r";
+		ASCII_ESCAPES['\f'] = "\\f";
+		ASCII_ESCAPES['<'] = "\\u003c";
+		ASCII_ESCAPES['>'] = "\\u003e";
+		ASCII_ESCAPES['&'] = "\\u0026";
+		ASCII_ESCAPES['='] = "\\u003d";
+		ASCII_ESCAPES['\''] = "\\u0027";
+	}
+
+	private final BufferPool pool;
+	private final int headroom;
+	private PooledBuffer pooledBuffer;
+	private ByteBuffer buffer;
+	/** The number of open objects and arrays */
+	private int depth = 0;
+	/** Whether each open object or array has no members yet */
+	private final boolean[] empty = new boolean[MAX_DEPTH];
+	/** A member name was just written; its value needs no separator */
+	private boolean afterName = false;
+
+	/**
+	 * Constructor
+	 *
+	 * @param poolParm            required
+	 * @param headroomParm        bytes left free before the JSON, such as {@link WebSocketFrame#MAX_HEADER_LENGTH}
+	 * @param initialCapacityParm a guess at the JSON length; the buffer grows as needed
+	 */
+	public JsonWriter(final BufferPool poolParm, final int headroomParm, final int initialCapacityParm) {
+		check(headroomParm >= 0, "The headroom may not be negative: " + headroomParm);
+
+		pool = poolParm;
+		headroom = headroomParm;
+		pooledBuffer = pool.acquire(headroomParm + Math.max(64, initialCapacityParm));
+		buffer = pooledBuffer.getBuffer();
+		buffer.position(headroomParm);
+	}
+
+	public JsonWriter beginObject() {
+		return open('{');
+	}
+
+	public JsonWriter endObject() {
+		return close('}');
+	}
+
+	public JsonWriter beginArray() {
+		return open('[');
+	}
+
+	public JsonWriter endArray() {
+		return close(']');
+	}
+
+	/**
+	 * Write a member name.
+	 *
+	 * @param nameParm required; a Java field name, which needs no escapes
+	 * @return this
+	 */
+	public JsonWriter name(final String nameParm) {
+		separate();
+		ensureRemaining(nameParm.length() + 3);
+
+		buffer.put((byte) '"');
+		for (int i = 0; i < nameParm.length(); i++) {
+			buffer.put((byte) nameParm.charAt(i));
+		}
+		buffer.put((byte) '"').put((byte) ':');
+
+		afterName = true;
+
+		return this;
+	}
+
+	/**
+	 * Write a string value.
+	 *
+	 * @param valueParm required
+	 * @return this
+	 */
+	public JsonWriter value(final String valueParm) {
+		separate();
+
+		// Worst case: 6 bytes per char, for \\u escapes
+		ensureRemaining(valueParm.length() * 6 + 2);
+
+		buffer.put((byte) '"');
+
+		final int length = valueParm.length();
+		for (int i = 0; i < length; i++) {
+			final char c = valueParm.charAt(i);
+
+			if (c < 0x80) {
+				final String escape = ASCII_ESCAPES[c];
+				if (escape == null) {
+					buffer.put((byte) c);
+				} else {
+					putAscii(escape);
+				}
+			} else if (c < 0x800) {
+				buffer.put((byte) (0xC0 | (c >> 6)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			} else if (c == '\u2028') {
+				putAscii("\\u2028");
+			} else if (c == '\u2029') {
+				putAscii("\\u2029");
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(valueParm.charAt(i + 1))) {
+				final int codePoint = Character.toCodePoint(c, valueParm.charAt(++i));
+				buffer.put((byte) (0xF0 | (codePoint >> 18)));
+				buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+				buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+			} else if (Character.isSurrogate(c)) {
+				buffer.put((byte) '?');
+			} else {
+				buffer.put((byte) (0xE0 | (c >> 12)));
+				buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			}
+		}
+
+		buffer.put((byte) '"');
+
+		return this;
+	}
+
+	public JsonWriter value(final long valueParm) {
+		separate();
+
+		// Long.MIN_VALUE has 20 characters
+		ensureRemaining(20);
+		putAscii(Long.toString(valueParm));
+
+		return this;
+	}
+
+	public JsonWriter value(final boolean valueParm) {
+		separate();
+		ensureRemaining(5);
+		putAscii(valueParm ? "true" : "false");
+
+		return this;
+	}
+
+	/**
+	 * Hand over the JSON. The writer may not be used afterwards.
+	 *
+	 * @return the buffer, positioned at the start of the JSON, after the headroom, and limited at its end; the caller owns the reference
+	 */
+	public PooledBuffer finish() {
+		check(depth == 0, "The JSON is incomplete.");
+		check(pooledBuffer != null, "The JSON was already finished.");
+
+		buffer.limit(buffer.position()).position(headroom);
+
+		final PooledBuffer finished = pooledBuffer;
+		pooledBuffer = null;
+		buffer = null;
+
+		return finished;
+	}
+
+	/**
+	 * Drop the JSON, releasing the buffer; for use when writing fails. Does nothing once finished.
+	 */
+	public void discard() {
+		if (pooledBuffer != null) {
+			pooledBuffer.release();
+		}
+
+		pooledBuffer = null;
+		buffer = null;
+	}
+
+	private JsonWriter open(final char bracketParm) {
+		check(depth < MAX_DEPTH, "The JSON is nested too deeply.");
+
+		separate();
+		ensureRemaining(1);
+		buffer.put((byte) bracketParm);
+
+		empty[depth++] = true;
+
+		return this;
+	}
+
+	private JsonWriter close(final char bracketParm) {
+		check(depth > 0, "Nothing to close.");
+
+		depth--;
+		ensureRemaining(1);
+		buffer.put((byte) bracketParm);
+
+		return this;
+	}
+
+	/**
+	 * Write a comma before every member or element but the first, and nothing between a name and its value.
+	 */
+	private void separate() {
+		if (afterName) {
+			afterName = false;
+
+			return;
+		}
+
+		if (depth == 0) {
+			return;
+		}
+
+		if (empty[depth - 1]) {
+			empty[depth - 1] = false;
+
+			return;
+		}
+
+		ensureRemaining(1);
+		buffer.put((byte) ',');
+	}
+
+	private void putAscii(final String asciiParm) {
+		for (int i = 0; i < asciiParm.length(); i++) {
+			buffer.put((byte) asciiParm.charAt(i));
+		}
+	}
+
+	/**
+	 * Move to a larger buffer unless the bytes fit.
+	 */
+	private void ensureRemaining(final int lengthParm) {
+		if (buffer.remaining() >= lengthParm) {
+			return;
+		}
+
+		final PooledBuffer larger = pool.acquire(Math.max(buffer.capacity() * 2, buffer.position() + lengthParm));
+		buffer.flip();
+		larger.getBuffer().put(buffer);
+		pooledBuffer.release();
+
+		pooledBuffer = larger;
+		buffer = larger.getBuffer();
+	}
+}
@@ -0,0 +1,56 @@
+package com.fusionalliance.internal.planpokerserver.io;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class holds the names already sent to one WebSocket in binary messages, so that each name is sent in full only once; afterwards its
+ * index is sent instead. See {@link BinaryWriter#putName(String, byte[], NameDictionary)}.
+ * <p>
+ * The client keeps the same list by adding each name it receives in full, in order, until the list holds {@link #MAX_NAMES}. The dictionary
+ * must therefore only change when a message is actually written, in the order messages are written.
+ * <p>
+ * This class is not thread safe; the connection guards it.
+ */
+public final class NameDictionary {
+	/** Names beyond this many are always sent in full; part of the protocol */
+	public static final int MAX_NAMES = 4096;
+
+	private final Map<String, Integer> indexByName = new HashMap<>();
+
+	/**
+	 * Return the index of the name.
+	 *
+	 * @param nameParm required
+	 * @return -1 if the name has not been sent
+	 */
+	public int indexOf(final String nameParm) {
+		final Integer index = indexByName.get(nameParm);
+
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Add a name just sent in full.
+	 *
+	 * @param nameParm required, not already added
+	 * @return false if the dictionary is full
+	 */
+	public boolean add(final String nameParm) {
+		check(!indexByName.containsKey(nameParm), "The name is already in the dictionary: " + nameParm);
+
+		if (indexByName.size() >= MAX_NAMES) {
+			return false;
+		}
+
+		indexByName.put(nameParm, indexByName.size());
+
+		return true;
+	}
+
+	public int size() {
+		return indexByName.size();
+	}
+}
@@ -0,0 +1,325 @@
+package com.fusionalliance.internal.planpokerserver.io;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fusionalliance.internal.planpokerserver.utility.Configuration;
+
+/**
+ * This class implements the RFC 7692 permessage-deflate WebSocket extension for one connection.
+ * <p>
+ * Consecutive server updates are nearly identical, so the server keeps its Deflater between messages (context takeover): each update is mostly
+ * back-references into the previous one. The client may likewise keep its window, and then so does this connection's Inflater.
+ * <p>
+ * Each kept context holds zlib memory outside the heap, roughly 256K for a Deflater and 40K for an Inflater. Once the number of connections
+ * keeping context reaches {@link Configuration#getWebSocketDeflateMaxContexts()}, new connections negotiate no context takeover in both
+ * directions instead. Their messages are compressed by a Deflater shared per thread and reset for each message, so that every such connection
+ * receives the same bytes for the same update; see {@link #compressWithoutContext(ByteBuffer)}.
+ * <p>
+ * java.util.zip always uses a 32K window, so offers requiring a smaller server window are declined.
+ * <p>
+ * The bytes before and after compression are counted across all connections; see {@link #getCompressionRatio()}.
+ * <p>
+ * Compression is thread safe; decompression happens on the reactor thread only.
+ */
+public final class PerMessageDeflate {
+	public static final String SEC_WEBSOCKET_EXTENSIONS = "Sec-WebSocket-Extensions";
+
+	private static final String EXTENSION_NAME = "permessage-deflate";
+	private static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+	private static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+	private static final String SERVER_MAX_WINDOW_BITS = "server_max_window_bits";
+	private static final String CLIENT_MAX_WINDOW_BITS = "client_max_window_bits";
+	/** The only window java.util.zip supports */
+	private static final int WINDOW_BITS = 15;
+	/** Every SYNC_FLUSH ends with this empty stored block; RFC 7692 removes it from the message and the receiver puts it back */
+	private static final byte[] FLUSH_TRAILER = { 0, 0, (byte) 0xFF, (byte) 0xFF };
+
+	/** The number of live instances keeping a Deflater or Inflater between messages */
+	private static final AtomicInteger CONTEXT_COUNT = new AtomicInteger(0);
+	private static final LongAdder UNCOMPRESSED_BYTES = new LongAdder();
+	private static final LongAdder COMPRESSED_BYTES = new LongAdder();
+
+	private static final ThreadLocal<Deflater> SHARED_DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+	private static final ThreadLocal<Inflater> SHARED_INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+	private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[8192]);
+
+	private final boolean serverContextTakeover;
+	private final boolean clientContextTakeover;
+	private final String responseHeader;
+	/** Null without server context takeover, or once ended */
+	private Deflater deflater;
+	/** Null without client context takeover, or once ended */
+	private Inflater inflater;
+
+	/**
+	 * Accept the first permessage-deflate offer this server supports.
+	 *
+	 * @param extensionsHeaderParm the Sec-WebSocket-Extensions request header; null if missing
+	 * @return null if compression is not offered, not supported, or disabled
+	 */
+	public static PerMessageDeflate negotiate(final String extensionsHeaderParm) {
+		if (extensionsHeaderParm == null || !Configuration.isWebSocketDeflate()) {
+			return null;
+		}
+
+		for (String offer : extensionsHeaderParm.split(",")) {
+			final String[] offerPieces = offer.split(";");
+			if (!EXTENSION_NAME.equalsIgnoreCase(offerPieces[0].trim())) {
+				continue;
+			}
+
+			boolean acceptable = true;
+			boolean serverNoContextTakeover = false;
+			boolean clientNoContextTakeover = false;
+			boolean serverMaxWindowBits = false;
+
+			for (int i = 1; i < offerPieces.length; i++) {
+				final String[] parameter = offerPieces[i].split("=", 2);
+				final String name = parameter[0].trim();
+				final String value = parameter.length == 2 ? StringUtils.strip(parameter[1].trim(), "\"") : null;
+
+				if (SERVER_NO_CONTEXT_TAKEOVER.equals(name)) {
+					serverNoContextTakeover = true;
+				} else if (CLIENT_NO_CONTEXT_TAKEOVER.equals(name)) {
+					clientNoContextTakeover = true;
+				} else if (SERVER_MAX_WINDOW_BITS.equals(name)) {
+					// A smaller window cannot be honored
+					acceptable &= Integer.toString(WINDOW_BITS).equals(value);
+					serverMaxWindowBits = true;
+				} else if (!CLIENT_MAX_WINDOW_BITS.equals(name)) {
+					// A 32K window on our side is always within the client's limit, so client_max_window_bits needs no answer
+					acceptable = false;
+				}
+			}
+
+			if (acceptable) {
+				return new PerMessageDeflate(!serverNoContextTakeover, !clientNoContextTakeover, serverMaxWindowBits);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Return the compression ratio of all messages sent so far: bytes before compression over bytes after.
+	 *
+	 * @return 0 if nothing was compressed yet
+	 */
+	public static double getCompressionRatio() {
+		final long compressedBytes = COMPRESSED_BYTES.sum();
+
+		return compressedBytes == 0 ? 0 : UNCOMPRESSED_BYTES.sum() / (double) compressedBytes;
+	}
+
+	/**
+	 * Compress a message without context, for a connection not keeping context. The result is the same for every such connection, so a
+	 * broadcast compresses once for all of them.
+	 *
+	 * @param payloadParm required, flipped; its position is not changed
+	 * @return the compressed payload, to be sent with RSV1 set
+	 */
+	public static ByteBuffer compressWithoutContext(final ByteBuffer payloadParm) {
+		check(payloadParm != null, "The payload may not be null.");
+
+		final Deflater sharedDeflater = SHARED_DEFLATER.get();
+		sharedDeflater.reset();
+
+		return deflate(sharedDeflater, payloadParm);
+	}
+
+	/**
+	 * Constructor. A context is kept only while the limit on contexts allows; beyond it, neither side keeps context.
+	 *
+	 * @param serverContextTakeoverParm false if the client asked the server not to keep context
+	 * @param clientContextTakeoverParm false if the client will not keep context
+	 * @param serverMaxWindowBitsParm   true if the client offered server_max_window_bits, which the response must then include; RFC 7692 7.1.2.1
+	 */
+	private PerMessageDeflate(final boolean serverContextTakeoverParm, final boolean clientContextTakeoverParm,
+			final boolean serverMaxWindowBitsParm) {
+		boolean contextKept = false;
+		if (serverContextTakeoverParm || clientContextTakeoverParm) {
+			contextKept = CONTEXT_COUNT.incrementAndGet() <= Configuration.getWebSocketDeflateMaxContexts();
+
+			if (!contextKept) {
+				CONTEXT_COUNT.decrementAndGet();
+			}
+		}
+
+		serverContextTakeover = serverContextTakeoverParm && contextKept;
+		clientContextTakeover = clientContextTakeoverParm && contextKept;
+
+		final List<String> responsePieces = new ArrayList<>();
+		responsePieces.add(EXTENSION_NAME);
+		if (!serverContextTakeover) {
+			responsePieces.add(SERVER_NO_CONTEXT_TAKEOVER);
+		}
+		if (!clientContextTakeover) {
+			responsePieces.add(CLIENT_NO_CONTEXT_TAKEOVER);
+		}
+		if (serverMaxWindowBitsParm) {
+			responsePieces.add(SERVER_MAX_WINDOW_BITS + "=" + WINDOW_BITS);
+		}
+		responseHeader = String.join("; ", responsePieces);
+
+		deflater = serverContextTakeover ? new Deflater(Deflater.DEFAULT_COMPRESSION, true) : null;
+		inflater = clientContextTakeover ? new Inflater(true) : null;
+	}
+
+	/**
+	 * Return the value of the Sec-WebSocket-Extensions response header accepting the offer.
+	 *
+	 * @return
+	 */
+	public String getResponseHeader() {
+		return responseHeader;
+	}
+
+	/**
+	 * Return true if this connection's messages are compressed using the previous messages. If not, use {@link #compressWithoutContext(ByteBuffer)}.
+	 *
+	 * @return
+	 */
+	public boolean isServerContextTakeover() {
+		return serverContextTakeover;
+	}
+
+	/**
+	 * Compress a message for this connection. With context takeover, messages must be written in the order they are compressed, so this is done
+	 * as the message is queued; see {@link BroadcastMessage}.
+	 *
+	 * @param payloadParm required, flipped; its position is not changed
+	 * @return the compressed payload, to be sent with RSV1 set
+	 */
+	public synchronized ByteBuffer compress(final ByteBuffer payloadParm) {
+		check(payloadParm != null, "The payload may not be null.");
+
+		if (deflater == null) {
+			return compressWithoutContext(payloadParm);
+		}
+
+		return deflate(deflater, payloadParm);
+	}
+
+	/**
+	 * Decompress a message received with RSV1 set. Invoked on the reactor thread.
+	 *
+	 * @param payloadParm          required, flipped; consumed
+	 * @param maxMessageLengthParm the largest message accepted once decompressed
+	 * @return the decompressed payload
+	 */
+	public ByteBuffer decompress(final ByteBuffer payloadParm, final int maxMessageLengthParm) {
+		check(payloadParm != null, "The payload may not be null.");
+
+		final Inflater messageInflater;
+		if (inflater != null) {
+			messageInflater = inflater;
+		} else {
+			messageInflater = SHARED_INFLATER.get();
+			messageInflater.reset();
+		}
+
+		final byte[] input = new byte[payloadParm.remaining() + FLUSH_TRAILER.length];
+		payloadParm.get(input, 0, payloadParm.remaining());
+		System.arraycopy(FLUSH_TRAILER, 0, input, input.length - FLUSH_TRAILER.length, FLUSH_TRAILER.length);
+		messageInflater.setInput(input);
+
+		// One byte beyond the maximum shows that the message is too large
+		final int outputLimit = maxMessageLengthParm + 1;
+		byte[] output = new byte[Math.min(Math.max(input.length * 4, 256), outputLimit)];
+		int outputLength = 0;
+
+		try {
+			while (true) {
+				outputLength += messageInflater.inflate(output, outputLength, output.length - outputLength);
+
+				if (outputLength < output.length) {
+					break;
+				}
+
+				// Checked as the output grows, so that a small message inflating to a huge one is stopped early
+				check(output.length < outputLimit, "Incoming message length is too large once decompressed.");
+				output = Arrays.copyOf(output, Math.min(output.length * 2, outputLimit));
+			}
+		} catch (final DataFormatException e) {
+			check(false, "Invalid compressed WebSocket message: " + e.getMessage());
+		}
+
+		return ByteBuffer.wrap(output, 0, outputLength);
+	}
+
+	/**
+	 * Free the zlib memory. Invoked when the connection closes; the instance is not used afterwards.
+	 */
+	public synchronized void end() {
+		if (deflater == null && inflater == null) {
+			return;
+		}
+
+		if (deflater != null) {
+			deflater.end();
+		}
+
+		if (inflater != null) {
+			inflater.end();
+		}
+
+		deflater = null;
+		inflater = null;
+		CONTEXT_COUNT.decrementAndGet();
+	}
+
+	/**
+	 * Compress the payload with a sync flush, dropping the flush trailer.
+	 *
+	 * @param deflaterParm required
+	 * @param payloadParm  required, flipped; its position is not changed
+	 * @return a buffer over thread-local scratch space, valid until the thread's next compression
+	 */
+	private static ByteBuffer deflate(final Deflater deflaterParm, final ByteBuffer payloadParm) {
+		final int payloadLength = payloadParm.remaining();
+		final byte[] input;
+		final int inputOffset;
+		if (payloadParm.hasArray()) {
+			input = payloadParm.array();
+			inputOffset = payloadParm.arrayOffset() + payloadParm.position();
+		} else {
+			input = new byte[payloadLength];
+			payloadParm.duplicate().get(input);
+			inputOffset = 0;
+		}
+
+		deflaterParm.setInput(input, inputOffset, payloadLength);
+
+		byte[] output = SCRATCH.get();
+		int outputLength = 0;
+
+		while (true) {
+			outputLength += deflaterParm.deflate(output, outputLength, output.length - outputLength, Deflater.SYNC_FLUSH);
+
+			// The flush is complete only when the Deflater leaves room in the output
+			if (outputLength < output.length) {
+				break;
+			}
+
+			output = Arrays.copyOf(output, output.length * 2);
+			SCRATCH.set(output);
+		}
+
+		UNCOMPRESSED_BYTES.add(payloadLength);
+		COMPRESSED_BYTES.add(outputLength - FLUSH_TRAILER.length);
+
+		return ByteBuffer.wrap(output, 0, outputLength - FLUSH_TRAILER.length);
+	}
+}
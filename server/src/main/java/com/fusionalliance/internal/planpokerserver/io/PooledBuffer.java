@@ -0,0 +1,78 @@
+package com.fusionalliance.internal.planpokerserver.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class holds a ByteBuffer borrowed from a {@link BufferPool}, with a reference count. The buffer returns to the pool when the count drops
+ * to zero.
+ * <p>
+ * The creator holds the first reference. Each additional holder, such as each connection a broadcast frame is queued on, calls
+ * {@link #retain()} first, and every holder calls {@link #release()} exactly once when done. Holders that write the buffer concurrently use
+ * their own duplicate, so that positions do not interfere.
+ */
+public final class PooledBuffer {
+	private final BufferPool pool;
+	private final ByteBuffer buffer;
+	private final AtomicInteger referenceCount = new AtomicInteger(1);
+	/** Set by the pool while leak detection is on; must not be referenced from anywhere else */
+	BufferPool.LeakRecord leakRecord = null;
+
+	/**
+	 * Constructor
+	 *
+	 * @param poolParm   required
+	 * @param bufferParm required
+	 */
+	PooledBuffer(final BufferPool poolParm, final ByteBuffer bufferParm) {
+		pool = poolParm;
+		buffer = bufferParm;
+	}
+
+	/**
+	 * Return the buffer. It must not be used after the last release.
+	 *
+	 * @return
+	 */
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Add a reference.
+	 *
+	 * @return this
+	 */
+	public PooledBuffer retain() {
+		final int previousCount = referenceCount.getAndIncrement();
+
+		if (previousCount <= 0) {
+			referenceCount.getAndDecrement();
+
+			throw new IllegalStateException("The buffer was already released.");
+		}
+
+		return this;
+	}
+
+	/**
+	 * Drop a reference, returning the buffer to the pool if it was the last one.
+	 */
+	public void release() {
+		final int newCount = referenceCount.decrementAndGet();
+
+		if (newCount == 0) {
+			pool.release(this);
+
+			return;
+		}
+
+		if (newCount < 0) {
+			throw new IllegalStateException("The buffer was released too many times.");
+		}
+	}
+
+	public int getReferenceCount() {
+		return referenceCount.get();
+	}
+}
@@ -0,0 +1,294 @@
+package com.fusionalliance.internal.planpokerserver.io;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.EventListener;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fusionalliance.internal.planpokerserver.utility.CommException;
+import com.fusionalliance.internal.planpokerserver.utility.HashedTimerWheel;
+import com.fusionalliance.internal.planpokerserver.utility.InternalException;
+import com.fusionalliance.internal.planpokerserver.utility.LoggerUtility;
+
+/**
+ * This class implements a reactor: a selector serviced by its own thread. Each connection is owned by exactly one reactor, and all reads,
+ * writes, and interest changes for that connection happen on the reactor's thread.
+ * <p>
+ * Other threads hand work to the reactor through {@link #execute(Runnable)}; the task is queued and the selector is woken up.
+ * <p>
+ * Each reactor also owns a {@link HashedTimerWheel} for connection timers such as heartbeats. The selector waits no longer than the next tick
+ * while timers are pending, and expired timers run on the reactor thread before the ready keys are handled.
+ */
+public final class Reactor implements Executor {
+	private static final Logger LOG = LoggerFactory.getLogger(Reactor.class);
+
+	private static final long TIMER_TICK_MILLIS = 100;
+	/** 512 ticks of 100 millis: one rotation covers about 51 seconds */
+	private static final int TIMER_BUCKETS = 512;
+
+	private final String name;
+	private final ConnectionListener connectionListener;
+	private final Selector selector;
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+	private final Thread thread;
+	private final HashedTimerWheel timerWheel = new HashedTimerWheel(TIMER_TICK_MILLIS, TIMER_BUCKETS, nowMillis());
+
+	private volatile boolean running = true;
+
+	/**
+	 * Constructor
+	 *
+	 * @param nameParm               required, used as the thread name
+	 * @param connectionListenerParm required
+	 */
+	public Reactor(final String nameParm, final ConnectionListener connectionListenerParm) {
+		check(nameParm != null, "The name may not be null.");
+		check(connectionListenerParm != null, "The ConnectionListener may not be null.");
+
+		name = nameParm;
+		connectionListener = connectionListenerParm;
+
+		try {
+			selector = Selector.open();
+		} catch (final Exception e) {
+			LoggerUtility.logIssueWithStackTrace(LOG, "Failed to open selector for reactor: " + name, false, e);
+
+			throw new InternalException();
+		}
+
+		thread = new Thread(this::run, name);
+	}
+
+	/**
+	 * Start the reactor thread.
+	 */
+	public void start() {
+		thread.start();
+	}
+
+	/**
+	 * Stop the reactor thread and close its connections.
+	 */
+	public void shutdown() {
+		running = false;
+		selector.wakeup();
+	}
+
+	/**
+	 * Hand a newly accepted socket to this reactor. The socket must already be non-blocking.
+	 *
+	 * @param socketParm required
+	 */
+	public void register(final SocketChannel socketParm) {
+		check(socketParm != null, "The socket may not be null.");
+
+		execute(() -> {
+			try {
+				final SelectionKey key = socketParm.register(selector, SelectionKey.OP_READ);
+				final ClientConnection connection = new ClientConnection(key, this);
+				key.attach(connection);
+
+				connectionListener.handleRegistered(connection);
+			} catch (final Exception e) {
+				LoggerUtility.logIssueWithStackTrace(LOG, "Error registering socket.", false, e);
+
+				closeQuietly(socketParm);
+			}
+		});
+	}
+
+	/**
+	 * Run the task on the reactor thread.
+	 */
+	@Override
+	public void execute(final Runnable taskParm) {
+		check(taskParm != null, "The task may not be null.");
+
+		tasks.add(taskParm);
+
+		if (!isReactorThread()) {
+			selector.wakeup();
+		}
+	}
+
+	/**
+	 * Run the task on the reactor thread after the delay. Must be called on the reactor thread; other threads use {@link #execute(Runnable)} to
+	 * get there first.
+	 *
+	 * @param taskParm        required
+	 * @param delayMillisParm the minimum delay; the task may run up to one tick late
+	 * @return a handle for cancelling the timer
+	 */
+	public HashedTimerWheel.Timer schedule(final Runnable taskParm, final long delayMillisParm) {
+		check(isReactorThread(), "Timers may only be scheduled on the reactor thread.");
+
+		return timerWheel.schedule(taskParm, delayMillisParm);
+	}
+
+	/**
+	 * Return true if the caller is running on this reactor's thread.
+	 *
+	 * @return
+	 */
+	public boolean isReactorThread() {
+		return Thread.currentThread() == thread;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * The selector loop.
+	 */
+	private void run() {
+		try {
+			Iterator<SelectionKey> selectedKeyIterator = null;
+			SelectionKey key = null;
+
+			while (running) {
+				// 0 waits until a key is ready or the selector is woken up
+				selector.select(timerWheel.millisUntilNextTick(nowMillis()));
+
+				// Before the keys, so that timers scheduled by the handlers are measured from the current tick
+				timerWheel.advance(nowMillis());
+
+				selectedKeyIterator = selector.selectedKeys().iterator();
+
+				while (selectedKeyIterator.hasNext()) {
+					key = selectedKeyIterator.next();
+					selectedKeyIterator.remove();
+
+					if (key.isValid() && key.isWritable()) {
+						handleWrite(key);
+					}
+
+					if (key.isValid() && key.isReadable()) {
+						connectionListener.handleReadable((ClientConnection) key.attachment());
+					}
+
+					key = null;
+				}
+
+				selectedKeyIterator = null;
+
+				runTasks();
+			}
+		} catch (final Exception e) {
+			LoggerUtility.logIssueWithStackTrace(LOG, "Fatal error in reactor loop: " + name, false, e);
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				closeQuietly((SocketChannel) key.channel());
+			}
+
+			try {
+				selector.close();
+			} catch (final Exception e) {
+				// Do nothing
+			}
+		}
+	}
+
+	/**
+	 * Run the tasks queued by other threads. Tasks queued while running are left for the next pass, so the selector is never starved.
+	 */
+	private void runTasks() {
+		for (int taskCount = tasks.size(); taskCount > 0; taskCount--) {
+			final Runnable task = tasks.poll();
+
+			if (task == null) {
+				break;
+			}
+
+			try {
+				task.run();
+			} catch (final Exception e) {
+				LoggerUtility.logIssueWithStackTrace(LOG, "Reactor task failed.", false, e);
+			}
+		}
+	}
+
+	/**
+	 * Drain the connection's outbound queue as far as the socket accepts.
+	 *
+	 * @param keyParm required
+	 */
+	private void handleWrite(final SelectionKey keyParm) {
+		final ClientConnection connection = (ClientConnection) keyParm.attachment();
+
+		try {
+			connection.flush();
+		} catch (final CommException ce) {
+			// Already logged
+			handleFailed(connection);
+		}
+	}
+
+	/**
+	 * Close a connection whose socket failed and inform the listener. Invoked on the reactor thread.
+	 *
+	 * @param connectionParm required
+	 */
+	void handleFailed(final ClientConnection connectionParm) {
+		connectionParm.close();
+
+		connectionListener.handleFailed(connectionParm);
+	}
+
+	/**
+	 * Return a monotonic clock in millis, unaffected by changes to the system time.
+	 *
+	 * @return
+	 */
+	private static long nowMillis() {
+		return System.nanoTime() / 1_000_000;
+	}
+
+	/**
+	 * Close the socket, ignoring errors.
+	 *
+	 * @param socketParm required
+	 */
+	private static void closeQuietly(final SocketChannel socketParm) {
+		try {
+			socketParm.close();
+		} catch (final Exception e) {
+			// Do nothing
+		}
+	}
+
+	/**
+	 * This interface defines the contract for classes that process events on a reactor's connections. Methods are invoked on the reactor thread.
+	 */
+	public interface ConnectionListener extends EventListener {
+		/**
+		 * Process a connection just registered with the reactor, before anything is read from it.
+		 *
+		 * @param connection required
+		 */
+		void handleRegistered(final ClientConnection connection);
+
+		/**
+		 * Process a readable connection.
+		 *
+		 * @param connection required
+		 */
+		void handleReadable(final ClientConnection connection);
+
+		/**
+		 * Process a connection that failed while writing. The connection is already closed.
+		 *
+		 * @param connection required
+		 */
+		void handleFailed(final ClientConnection connection);
+	}
+}
@@ -17,87 +17,77 @@ import com.fusionalliance.internal.planpokerserver.utility.LoggerUtility;
 public final class SocketChannelUtility {
 	private static final Logger LOG = LoggerFactory.getLogger(SocketChannelUtility.class);
 
-	/** Millis to wait between reads */
-	private static final int READ_DELAY = 20;
-
 	/**
-	 * Read from the SocketChannel. Make reasonable efforts to retrieve the full message before returning.
-	 * <p>
-	 * This is a basic weakness of the HTTP protocol. It doesn't specify the message length up front, and we would have to process the message as a
-	 * stream up front, searching for a content-length or the end of headers.
+	 * Read whatever bytes are ready from the SocketChannel into the buffer. This never waits for more data; callers keep per-connection state (see
+	 * {@link HttpRequestParser}) and resume when the selector reports the socket readable again.
 	 * <p>
-	 * We sacrifice some performance for simplicity by reading until no more data is found, delaying after each read. Our application has low
-	 * throughput, so this won't be an issue.
+	 * The socket is closed if the client closed it.
 	 * 
 	 * @param socketParm required
-	 * @return
+	 * @param bufferParm required, in write mode with space remaining
+	 * @return the number of bytes read; -1 if the socket was closed by the client
 	 * @throws CommException
 	 */
-	public static ByteBuffer readUnblocked(final SocketChannel socketParm) throws CommException {
+	public static int read(final SocketChannel socketParm, final ByteBuffer bufferParm) throws CommException {
 		check(socketParm != null, "The socket channel is null.");
+		check(bufferParm != null, "The ByteBuffer must not be null.");
 
-		final ByteBuffer buffer = ByteBuffer.allocate(8000);
 		try {
-			// Read with small delays until nothing is read
-			while (true) {
-				final int bytesRead = socketParm.read(buffer);
-
-				// Socket closed by client
-				if (bytesRead == -1) {
-					socketParm.close();
+			final int bytesRead = socketParm.read(bufferParm);
 
-					return null;
-				}
-
-				if (bytesRead == 0) {
-					break;
-				}
-
-				try {
-					Thread.sleep(READ_DELAY);
-				} catch (final Exception e) {
-					// Do nothing
-				}
+			// Socket closed by client
+			if (bytesRead == -1) {
+				socketParm.close();
 			}
+
+			return bytesRead;
 		} catch (final Exception e) {
 			LoggerUtility.logIssueWithStackTrace(LOG, "Error reading socket.", false, e);
 			throw new CommException();
 		}
-		return buffer;
 	}
 
 	/**
-	 * Write to a SocketChannel.
+	 * Write as many bytes as the SocketChannel currently accepts, using a single gathering write. This never waits; a non-blocking socket with a
+	 * full send buffer returns 0.
 	 * 
-	 * @param byteBufferParm not empty
-	 * @param socketParm     not null
+	 * @param socketParm  required
+	 * @param buffersParm required, flipped
+	 * @param lengthParm  the number of buffers to write, starting with the first
+	 * @return the number of bytes written
 	 * @throws CommException
 	 */
-	public static void writeToSocket(final ByteBuffer byteBufferParm, final SocketChannel socketParm) throws CommException {
-		check(byteBufferParm != null, "The ByteBuffer must not be null.");
+	public static long write(final SocketChannel socketParm, final ByteBuffer[] buffersParm, final int lengthParm) throws CommException {
+		check(socketParm != null, "The socket channel is null.");
+		check(buffersParm != null, "The ByteBuffers must not be null.");
 
-		// Non-blocking sockets are not guaranteed to write the full ByteBuffer
-		// Loop until the write completes
-		// This is an issue only with slow clients or bad connections
-		while (true) {
-			try {
-				socketParm.write(byteBufferParm);
-			} catch (final Exception e) {
-				LoggerUtility.logIssueWithStackTrace(LOG, "Error writing to the socket.", false, e);
-				throw new CommException();
-			}
+		try {
+			return socketParm.write(buffersParm, 0, lengthParm);
+		} catch (final Exception e) {
+			LoggerUtility.logIssueWithStackTrace(LOG, "Error writing to the socket.", false, e);
+			throw new CommException();
+		}
+	}
 
-			if (!byteBufferParm.hasRemaining()) {
-				break;
-			}
+	/**
+	 * Transfer as many bytes of the file region as the SocketChannel currently accepts. This never waits; the region keeps its progress, so the
+	 * transfer resumes on the next call.
+	 * 
+	 * @param socketParm required
+	 * @param regionParm required
+	 * @return the number of bytes transferred
+	 * @throws CommException
+	 */
+	public static long transfer(final SocketChannel socketParm, final FileRegion regionParm) throws CommException {
+		check(socketParm != null, "The socket channel is null.");
+		check(regionParm != null, "The FileRegion must not be null.");
 
-			try {
-				Thread.sleep(1);
-			} catch (final Exception e) {
-				// do nothing
-			}
+		try {
+			return regionParm.transferTo(socketParm);
+		} catch (final Exception e) {
+			LoggerUtility.logIssueWithStackTrace(LOG, "Error transferring a file to the socket.", false, e);
+			throw new CommException();
 		}
-		byteBufferParm.clear();
 	}
 
 	/**
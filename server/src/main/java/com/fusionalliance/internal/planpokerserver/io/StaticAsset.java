@@ -0,0 +1,246 @@
+package com.fusionalliance.internal.planpokerserver.io;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.fusionalliance.internal.planpokerserver.utility.CommException;
+import com.google.common.hash.Hashing;
+
+/**
+ * This class holds one static file, ready to be served: the complete response head and the body, both in direct read-only buffers.
+ * <p>
+ * A compressible file may also have a gzip variant, chosen per request from Accept-Encoding. Both variants then carry
+ * <code>Vary: Accept-Encoding</code>, so that shared caches keep them apart; the Content-Type is that of the original file in both.
+ * <p>
+ * Each variant has a strong ETag derived from a SHA-256 hash of the content; the gzip variant's ETag has a -gz suffix, since it is a different
+ * representation. A request whose If-None-Match holds the ETag gets a body-less 304. Files whose names carry the Angular build hash, such as
+ * main.ac3345f5e70eecbfd7a0.js, never change under that name and are cached as immutable for a year; everything else, notably index.html, must
+ * be revalidated on each use.
+ * <p>
+ * Served from disk, the body of the identity variant is not held in memory; it is sent from a FileChannel with transferTo. See
+ * {@link FileRegion}.
+ * <p>
+ * Instances are immutable and shared by all reactors; each response sends duplicates, so that concurrent writes do not disturb each other's
+ * positions.
+ */
+public final class StaticAsset {
+	/** Angular production builds name files like name.[20 hex digits].ext */
+	private static final Pattern HASHED_NAME_PATTERN = Pattern.compile(".*\\.[0-9a-f]{16,}\\.[a-z]+$");
+	private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+	private static final String REVALIDATE_CACHE_CONTROL = "no-cache";
+	/** Hex digits of the SHA-256 hash used in the ETag, 128 bits */
+	private static final int ETAG_HASH_LENGTH = 32;
+
+	private final String path;
+	private final String contentType;
+	private final String cacheControl;
+	private final Variant identity;
+	/** Null if the file is not compressible or compression does not make it smaller */
+	private final Variant gzip;
+
+	/**
+	 * Constructor
+	 *
+	 * @param pathParm        required, the request path, for example /index.html
+	 * @param contentTypeParm required
+	 * @param bodyBytesParm   required, may be empty
+	 * @param bodyFileParm    the open file holding the body, which is then not kept in memory; null to keep the body in memory
+	 * @param gzipBytesParm   the gzip-compressed body; null if there is no gzip variant
+	 */
+	StaticAsset(final String pathParm, final String contentTypeParm, final byte[] bodyBytesParm, final FileChannel bodyFileParm,
+			final byte[] gzipBytesParm) {
+		check(pathParm != null, "The path may not be null.");
+		check(contentTypeParm != null, "The content type may not be null.");
+		check(bodyBytesParm != null, "The body may not be null.");
+
+		path = pathParm;
+		contentType = contentTypeParm;
+
+		if (HASHED_NAME_PATTERN.matcher(pathParm).matches()) {
+			cacheControl = IMMUTABLE_CACHE_CONTROL;
+		} else {
+			cacheControl = REVALIDATE_CACHE_CONTROL;
+		}
+
+		final String hash = Hashing.sha256().hashBytes(bodyBytesParm).toString().substring(0, ETAG_HASH_LENGTH);
+		identity = new Variant(bodyBytesParm, bodyFileParm, null, '"' + hash + '"', gzipBytesParm != null);
+
+		if (gzipBytesParm == null) {
+			gzip = null;
+		} else {
+			gzip = new Variant(gzipBytesParm, null, "gzip", '"' + hash + "-gz\"", true);
+		}
+	}
+
+	/**
+	 * Queue the response on the connection: a 304 if the client's copy is current; otherwise, the complete 200, whose head and body go out in one
+	 * gathering write.
+	 *
+	 * @param connectionParm  required
+	 * @param gzipParm        true if the client accepts gzip; ignored if there is no gzip variant
+	 * @param ifNoneMatchParm the If-None-Match header; null if missing
+	 * @throws CommException
+	 */
+	public void send(final ClientConnection connectionParm, final boolean gzipParm, final String ifNoneMatchParm) throws CommException {
+		final Variant variant = gzipParm && gzip != null ? gzip : identity;
+
+		if (ifNoneMatchParm != null && variant.matches(ifNoneMatchParm)) {
+			connectionParm.send(HttpUtility.withConnectionHeader(variant.notModifiedHead.duplicate(), connectionParm));
+
+			return;
+		}
+
+		final ByteBuffer head = HttpUtility.withConnectionHeader(variant.head.duplicate(), connectionParm);
+
+		if (variant.bodyFile != null) {
+			connectionParm.send(head, new FileRegion(variant.bodyFile, 0, variant.contentLength));
+
+			return;
+		}
+
+		connectionParm.send(head, variant.body.duplicate());
+	}
+
+	/**
+	 * Close the file holding the body, if any.
+	 */
+	void close() {
+		if (identity.bodyFile == null) {
+			return;
+		}
+
+		try {
+			identity.bodyFile.close();
+		} catch (final Exception e) {
+			// Do nothing
+		}
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public String getCacheControl() {
+		return cacheControl;
+	}
+
+	public String getETag() {
+		return identity.eTag;
+	}
+
+	public int getContentLength() {
+		return identity.contentLength;
+	}
+
+	/**
+	 * Return the length of the gzip variant's body.
+	 *
+	 * @return -1 if there is no gzip variant
+	 */
+	public int getGzipContentLength() {
+		if (gzip == null) {
+			return -1;
+		}
+
+		return gzip.contentLength;
+	}
+
+	/**
+	 * Copy the bytes into a direct read-only buffer, which the socket writes without an intermediate copy.
+	 *
+	 * @param bytesParm required
+	 * @return
+	 */
+	private static ByteBuffer toDirectBuffer(final byte[] bytesParm) {
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(bytesParm.length);
+		buffer.put(bytesParm);
+		buffer.flip();
+
+		return buffer.asReadOnlyBuffer();
+	}
+
+	/**
+	 * This class holds one encoding of the file: its ETag, its 200 response head and body, and its 304 response head.
+	 */
+	private final class Variant {
+		private final String eTag;
+		private final int contentLength;
+		private final ByteBuffer head;
+		/** Null if the body is sent from the file */
+		private final ByteBuffer body;
+		/** Null if the body is held in memory */
+		private final FileChannel bodyFile;
+		private final ByteBuffer notModifiedHead;
+
+		/**
+		 * Constructor
+		 *
+		 * @param bodyBytesParm       required
+		 * @param bodyFileParm        the open file holding the body; null to keep the body in memory
+		 * @param contentEncodingParm null for the identity encoding
+		 * @param eTagParm            required, quoted
+		 * @param varyParm            true if the file has more than one variant
+		 */
+		private Variant(final byte[] bodyBytesParm, final FileChannel bodyFileParm, final String contentEncodingParm, final String eTagParm,
+				final boolean varyParm) {
+			eTag = eTagParm;
+			contentLength = bodyBytesParm.length;
+			bodyFile = bodyFileParm;
+
+			// RFC 7232: a 304 repeats the validators and caching headers of the 200, but no representation headers
+			final List<HttpHeader> notModifiedHeaders = new ArrayList<>();
+			notModifiedHeaders.add(new HttpHeader("ETag", eTagParm));
+			notModifiedHeaders.add(new HttpHeader("Cache-Control", cacheControl));
+			if (varyParm) {
+				notModifiedHeaders.add(new HttpHeader("Vary", "Accept-Encoding"));
+			}
+
+			final List<HttpHeader> headers = new ArrayList<>(notModifiedHeaders);
+			headers.add(new HttpHeader("Content-Type", contentType));
+			if (contentEncodingParm != null) {
+				headers.add(new HttpHeader("Content-Encoding", contentEncodingParm));
+			}
+			headers.add(new HttpHeader("Content-Length", Integer.toString(bodyBytesParm.length)));
+
+			head = toDirectBuffer(HttpUtility.assembleHead("HTTP/1.1 200 OK", headers));
+			body = bodyFileParm == null ? toDirectBuffer(bodyBytesParm) : null;
+			notModifiedHead = toDirectBuffer(HttpUtility.assembleHead("HTTP/1.1 304 Not Modified", notModifiedHeaders));
+		}
+
+		/**
+		 * Return true if the If-None-Match header holds this variant's ETag, or is *. If-None-Match uses the weak comparison, so a W/ prefix is
+		 * ignored.
+		 *
+		 * @param ifNoneMatchParm required
+		 * @return
+		 */
+		private boolean matches(final String ifNoneMatchParm) {
+			for (String candidate : ifNoneMatchParm.split(",")) {
+				String trimmedCandidate = candidate.trim();
+
+				if ("*".equals(trimmedCandidate)) {
+					return true;
+				}
+
+				if (trimmedCandidate.startsWith("W/")) {
+					trimmedCandidate = trimmedCandidate.substring(2);
+				}
+
+				if (eTag.equals(trimmedCandidate)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+}
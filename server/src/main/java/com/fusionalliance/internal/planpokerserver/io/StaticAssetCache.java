@@ -0,0 +1,309 @@
+package com.fusionalliance.internal.planpokerserver.io;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fusionalliance.internal.planpokerserver.utility.Configuration;
+import com.fusionalliance.internal.planpokerserver.utility.InternalException;
+import com.fusionalliance.internal.planpokerserver.utility.LoggerUtility;
+
+/**
+ * This class holds the static files of the Angular app, loaded once at startup. GETs are then served from memory, without opening the
+ * resource or inflating the jar entry on every request.
+ * <p>
+ * The files are found under a classpath root, which may be a directory (running from an IDE or target/classes) or a directory inside a jar
+ * (running the repackaged jar). Alternatively, the files are served from a directory on disk, with the bodies sent by transferTo rather than held
+ * in memory; see {@link Configuration#getAssetDirectory()}. Instances are immutable after construction and shared by all reactors.
+ * <p>
+ * Compressible files are gzipped once while loading. A file named like its original plus .gz, produced by the build, is used as the gzip variant
+ * instead of compressing at startup.
+ */
+public final class StaticAssetCache {
+	private static final Logger LOG = LoggerFactory.getLogger(StaticAssetCache.class);
+
+	private static final String INDEX_PATH = "/index.html";
+	private static final String GZIP_SUFFIX = ".gz";
+
+	private final Map<String, StaticAsset> assetByPath = new HashMap<>();
+
+	/**
+	 * Constructor. Loads every file under a classpath directory into memory.
+	 *
+	 * @param rootParm required, the classpath directory holding the files, for example /dist
+	 */
+	public StaticAssetCache(final String rootParm) {
+		check(rootParm != null && rootParm.startsWith("/"), "The root must be an absolute classpath directory.");
+
+		final URL rootUrl = StaticAssetCache.class.getResource(rootParm);
+		if (rootUrl == null) {
+			LOG.warn("No static files found at: " + rootParm);
+
+			return;
+		}
+
+		load(listFiles(rootUrl), relativePath -> readResource(rootParm + "/" + relativePath), null);
+	}
+
+	/**
+	 * Constructor. Prepares every file under a directory on disk. The bodies are sent from the files with transferTo; only the headers and the
+	 * gzip variants are held in memory. The files must not change while the server runs.
+	 *
+	 * @param directoryParm required, an existing directory
+	 */
+	public StaticAssetCache(final Path directoryParm) {
+		check(directoryParm != null && Files.isDirectory(directoryParm), "The static file directory does not exist: " + directoryParm);
+
+		load(listDirectoryFiles(directoryParm), relativePath -> readFile(directoryParm.resolve(relativePath)), directoryParm);
+	}
+
+	/**
+	 * Create an asset for each file.
+	 *
+	 * @param relativePathsParm required, the paths of the files relative to the root, separated by '/'
+	 * @param readerParm        required, reads a file by its relative path
+	 * @param directoryParm     the directory holding the files, whose bodies are then sent from disk; null to keep the bodies in memory
+	 */
+	private void load(final List<String> relativePathsParm, final Function<String, byte[]> readerParm, final Path directoryParm) {
+		final Set<String> relativePaths = new HashSet<>(relativePathsParm);
+		long totalBytes = 0;
+		long totalGzipBytes = 0;
+
+		for (String relativePath : relativePaths) {
+			// A precompressed file from the build is the gzip variant of its original, not a file of its own
+			if (relativePath.endsWith(GZIP_SUFFIX) && relativePaths.contains(StringUtils.removeEnd(relativePath, GZIP_SUFFIX))) {
+				continue;
+			}
+
+			final String path = "/" + relativePath;
+			final String contentType = HttpUtility.getContentType(path);
+			final byte[] bodyBytes = readerParm.apply(relativePath);
+
+			byte[] gzipBytes = null;
+			if (HttpUtility.isCompressible(contentType)) {
+				if (relativePaths.contains(relativePath + GZIP_SUFFIX)) {
+					gzipBytes = readerParm.apply(relativePath + GZIP_SUFFIX);
+				} else {
+					gzipBytes = compress(bodyBytes);
+				}
+
+				// Not worth the CPU on the client
+				if (gzipBytes.length >= bodyBytes.length) {
+					gzipBytes = null;
+				}
+			}
+
+			final FileChannel bodyFile = directoryParm == null ? null : openFile(directoryParm.resolve(relativePath));
+
+			assetByPath.put(path, new StaticAsset(path, contentType, bodyBytes, bodyFile, gzipBytes));
+			totalBytes += bodyBytes.length;
+			totalGzipBytes += gzipBytes == null ? bodyBytes.length : gzipBytes.length;
+		}
+
+		LOG.info("Loaded static files from " + (directoryParm == null ? "the classpath" : directoryParm.toString()) + ": " + assetByPath.size()
+				+ ", bytes: " + totalBytes + ", with gzip: " + totalGzipBytes);
+	}
+
+	/**
+	 * Return the file for a request path. The root path is served as index.html.
+	 *
+	 * @param pathParm required
+	 * @return null if there is no such file
+	 */
+	public StaticAsset get(final String pathParm) {
+		if ("/".equals(pathParm)) {
+			return assetByPath.get(INDEX_PATH);
+		}
+
+		return assetByPath.get(pathParm);
+	}
+
+	public int size() {
+		return assetByPath.size();
+	}
+
+	/**
+	 * Close the files held open for serving from disk.
+	 */
+	public void close() {
+		for (StaticAsset asset : assetByPath.values()) {
+			asset.close();
+		}
+	}
+
+	/**
+	 * Return the paths of all files under the root, relative to it, separated by '/'.
+	 *
+	 * @param rootUrlParm required
+	 * @return
+	 */
+	private static List<String> listFiles(final URL rootUrlParm) {
+		try {
+			final URLConnection connection = rootUrlParm.openConnection();
+
+			if (connection instanceof JarURLConnection) {
+				return listJarFiles((JarURLConnection) connection);
+			}
+
+			return listDirectoryFiles(Paths.get(rootUrlParm.toURI()));
+		} catch (final Exception e) {
+			LoggerUtility.logIssueWithStackTrace(LOG, "Unable to list static files: " + rootUrlParm, false, e);
+
+			throw new InternalException();
+		}
+	}
+
+	/**
+	 * Return the paths of all files under the directory, relative to it, separated by '/'.
+	 *
+	 * @param directoryParm required
+	 * @return
+	 */
+	private static List<String> listDirectoryFiles(final Path directoryParm) {
+		try (Stream<Path> paths = Files.walk(directoryParm)) {
+			return paths //
+					.filter(Files::isRegularFile) //
+					.map(path -> directoryParm.relativize(path).toString().replace('\\', '/')) //
+					.collect(Collectors.toList());
+		} catch (final Exception e) {
+			LoggerUtility.logIssueWithStackTrace(LOG, "Unable to list static files: " + directoryParm, false, e);
+
+			throw new InternalException();
+		}
+	}
+
+	/**
+	 * Return the paths of all file entries below the connection's directory entry.
+	 *
+	 * @param connectionParm required
+	 * @return
+	 * @throws Exception
+	 */
+	private static List<String> listJarFiles(final JarURLConnection connectionParm) throws Exception {
+		final String prefix = connectionParm.getEntryName() + "/";
+		final List<String> relativePaths = new ArrayList<>();
+
+		// Do not close a cached jar file; the class loader is still using it
+		final JarFile jarFile = connectionParm.getJarFile();
+		final Enumeration<JarEntry> entries = jarFile.entries();
+
+		while (entries.hasMoreElements()) {
+			final JarEntry entry = entries.nextElement();
+
+			if (!entry.isDirectory() && entry.getName().startsWith(prefix)) {
+				relativePaths.add(entry.getName().substring(prefix.length()));
+			}
+		}
+
+		return relativePaths;
+	}
+
+	/**
+	 * Compress the bytes with gzip at the best compression level; this is done once, so the extra CPU does not matter.
+	 *
+	 * @param bytesParm required
+	 * @return
+	 */
+	private static byte[] compress(final byte[] bytesParm) {
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytesParm.length / 2);
+
+		try (GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream) {
+			{
+				def.setLevel(Deflater.BEST_COMPRESSION);
+			}
+		}) {
+			gzipStream.write(bytesParm);
+		} catch (final Exception e) {
+			LoggerUtility.logIssueWithStackTrace(LOG, "Unable to compress static file.", false, e);
+
+			throw new InternalException();
+		}
+
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * Read a file fully.
+	 *
+	 * @param fileParm required
+	 * @return
+	 */
+	private static byte[] readFile(final Path fileParm) {
+		try {
+			return Files.readAllBytes(fileParm);
+		} catch (final Exception e) {
+			LoggerUtility.logIssueWithStackTrace(LOG, "Unable to read static file: " + fileParm, false, e);
+
+			throw new InternalException();
+		}
+	}
+
+	/**
+	 * Open a file for transferTo. The channel stays open for the life of the server and is shared by all responses.
+	 *
+	 * @param fileParm required
+	 * @return
+	 */
+	private static FileChannel openFile(final Path fileParm) {
+		try {
+			return FileChannel.open(fileParm, StandardOpenOption.READ);
+		} catch (final Exception e) {
+			LoggerUtility.logIssueWithStackTrace(LOG, "Unable to open static file: " + fileParm, false, e);
+
+			throw new InternalException();
+		}
+	}
+
+	/**
+	 * Read a classpath resource fully.
+	 *
+	 * @param resourceParm required
+	 * @return
+	 */
+	private static byte[] readResource(final String resourceParm) {
+		try (InputStream inputStream = StaticAssetCache.class.getResourceAsStream(resourceParm)) {
+			check(inputStream != null, "Static file disappeared: " + resourceParm);
+
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			final byte[] readBuffer = new byte[8192];
+			int bytesRead = 0;
+
+			while ((bytesRead = inputStream.read(readBuffer)) != -1) {
+				outputStream.write(readBuffer, 0, bytesRead);
+			}
+
+			return outputStream.toByteArray();
+		} catch (final Exception e) {
+			LoggerUtility.logIssueWithStackTrace(LOG, "Unable to read static file: " + resourceParm, false, e);
+
+			throw new InternalException();
+		}
+	}
+}
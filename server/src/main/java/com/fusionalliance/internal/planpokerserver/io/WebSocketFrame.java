@@ -3,9 +3,21 @@ package com.fusionalliance.internal.planpokerserver.io;
 import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.SecureRandom;
 
 /**
  * This class implements a WebSocket frame.
+ * <p>
+ * Outgoing frames are encoded straight into pooled buffers; see {@link #encode(boolean, WebSocketOpCode, boolean, byte[])}. Received frames are
+ * read through a flyweight: one instance per connection is pointed at each frame in the receive buffer in turn, reading the header in place and
+ * exposing the payload as a view, so that receiving a frame copies nothing.
+ * <p>
+ * All three RFC 6455 length forms are supported in both directions: 7 bits, 16 bits (126), and 64 bits (127). A message may be split into
+ * fragments: a TEXT or BINARY frame without FIN, followed by CONTINUATION frames, the last with FIN. See
+ * {@link #encodeMessage(WebSocketOpCode, ByteBuffer, int, boolean)} and {@link WebSocketFrameDecoder#addToMessage(WebSocketFrame)}.
+ * <p>
+ * RSV1 marks the first frame of a message compressed with permessage-deflate; see {@link PerMessageDeflate}. RSV2 and RSV3 are never used.
  * <ul>
  * <li>byte 001 Fin, RSV1, RSV2, RSV3, opcode(4)</li>
  * <li>byte 002 MASK, byte payload len(7)</li>
@@ -25,178 +37,328 @@ import java.nio.ByteBuffer;
  * </ul>
  */
 public class WebSocketFrame {
-	private static final int MAX_PAYLOAD_LENGTH = 0x2800;
+	/** RFC 6455: control frames carry at most 125 bytes and are never fragmented */
+	static final int MAX_CONTROL_PAYLOAD_LENGTH = 125;
+	/** The largest header: 2 bytes, 8 bytes extended length, 4 bytes mask */
+	public static final int MAX_HEADER_LENGTH = 14;
+	/** RFC 6455 requires masks that cannot be predicted; SecureRandom is thread safe */
+	private static final SecureRandom MASK_RANDOM = new SecureRandom();
+
+	/** The largest payload accepted by {@link #wrap(ByteBuffer, int, int)} */
+	private final int maxPayloadLength;
+
+	private ByteBuffer buffer = null;
+	private boolean finished;
+	private WebSocketOpCode opCode;
+	private boolean masked;
+	private int payloadLength;
+	/** The four mask bytes, first byte in the high-order position; 0 if not masked */
+	private int mask;
+	/** Index of the first payload byte in the buffer */
+	private int payloadStart;
+	/** The payload was unmasked in place */
+	private boolean unmasked;
+	/** RSV1: the message starting with this frame is compressed */
+	private boolean compressed;
 
-	private final boolean finished;
-	private final WebSocketOpCode opCode;
-	private final boolean masked;
-	/** Contrary to the RFC, we do not accept payloads over 10K in length */
-	private final int payloadLength;
-	private final byte[] mask;
-	private final byte[] payload;
-	private final ByteBuffer readOnlyBuffer;
+	/**
+	 * Constructor for a flyweight over received bytes. See {@link #wrap(ByteBuffer, int, int)}.
+	 *
+	 * @param maxPayloadLengthParm the largest payload accepted; a longer frame fails the connection
+	 */
+	WebSocketFrame(final int maxPayloadLengthParm) {
+		maxPayloadLength = maxPayloadLengthParm;
+	}
 
 	/**
-	 * Constructor using fields.
+	 * Encode an outgoing frame into a buffer borrowed from the {@link BufferPool}. The caller owns the returned reference; see
+	 * {@link ClientConnection#send(PooledBuffer)}.
 	 * 
 	 * @param finishedParm
-	 * @param opCodeParm
-	 *                     required
-	 * @param maskedParm
-	 * @param payloadParm
-	 *                     required, length < =10k
+	 * @param opCodeParm   required
+	 * @param maskedParm   false for frames sent by a server
+	 * @param payloadParm  required, at most 125 bytes for a control frame; not modified
+	 * @return a flipped buffer holding the whole frame
 	 */
-	public WebSocketFrame(final boolean finishedParm, final WebSocketOpCode opCodeParm, final boolean maskedParm, final byte[] payloadParm) {
-		check(opCodeParm != null, "OP code is null.");
+	public static PooledBuffer encode(final boolean finishedParm, final WebSocketOpCode opCodeParm, final boolean maskedParm,
+			final byte[] payloadParm) {
 		check(payloadParm != null, "Payload is null.");
-		check(payloadParm.length <= MAX_PAYLOAD_LENGTH, "Payload length is too long: " + payloadParm.length);
 
-		finished = finishedParm;
-		opCode = opCodeParm;
-		masked = maskedParm;
-		payloadLength = payloadParm.length;
-		payload = payloadParm;
+		return encode(finishedParm, opCodeParm, maskedParm, ByteBuffer.wrap(payloadParm));
+	}
 
-		final ByteBuffer tempBuffer = ByteBuffer.allocate(payloadLength + 14);
+	/**
+	 * Encode an outgoing frame into a buffer borrowed from the {@link BufferPool}, copying the payload straight from a buffer, such as the payload
+	 * of a received frame.
+	 * 
+	 * @param finishedParm
+	 * @param opCodeParm   required
+	 * @param maskedParm   false for frames sent by a server
+	 * @param payloadParm  required, flipped, at most 125 bytes for a control frame; its position is not changed
+	 * @return a flipped buffer holding the whole frame
+	 */
+	public static PooledBuffer encode(final boolean finishedParm, final WebSocketOpCode opCodeParm, final boolean maskedParm,
+			final ByteBuffer payloadParm) {
+		check(opCodeParm != null, "OP code is null.");
+		check(payloadParm != null, "Payload is null.");
+		check(!opCodeParm.isControl() || (finishedParm && payloadParm.remaining() <= MAX_CONTROL_PAYLOAD_LENGTH),
+				"Control frames must be final and at most 125 bytes: " + payloadParm.remaining());
 
-		byte currentByte = 0;
+		final PooledBuffer pooledBuffer = BufferPool.SHARED.acquire(payloadParm.remaining() + MAX_HEADER_LENGTH);
+		final ByteBuffer buffer = pooledBuffer.getBuffer();
 
-		// FIN, OpCode
-		currentByte = (byte) opCode.getNumericCode();
-		if (finished) {
-			currentByte |= 0x80;
-		}
-		tempBuffer.put(currentByte);
+		putFrame(buffer, finishedParm, opCodeParm, false, maskedParm, payloadParm.duplicate());
+		buffer.flip();
 
-		// MASK, byte payload length
-		if (payloadLength < 126) {
-			currentByte = (byte) payloadLength;
-		} else {
-			currentByte = (byte) 126;
-		}
-		if (masked) {
-			currentByte |= 0x80;
-		}
-		tempBuffer.put(currentByte);
+		return pooledBuffer;
+	}
 
-		if (payloadLength >= 126) {
-			tempBuffer.putShort((short) payloadLength);
-		}
+	/**
+	 * Encode an outgoing data message from a server into a buffer borrowed from the {@link BufferPool}. A payload longer than the fragment length
+	 * is split into fragments, all encoded one after the other into the same buffer, so the message is still queued and broadcast as one buffer.
+	 * The caller owns the returned reference; see {@link ClientConnection#send(PooledBuffer)}.
+	 *
+	 * @param opCodeParm         required, TEXT or BINARY
+	 * @param payloadParm        required, flipped; its position is not changed
+	 * @param fragmentLengthParm the largest payload per frame, at least 1
+	 * @param compressedParm     true if the payload was compressed with permessage-deflate, which sets RSV1 on the first frame
+	 * @return a flipped buffer holding every frame of the message
+	 */
+	public static PooledBuffer encodeMessage(final WebSocketOpCode opCodeParm, final ByteBuffer payloadParm, final int fragmentLengthParm,
+			final boolean compressedParm) {
+		check(opCodeParm == WebSocketOpCode.TEXT || opCodeParm == WebSocketOpCode.BINARY, "Messages are TEXT or BINARY: " + opCodeParm);
+		check(payloadParm != null, "Payload is null.");
+		check(fragmentLengthParm > 0, "The fragment length must be positive: " + fragmentLengthParm);
 
-		if (!masked) {
-			mask = new byte[] { 0, 0, 0, 0 };
-		} else {
-			mask = generateMask();
+		final int payloadLength = payloadParm.remaining();
+		final int fragmentCount = Math.max(1, (payloadLength + fragmentLengthParm - 1) / fragmentLengthParm);
+		final PooledBuffer pooledBuffer = BufferPool.SHARED.acquire(payloadLength + fragmentCount * MAX_HEADER_LENGTH);
+		final ByteBuffer buffer = pooledBuffer.getBuffer();
 
-			tempBuffer.put(mask[0]);
-			tempBuffer.put(mask[1]);
-			tempBuffer.put(mask[2]);
-			tempBuffer.put(mask[3]);
+		final ByteBuffer fragment = payloadParm.duplicate();
+		for (int i = 0; i < fragmentCount; i++) {
+			final boolean last = i == fragmentCount - 1;
+			fragment.limit(last ? payloadParm.limit() : fragment.position() + fragmentLengthParm);
 
-			applyMask();
+			putFrame(buffer, last, i == 0 ? opCodeParm : WebSocketOpCode.CONTINUATION, i == 0 && compressedParm, false, fragment);
 		}
 
-		tempBuffer.put(payload);
-
-		tempBuffer.flip();
+		buffer.flip();
 
-		readOnlyBuffer = tempBuffer.asReadOnlyBuffer();
+		return pooledBuffer;
 	}
 
 	/**
-	 * Constructor from an incoming message.
+	 * Turn a payload into a final, unmasked frame in place, by writing the header into the room left before it. Nothing is copied.
 	 *
-	 * @param requestBufferParm
-	 *                          required, must be flipped, no side-effects on passed buffer
+	 * @param bufferParm     required; the payload lies between the position and the limit, with at least {@link #MAX_HEADER_LENGTH} bytes before
+	 *                       it; the position is moved back to the start of the header
+	 * @param opCodeParm     required, TEXT or BINARY
+	 * @param compressedParm true if the payload was compressed with permessage-deflate
 	 */
-	public WebSocketFrame(final ByteBuffer requestBufferParm) {
-		check(requestBufferParm != null, "Request ByteBuffer is null.");
-		check(requestBufferParm.position() == 0, "Request ByteBuffer not flipped (positon not 0): " + requestBufferParm.position());
+	public static void prependHeader(final ByteBuffer bufferParm, final WebSocketOpCode opCodeParm, final boolean compressedParm) {
+		check(opCodeParm == WebSocketOpCode.TEXT || opCodeParm == WebSocketOpCode.BINARY, "Messages are TEXT or BINARY: " + opCodeParm);
 
-		// Create a deep copy of the input data
-		readOnlyBuffer = ByteBuffer.allocate(requestBufferParm.limit()).put(requestBufferParm);
-		readOnlyBuffer.flip();
+		final int payloadLength = bufferParm.remaining();
+		final int headerStart = bufferParm.position() - headerLength(payloadLength);
+		check(headerStart >= 0, "There is no room for the header.");
 
-		byte currentByte = 0;
+		bufferParm.position(headerStart);
+		putHeader(bufferParm.duplicate(), true, opCodeParm, compressedParm, false, payloadLength);
+	}
 
-		// Fin, RSV1-3, op code
-		currentByte = readOnlyBuffer.get();
+	/**
+	 * Return the length of an unmasked frame header for the payload length.
+	 */
+	private static int headerLength(final int payloadLengthParm) {
+		if (payloadLengthParm < 126) {
+			return 2;
+		}
 
-		finished = (currentByte & 0x80) != 0;
-		opCode = WebSocketOpCode.findOpCodeByNumericCode(currentByte & 0x0F);
+		return payloadLengthParm <= 0xFFFF ? 4 : 10;
+	}
 
-		// Mask set, byte payload length
-		currentByte = readOnlyBuffer.get();
-		masked = (currentByte & 0x80) != 0;
+	/**
+	 * Write one frame, choosing the shortest length form for the payload.
+	 *
+	 * @param bufferParm   required, with room for the header and the payload
+	 * @param finishedParm
+	 * @param opCodeParm     required
+	 * @param compressedParm sets RSV1
+	 * @param maskedParm     false for frames sent by a server
+	 * @param payloadParm    required, flipped; consumed
+	 */
+	private static void putFrame(final ByteBuffer bufferParm, final boolean finishedParm, final WebSocketOpCode opCodeParm,
+			final boolean compressedParm, final boolean maskedParm, final ByteBuffer payloadParm) {
+		final int payloadLength = payloadParm.remaining();
 
-		final int bytePayloadLength = currentByte & 0x7F;
+		putHeader(bufferParm, finishedParm, opCodeParm, compressedParm, maskedParm, payloadLength);
 
-		if (bytePayloadLength < 126) {
-			payloadLength = bytePayloadLength;
-		} else if (bytePayloadLength == 126) {
-			payloadLength = readOnlyBuffer.getShort();
+		if (!maskedParm) {
+			bufferParm.put(payloadParm);
 		} else {
-			// 127: We support this only in case a caller always uses this format, even for reasonable values
-			final long longPayloadLength = readOnlyBuffer.getLong();
-			payloadLength = (longPayloadLength <= Integer.MAX_VALUE ? (int) longPayloadLength : Integer.MAX_VALUE);
-		}
-
-		check(payloadLength <= MAX_PAYLOAD_LENGTH, "Incoming payload length is too large: " + payloadLength);
+			final int mask = MASK_RANDOM.nextInt();
+			bufferParm.putInt(mask);
 
-		// Client messages must always be masked; server messages are not masked
-		mask = new byte[] { 0, 0, 0, 0 };
-		if (masked) {
-			mask[0] = readOnlyBuffer.get();
-			mask[1] = readOnlyBuffer.get();
-			mask[2] = readOnlyBuffer.get();
-			mask[3] = readOnlyBuffer.get();
+			// Mask the copy, leaving the caller's payload as it was
+			final int payloadStart = bufferParm.position();
+			bufferParm.put(payloadParm);
+			applyMask(bufferParm, payloadStart, payloadLength, mask);
 		}
+	}
 
-		payload = new byte[payloadLength];
-		readOnlyBuffer.get(payload);
+	/**
+	 * Write a frame header, choosing the shortest length form for the payload. A masked header ends before its masking key.
+	 *
+	 * @param bufferParm        required, with room for the header
+	 * @param finishedParm
+	 * @param opCodeParm        required
+	 * @param compressedParm    sets RSV1
+	 * @param maskedParm        false for frames sent by a server
+	 * @param payloadLengthParm at least 0
+	 */
+	private static void putHeader(final ByteBuffer bufferParm, final boolean finishedParm, final WebSocketOpCode opCodeParm,
+			final boolean compressedParm, final boolean maskedParm, final int payloadLengthParm) {
+		byte currentByte = 0;
 
-		readOnlyBuffer.rewind();
+		// FIN, OpCode
+		currentByte = (byte) opCodeParm.getNumericCode();
+		if (finishedParm) {
+			currentByte |= 0x80;
+		}
+		if (compressedParm) {
+			currentByte |= 0x40;
+		}
+		bufferParm.put(currentByte);
 
-		applyMask();
+		// MASK, byte payload length
+		if (payloadLengthParm < 126) {
+			currentByte = (byte) payloadLengthParm;
+		} else if (payloadLengthParm <= 0xFFFF) {
+			currentByte = (byte) 126;
+		} else {
+			currentByte = (byte) 127;
+		}
+		if (maskedParm) {
+			currentByte |= 0x80;
+		}
+		bufferParm.put(currentByte);
+
+		// Extended payload length, unsigned, network byte order
+		if (payloadLengthParm > 0xFFFF) {
+			bufferParm.putLong(payloadLengthParm);
+		} else if (payloadLengthParm >= 126) {
+			bufferParm.put((byte) (payloadLengthParm >>> 8));
+			bufferParm.put((byte) payloadLengthParm);
+		}
 	}
 
 	/**
-	 * Generate a random mask for this frame.
+	 * Point this flyweight at the frame starting at the offset. The header fields are read in place; nothing is copied. The payload stays masked
+	 * until first accessed.
 	 * <p>
-	 * For the purposes of the RFC, the resulting mask is sufficiently random.
-	 * 
-	 * @return
+	 * The frame is valid only until the buffer is changed, which for a frame returned by {@link WebSocketFrameDecoder} means until the decoder's
+	 * next call.
+	 * <p>
+	 * A frame longer than the maximum, or a control frame breaking the RFC 6455 limits, fails the check, which fails the connection.
+	 *
+	 * @param bufferParm required, holding received bytes
+	 * @param offsetParm the index of the frame's first byte
+	 * @param limitParm  the index following the last received byte
+	 * @return the number of bytes the frame occupies; -1 if the frame is not yet complete, in which case this flyweight is unchanged
 	 */
-	private byte[] generateMask() {
-		final byte[] mask = new byte[4];
-		long longValue = System.currentTimeMillis() + System.nanoTime();
+	int wrap(final ByteBuffer bufferParm, final int offsetParm, final int limitParm) {
+		final int available = limitParm - offsetParm;
+		if (available < 2) {
+			return -1;
+		}
+
+		final byte firstByte = bufferParm.get(offsetParm);
+		final byte secondByte = bufferParm.get(offsetParm + 1);
+		final boolean maskedFrame = (secondByte & 0x80) != 0;
+		final int maskLength = maskedFrame ? 4 : 0;
+		final int bytePayloadLength = secondByte & 0x7F;
 
-		for (int i = 0; i < 4; i++) {
-			mask[i] = (byte) (longValue % 0xFF);
-			longValue /= 0xFF;
+		final int headerLength;
+		final long longPayloadLength;
+		if (bytePayloadLength < 126) {
+			headerLength = 2 + maskLength;
+			longPayloadLength = bytePayloadLength;
+		} else if (bytePayloadLength == 126) {
+			if (available < 4) {
+				return -1;
+			}
+
+			headerLength = 4 + maskLength;
+			longPayloadLength = bufferParm.getShort(offsetParm + 2) & 0xFFFF;
+		} else {
+			if (available < 10) {
+				return -1;
+			}
+
+			headerLength = 10 + maskLength;
+			longPayloadLength = bufferParm.getLong(offsetParm + 2);
 		}
 
-		return mask;
+		// A negative length has the most significant bit set, which RFC 6455 forbids
+		check(longPayloadLength >= 0 && longPayloadLength <= maxPayloadLength, "Incoming payload length is too large: " + longPayloadLength);
+
+		final int frameLength = headerLength + (int) longPayloadLength;
+		if (available < frameLength) {
+			return -1;
+		}
+
+		buffer = bufferParm;
+		finished = (firstByte & 0x80) != 0;
+		compressed = (firstByte & 0x40) != 0;
+		opCode = WebSocketOpCode.findOpCodeByNumericCode(firstByte & 0x0F);
+		masked = maskedFrame;
+		payloadLength = (int) longPayloadLength;
+		payloadStart = offsetParm + headerLength;
+		unmasked = false;
+
+		// Client messages must always be masked; server messages are not masked
+		mask = masked ? bufferParm.getInt(payloadStart - 4) : 0;
+
+		check(!opCode.isControl() || (finished && payloadLength <= MAX_CONTROL_PAYLOAD_LENGTH), "Invalid control frame: " + opCode);
+		check((firstByte & 0x30) == 0, "WebSocket frame has RSV2 or RSV3 set.");
+		check(!compressed || (!opCode.isControl() && opCode != WebSocketOpCode.CONTINUATION), "RSV1 is set on a " + opCode + " frame.");
+
+		return frameLength;
 	}
 
 	/**
-	 * Apply the mask to the payload, if masked.
+	 * Apply the mask to a range of the buffer, in place. The bytes are processed eight at a time, XORed with the mask repeated to fill a long, and
+	 * the remaining bytes four and then one at a time. Since 8 is a multiple of the mask length, the mask lines up with every long. Both heap and
+	 * direct buffers read and write longs in one operation, unaligned or not, so no leading bytes need to be done separately.
 	 * <p>
 	 * This operation is reversible.
+	 *
+	 * @param bufferParm required, writable, in either byte order
+	 * @param offsetParm the index of the first byte
+	 * @param lengthParm the number of bytes
+	 * @param maskParm   the four mask bytes, first byte in the high-order position
 	 */
-	private void applyMask() {
-		if (!masked) {
-			return;
+	public static void applyMask(final ByteBuffer bufferParm, final int offsetParm, final int lengthParm, final int maskParm) {
+		// The mask bytes must meet the buffer's bytes in order, whatever order the buffer assembles longs in
+		final boolean bigEndian = bufferParm.order() == ByteOrder.BIG_ENDIAN;
+		final int intMask = bigEndian ? maskParm : Integer.reverseBytes(maskParm);
+		final long longMask = ((long) intMask << 32) | (intMask & 0xFFFFFFFFL);
+
+		final int end = offsetParm + lengthParm;
+		int index = offsetParm;
+
+		for (; index <= end - Long.BYTES; index += Long.BYTES) {
+			bufferParm.putLong(index, bufferParm.getLong(index) ^ longMask);
 		}
 
-		int maskIndex = 0;
-		for (int i = 0; i < payloadLength; i++) {
-			payload[i] ^= mask[maskIndex];
+		if (index <= end - Integer.BYTES) {
+			bufferParm.putInt(index, bufferParm.getInt(index) ^ intMask);
+			index += Integer.BYTES;
+		}
 
-			maskIndex++;
-			if (maskIndex >= mask.length) {
-				maskIndex = 0;
-			}
+		for (int shift = 24; index < end; index++, shift -= 8) {
+			bufferParm.put(index, (byte) (bufferParm.get(index) ^ (maskParm >>> shift)));
 		}
 	}
 
@@ -204,6 +366,10 @@ public class WebSocketFrame {
 		return finished;
 	}
 
+	public boolean isCompressed() {
+		return compressed;
+	}
+
 	public WebSocketOpCode getOpCode() {
 		return opCode;
 	}
@@ -216,22 +382,37 @@ public class WebSocketFrame {
 		return payloadLength;
 	}
 
-	public byte[] getMask() {
+	public int getMask() {
 		return mask;
 	}
 
-	public byte[] getPayload() {
-		return payload;
+	/**
+	 * Return a read-only view of the unmasked payload, without copying. The payload is unmasked in place on first access.
+	 *
+	 * @return a flipped buffer, valid as long as the frame
+	 */
+	public ByteBuffer getPayloadBuffer() {
+		if (masked && !unmasked) {
+			applyMask(buffer, payloadStart, payloadLength, mask);
+			unmasked = true;
+		}
+
+		final ByteBuffer payloadBuffer = buffer.asReadOnlyBuffer();
+		payloadBuffer.limit(payloadStart + payloadLength);
+		payloadBuffer.position(payloadStart);
+
+		return payloadBuffer.slice();
 	}
 
 	/**
-	 * Return a read-only ByteBuffer that is ready for read (position = 0, limit = content length.)
-	 * 
+	 * Return a copy of the unmasked payload, for callers that keep it beyond the life of the frame.
+	 *
 	 * @return
 	 */
-	public ByteBuffer getReadOnlyBuffer() {
-		readOnlyBuffer.rewind();
+	public byte[] getPayload() {
+		final byte[] payload = new byte[payloadLength];
+		getPayloadBuffer().get(payload);
 
-		return readOnlyBuffer;
+		return payload;
 	}
 }
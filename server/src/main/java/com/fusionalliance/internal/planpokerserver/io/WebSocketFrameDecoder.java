@@ -0,0 +1,300 @@
+package com.fusionalliance.internal.planpokerserver.io;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import com.fusionalliance.internal.planpokerserver.utility.CommException;
+
+/**
+ * This class implements an incremental WebSocket frame decoder. One instance is attached to each WebSocket connection.
+ * <p>
+ * Bytes are accumulated across reads until a whole frame is available; {@link #nextFrame()} then returns each complete frame in turn, advancing
+ * by the number of bytes the frame occupies. A single read may hold part of a frame, several frames, or control frames interleaved with the
+ * fragments of a data message.
+ * <p>
+ * The buffer is borrowed from the {@link BufferPool} when bytes arrive and returned once every received frame has been returned, so an idle
+ * WebSocket holds no buffer.
+ * <p>
+ * The fragments of a data message are reassembled by {@link #addToMessage(WebSocketFrame)}. An unfragmented message is returned as a view of
+ * its frame, without copying; only fragmented messages are copied, into a second pooled buffer. A frame or message longer than the maximum fails
+ * the connection, which caps the memory a client can make the server hold.
+ * <p>
+ * With permessage-deflate negotiated, a message whose first frame has RSV1 set is compressed; see {@link #isMessageCompressed()}. Decompression
+ * is left to {@link PerMessageDeflate}.
+ */
+public final class WebSocketFrameDecoder {
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final int maxMessageLength;
+	/** permessage-deflate was negotiated, so RSV1 may be set */
+	private final boolean compressionNegotiated;
+
+	/** Holds received bytes; always in write mode (position = end of received data); null while nothing is buffered */
+	private PooledBuffer pooledBuffer = null;
+	private ByteBuffer buffer = null;
+	/** Index of the first byte of the next frame */
+	private int frameStart = 0;
+	/** The flyweight returned by {@link #nextFrame()} */
+	private final WebSocketFrame frame;
+
+	/** Holds the fragments of the message being reassembled, in write mode; null unless a fragmented message is in progress or was returned */
+	private PooledBuffer messageBuffer = null;
+	/** The op code of the message being reassembled, or of the last message returned */
+	private WebSocketOpCode messageOpCode = null;
+	/** The message being reassembled, or the last message returned, is compressed */
+	private boolean messageCompressed = false;
+	/** The last message returned was reassembled in the message buffer, which is released on the next call */
+	private boolean messageReturned = false;
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxMessageLengthParm      the largest payload accepted, for a single frame or a whole fragmented message
+	 * @param compressionNegotiatedParm true if permessage-deflate was negotiated
+	 */
+	public WebSocketFrameDecoder(final int maxMessageLengthParm, final boolean compressionNegotiatedParm) {
+		check(maxMessageLengthParm >= WebSocketFrame.MAX_CONTROL_PAYLOAD_LENGTH, "The maximum message length is too small: " + maxMessageLengthParm);
+
+		maxMessageLength = maxMessageLengthParm;
+		compressionNegotiated = compressionNegotiatedParm;
+		frame = new WebSocketFrame(maxMessageLengthParm);
+	}
+
+	/**
+	 * Add bytes that were received before the decoder existed, such as frames that followed the upgrade request in the same read.
+	 *
+	 * @param bytesParm required, flipped
+	 */
+	public void append(final ByteBuffer bytesParm) {
+		check(bytesParm != null, "The bytes may not be null.");
+
+		if (!bytesParm.hasRemaining()) {
+			return;
+		}
+
+		acquireBuffer();
+
+		while (buffer.remaining() < bytesParm.remaining()) {
+			grow();
+		}
+
+		buffer.put(bytesParm);
+	}
+
+	/**
+	 * Read whatever bytes are ready from the socket. This never blocks and never waits.
+	 *
+	 * @param socketParm required
+	 * @return the number of bytes read; -1 if the socket was closed by the client
+	 * @throws CommException
+	 */
+	public int read(final SocketChannel socketParm) throws CommException {
+		check(socketParm != null, "The socket channel is null.");
+
+		acquireBuffer();
+
+		// Reclaim the space used by frames that were already returned
+		if (frameStart > 0) {
+			buffer.flip();
+			buffer.position(frameStart);
+			buffer.compact();
+
+			frameStart = 0;
+		}
+
+		if (!buffer.hasRemaining()) {
+			grow();
+		}
+
+		final int bytesRead = SocketChannelUtility.read(socketParm, buffer);
+
+		if (buffer.position() == 0) {
+			releaseReceiveBuffer();
+		}
+
+		return bytesRead;
+	}
+
+	/**
+	 * Return the next complete frame, if any. The frame is a flyweight over the receive buffer: the same instance is returned each time, and it is
+	 * valid only until the next call to this decoder.
+	 *
+	 * @return null if no complete frame is available
+	 */
+	public WebSocketFrame nextFrame() {
+		releaseReturnedMessage();
+
+		if (buffer == null) {
+			return null;
+		}
+
+		// Everything returned so far is consumed: give the buffer back
+		if (frameStart == buffer.position()) {
+			releaseReceiveBuffer();
+
+			return null;
+		}
+
+		final int frameLength = frame.wrap(buffer, frameStart, buffer.position());
+		if (frameLength == -1) {
+			return null;
+		}
+
+		frameStart += frameLength;
+
+		return frame;
+	}
+
+	/**
+	 * Add a data frame to the message being received. Control frames may arrive between the fragments; they are not passed here.
+	 *
+	 * @param frameParm required, a TEXT, BINARY, or CONTINUATION frame from {@link #nextFrame()}
+	 * @return the unmasked payload of the whole message, valid until the next call to this decoder; null if more fragments are expected
+	 */
+	public ByteBuffer addToMessage(final WebSocketFrame frameParm) {
+		check(frameParm != null, "The frame may not be null.");
+		check(!frameParm.getOpCode().isControl(), "Control frames are not part of a message: " + frameParm.getOpCode());
+
+		releaseReturnedMessage();
+
+		if (frameParm.getOpCode() != WebSocketOpCode.CONTINUATION) {
+			check(messageOpCode == null, "A WebSocket message began before the previous one finished.");
+			check(!frameParm.isCompressed() || compressionNegotiated, "RSV1 is set without permessage-deflate.");
+
+			messageCompressed = frameParm.isCompressed();
+
+			// The common case: the whole message in one frame
+			if (frameParm.isFinished()) {
+				messageOpCode = frameParm.getOpCode();
+
+				return frameParm.getPayloadBuffer();
+			}
+
+			messageOpCode = frameParm.getOpCode();
+			messageBuffer = BufferPool.SHARED.acquire(Math.min(frameParm.getPayloadLength() * 2, maxMessageLength));
+		} else {
+			check(messageBuffer != null, "A WebSocket continuation frame arrived without a message.");
+		}
+
+		final ByteBuffer payload = frameParm.getPayloadBuffer();
+		ByteBuffer message = messageBuffer.getBuffer();
+		check(message.position() + payload.remaining() <= maxMessageLength,
+				"Incoming message length is too large: " + (message.position() + payload.remaining()));
+
+		if (message.remaining() < payload.remaining()) {
+			final PooledBuffer newMessageBuffer = BufferPool.SHARED
+					.acquire(Math.min(Math.max(message.capacity() * 2, message.position() + payload.remaining()), maxMessageLength));
+			message.flip();
+			newMessageBuffer.getBuffer().put(message);
+
+			messageBuffer.release();
+			messageBuffer = newMessageBuffer;
+			message = newMessageBuffer.getBuffer();
+		}
+
+		message.put(payload);
+
+		if (!frameParm.isFinished()) {
+			return null;
+		}
+
+		messageReturned = true;
+
+		final ByteBuffer completeMessage = message.asReadOnlyBuffer();
+		completeMessage.flip();
+
+		return completeMessage;
+	}
+
+	/**
+	 * Return the op code of the message last returned by {@link #addToMessage(WebSocketFrame)}.
+	 *
+	 * @return TEXT or BINARY
+	 */
+	public WebSocketOpCode getMessageOpCode() {
+		return messageOpCode;
+	}
+
+	/**
+	 * Return true if the message last returned by {@link #addToMessage(WebSocketFrame)} is compressed with permessage-deflate.
+	 *
+	 * @return
+	 */
+	public boolean isMessageCompressed() {
+		return messageCompressed;
+	}
+
+	/**
+	 * Return the buffers to the pool, discarding any partial frame or message. Also used when the connection closes.
+	 */
+	public void releaseBuffer() {
+		releaseReceiveBuffer();
+
+		if (messageBuffer != null) {
+			messageBuffer.release();
+		}
+
+		messageBuffer = null;
+		messageOpCode = null;
+		messageReturned = false;
+	}
+
+	/**
+	 * Return the receive buffer to the pool, discarding any partial frame.
+	 */
+	private void releaseReceiveBuffer() {
+		if (pooledBuffer != null) {
+			pooledBuffer.release();
+		}
+
+		pooledBuffer = null;
+		buffer = null;
+		frameStart = 0;
+	}
+
+	/**
+	 * Finish with the message last returned: release its buffer, if it was reassembled, and get ready for the next.
+	 */
+	private void releaseReturnedMessage() {
+		if (messageOpCode == null || (messageBuffer != null && !messageReturned)) {
+			return;
+		}
+
+		if (messageBuffer != null) {
+			messageBuffer.release();
+		}
+
+		messageBuffer = null;
+		messageOpCode = null;
+		messageReturned = false;
+	}
+
+	/**
+	 * Borrow a buffer if none is held.
+	 */
+	private void acquireBuffer() {
+		if (buffer == null) {
+			pooledBuffer = BufferPool.SHARED.acquire(INITIAL_CAPACITY);
+			buffer = pooledBuffer.getBuffer();
+		}
+	}
+
+	/**
+	 * Enlarge the buffer to hold a frame that does not fit.
+	 */
+	private void grow() {
+		// Room for one maximum frame; the frames before it were compacted away
+		final int maxCapacity = maxMessageLength + WebSocketFrame.MAX_HEADER_LENGTH;
+		check(buffer.capacity() < maxCapacity, "The incoming frames are too large.");
+
+		final PooledBuffer newPooledBuffer = BufferPool.SHARED.acquire(Math.min(buffer.capacity() * 2, maxCapacity));
+		buffer.flip();
+		newPooledBuffer.getBuffer().put(buffer);
+
+		pooledBuffer.release();
+		pooledBuffer = newPooledBuffer;
+		buffer = newPooledBuffer.getBuffer();
+	}
+}
@@ -1,8 +1,5 @@
 package com.fusionalliance.internal.planpokerserver.io;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * This enum lists WebSocket OP codes.
  */
@@ -15,26 +12,21 @@ public enum WebSocketOpCode {
 	PONG(0xA), //
 	;
 
-	private static final Map<Integer, WebSocketOpCode> opCodeByNumericCode = new HashMap<>();
+	/** Indexed by the 4-bit numeric code; built once, when the class is initialized, so any reactor thread may read it */
+	private static final WebSocketOpCode[] OP_CODE_BY_NUMERIC_CODE = new WebSocketOpCode[16];
 
-	public static WebSocketOpCode findOpCodeByNumericCode(final int numericCodeParm) {
-		if (opCodeByNumericCode.isEmpty()) {
-			synchronized (opCodeByNumericCode) {
-				if (opCodeByNumericCode.isEmpty()) {
-					for (WebSocketOpCode opCode : WebSocketOpCode.values()) {
-						opCodeByNumericCode.put(Integer.valueOf(opCode.getNumericCode()), opCode);
-					}
-				}
-			}
+	static {
+		for (WebSocketOpCode opCode : WebSocketOpCode.values()) {
+			OP_CODE_BY_NUMERIC_CODE[opCode.getNumericCode()] = opCode;
 		}
+	}
 
-		WebSocketOpCode opcode = opCodeByNumericCode.get(Integer.valueOf(numericCodeParm));
-
-		if (opcode == null) {
+	public static WebSocketOpCode findOpCodeByNumericCode(final int numericCodeParm) {
+		if (numericCodeParm < 0 || numericCodeParm >= OP_CODE_BY_NUMERIC_CODE.length || OP_CODE_BY_NUMERIC_CODE[numericCodeParm] == null) {
 			throw new IllegalArgumentException("No WebSocket OpCode for: " + numericCodeParm);
 		}
 
-		return opcode;
+		return OP_CODE_BY_NUMERIC_CODE[numericCodeParm];
 	}
 
 	private final int numericCode;
@@ -46,4 +38,13 @@ public enum WebSocketOpCode {
 	public int getNumericCode() {
 		return numericCode;
 	}
+
+	/**
+	 * Return true for CLOSE, PING, and PONG, which RFC 6455 limits to 125 bytes and never fragments.
+	 *
+	 * @return
+	 */
+	public boolean isControl() {
+		return (numericCode & 0x8) != 0;
+	}
 }
@@ -12,6 +12,7 @@ import com.google.common.io.BaseEncoding;
 public final class WebSocketUtility {
 	public static final String SEC_WEBSOCKET_KEY = "Sec-WebSocket-Key";
 	public static final String SEC_WEBSOCKET_ACCEPT = "Sec-WebSocket-Accept";
+	public static final String SEC_WEBSOCKET_PROTOCOL = "Sec-WebSocket-Protocol";
 
 	/**
 	 * Generate a Sec_WebSocket_Key from a phrase.
@@ -50,6 +51,33 @@ public final class WebSocketUtility {
 		return secWebSocketAccept;
 	}
 
+	/**
+	 * Select the subprotocol for a WebSocket: the first of the server's protocols that the client offered.
+	 * 
+	 * @param protocolHeaderParm
+	 *                           the Sec-WebSocket-Protocol request header, a comma-separated list; null if missing
+	 * @param supportedParm
+	 *                           required, the server's protocols in order of preference
+	 * @return null if the client offered none of them
+	 */
+	public static String selectProtocol(final String protocolHeaderParm, final String... supportedParm) {
+		if (protocolHeaderParm == null) {
+			return null;
+		}
+
+		final String[] offeredProtocols = protocolHeaderParm.split(",");
+
+		for (String supportedProtocol : supportedParm) {
+			for (String offeredProtocol : offeredProtocols) {
+				if (supportedProtocol.equals(offeredProtocol.trim())) {
+					return supportedProtocol;
+				}
+			}
+		}
+
+		return null;
+	}
+
 	/**
 	 * Per RFC 6455, hash the input to a byte[] and encode the byte[] using base64 encoding.
 	 * <p>
@@ -0,0 +1,250 @@
+package com.fusionalliance.internal.planpokerserver.utility;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This utility class provides the server settings. Each setting is read from a system property, for example
+ * <code>-Dplanpoker.reactors=4</code>, falling back to a default suited to a single team.
+ */
+public final class Configuration {
+	private static final Logger LOG = LoggerFactory.getLogger(Configuration.class);
+
+	private static final String PREFIX = "planpoker.";
+
+	/**
+	 * Return the TCP port the server listens on.
+	 *
+	 * @return
+	 */
+	public static int getPort() {
+		return getInt("port", 40080);
+	}
+
+	/**
+	 * Return the number of reactor (selector) threads. Defaults to the number of processors.
+	 *
+	 * @return at least 1
+	 */
+	public static int getReactorCount() {
+		return Math.max(1, getInt("reactors", Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Return the millis between heartbeat PINGs sent to each WebSocket.
+	 *
+	 * @return at least 1000
+	 */
+	public static int getHeartbeatIntervalMillis() {
+		return Math.max(1000, getInt("heartbeatIntervalMillis", 15000));
+	}
+
+	/**
+	 * Return the number of consecutive unanswered heartbeat PINGs after which a WebSocket is dropped.
+	 *
+	 * @return at least 1
+	 */
+	public static int getHeartbeatMaxMissed() {
+		return Math.max(1, getInt("heartbeatMaxMissed", 3));
+	}
+
+	/**
+	 * Return the millis the model gathers mutations before broadcasting one server update for all of them. At 0, the update is broadcast as soon as
+	 * the requests already queued for the model have been applied.
+	 *
+	 * @return at least 0
+	 */
+	public static int getUpdateCoalesceMillis() {
+		return Math.max(0, getInt("updateCoalesceMillis", 0));
+	}
+
+	/**
+	 * Return the number of events, such as client requests, that may wait for the model thread. Producers wait while the queue is full.
+	 *
+	 * @return a power of 2, at least 16
+	 */
+	public static int getModelQueueCapacity() {
+		final int capacity = Math.max(16, Math.min(1 << 20, getInt("modelQueueCapacity", 8192)));
+
+		return Integer.highestOneBit(capacity - 1) << 1;
+	}
+
+	/**
+	 * Return the most events the model thread takes from its queue before running the work they handed back, such as broadcasting the server
+	 * update.
+	 *
+	 * @return at least 1
+	 */
+	public static int getModelBatchSize() {
+		return Math.max(1, getInt("modelBatchSize", 256));
+	}
+
+	/**
+	 * Return how the model thread waits for events: park, the default, which costs nothing while idle; yield; or busy-spin, the lowest latency at
+	 * the cost of a core.
+	 *
+	 * @return not null
+	 */
+	public static String getModelWaitStrategy() {
+		final String waitStrategy = getString("modelWaitStrategy");
+
+		return waitStrategy == null ? "park" : waitStrategy;
+	}
+
+	/**
+	 * Return the largest WebSocket message accepted from a client, whether in one frame or reassembled from fragments. A longer message fails the
+	 * connection; this bounds the memory one client can hold.
+	 *
+	 * @return at least 125, the largest control frame
+	 */
+	public static int getWebSocketMaxMessageLength() {
+		return Math.max(125, getInt("webSocketMaxMessageLength", 65536));
+	}
+
+	/**
+	 * Return the largest payload per frame of a WebSocket message sent to clients; longer messages are sent as fragments.
+	 *
+	 * @return at least 125
+	 */
+	public static int getWebSocketFragmentLength() {
+		return Math.max(125, getInt("webSocketFragmentLength", 16384));
+	}
+
+	/**
+	 * Return the millis a server update may wait for a WebSocket to finish writing the previous one. A client slower than that has fallen behind
+	 * and is evicted.
+	 *
+	 * @return at least 1000
+	 */
+	public static int getSlowConsumerMillis() {
+		return Math.max(1000, getInt("slowConsumerMillis", 30000));
+	}
+
+	/**
+	 * Return the millis an HTTP connection may wait for its next request before it is closed.
+	 *
+	 * @return at least 1000
+	 */
+	public static int getHttpIdleTimeoutMillis() {
+		return Math.max(1000, getInt("httpIdleTimeoutMillis", 15000));
+	}
+
+	/**
+	 * Return the most requests served on one HTTP connection; the response to the last one closes the connection.
+	 *
+	 * @return at least 1
+	 */
+	public static int getHttpMaxRequestsPerConnection() {
+		return Math.max(1, getInt("httpMaxRequestsPerConnection", 1000));
+	}
+
+	/**
+	 * Return true if WebSocket messages are compressed with permessage-deflate when the client offers it.
+	 *
+	 * @return
+	 */
+	public static boolean isWebSocketDeflate() {
+		return getBoolean("webSocketDeflate", true);
+	}
+
+	/**
+	 * Return the most WebSocket connections that keep a compression context between messages. Each context holds about 300K outside the heap;
+	 * further connections compress each message on its own.
+	 *
+	 * @return at least 0
+	 */
+	public static int getWebSocketDeflateMaxContexts() {
+		return Math.max(0, getInt("webSocketDeflateMaxContexts", 256));
+	}
+
+	/**
+	 * Return the directory holding the Angular app, for serving the files from disk rather than from the jar's /dist.
+	 *
+	 * @return null to serve the files embedded in the jar
+	 */
+	public static String getAssetDirectory() {
+		return getString("assetDirectory");
+	}
+
+	/**
+	 * Return true if pooled buffers are allocated outside the heap.
+	 *
+	 * @return
+	 */
+	public static boolean isDirectBuffers() {
+		return getBoolean("directBuffers", false);
+	}
+
+	/**
+	 * Return true if pooled buffers are tracked, logging any that are never released. This is expensive; use it for debugging.
+	 *
+	 * @return
+	 */
+	public static boolean isBufferLeakDetection() {
+		return getBoolean("bufferLeakDetection", false);
+	}
+
+	/**
+	 * Return the boolean value of a setting.
+	 *
+	 * @param nameParm    required, without the prefix
+	 * @param defaultParm returned if the property is missing
+	 * @return
+	 */
+	static boolean getBoolean(final String nameParm, final boolean defaultParm) {
+		final String value = getString(nameParm);
+
+		if (value == null) {
+			return defaultParm;
+		}
+
+		return Boolean.parseBoolean(value);
+	}
+
+	/**
+	 * Return the value of a setting.
+	 *
+	 * @param nameParm required, without the prefix
+	 * @return null if the property is missing or blank
+	 */
+	static String getString(final String nameParm) {
+		final String value = System.getProperty(PREFIX + nameParm);
+
+		if (StringUtils.isBlank(value)) {
+			return null;
+		}
+
+		return value.trim();
+	}
+
+	/**
+	 * Return the integer value of a setting.
+	 *
+	 * @param nameParm    required, without the prefix
+	 * @param defaultParm returned if the property is missing or invalid
+	 * @return
+	 */
+	static int getInt(final String nameParm, final int defaultParm) {
+		final String value = System.getProperty(PREFIX + nameParm);
+
+		if (StringUtils.isBlank(value)) {
+			return defaultParm;
+		}
+
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (final NumberFormatException e) {
+			LOG.warn("Invalid value for " + PREFIX + nameParm + ": " + value + "; using " + defaultParm);
+
+			return defaultParm;
+		}
+	}
+
+	/**
+	 * Hidden constructor
+	 */
+	private Configuration() {
+		// Do nothing
+	}
+}
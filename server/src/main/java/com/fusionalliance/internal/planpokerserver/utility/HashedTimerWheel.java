@@ -0,0 +1,219 @@
+package com.fusionalliance.internal.planpokerserver.utility;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements a hashed timer wheel. Timers are hashed by deadline tick into a fixed ring of buckets; scheduling and cancelling are
+ * O(1), and each tick visits a single bucket, so tens of thousands of connection timers cost almost nothing per tick.
+ * <p>
+ * Deadlines are rounded up to the tick, so a timer never fires early but may fire up to one tick late.
+ * <p>
+ * <b>Warning:</b> This class is not thread safe. An instance belongs to one thread, typically a reactor, which calls {@link #advance(long)} from
+ * its loop.
+ */
+public final class HashedTimerWheel {
+	private static final Logger LOG = LoggerFactory.getLogger(HashedTimerWheel.class);
+
+	private final long tickMillis;
+	private final long startMillis;
+	private final Timer[] bucketHeads;
+	private final int bucketMask;
+	/** Reused to collect expired timers, so that tasks may schedule or cancel timers while a bucket is processed */
+	private final List<Timer> expiredTimers = new ArrayList<>();
+
+	/** The last tick processed */
+	private long currentTick = 0;
+	private int timerCount = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param tickMillisParm  the tick duration, at least 1
+	 * @param bucketCountParm a power of 2
+	 * @param nowMillisParm   the current time
+	 */
+	public HashedTimerWheel(final long tickMillisParm, final int bucketCountParm, final long nowMillisParm) {
+		check(tickMillisParm > 0, "The tick must be at least 1 milli.");
+		check(bucketCountParm > 0 && Integer.bitCount(bucketCountParm) == 1, "The bucket count must be a power of 2: " + bucketCountParm);
+
+		tickMillis = tickMillisParm;
+		startMillis = nowMillisParm;
+		bucketHeads = new Timer[bucketCountParm];
+		bucketMask = bucketCountParm - 1;
+	}
+
+	/**
+	 * Schedule a task.
+	 *
+	 * @param taskParm        required
+	 * @param delayMillisParm the minimum delay
+	 * @return a handle for cancelling the timer
+	 */
+	public Timer schedule(final Runnable taskParm, final long delayMillisParm) {
+		check(taskParm != null, "The task may not be null.");
+
+		// Round up, plus one: part of the current tick has already passed, so counting from its start could fire the timer up to a tick early
+		final long delayTicks = Math.max(0, (delayMillisParm + tickMillis - 1) / tickMillis) + 1;
+		final Timer timer = new Timer(taskParm, currentTick + delayTicks);
+
+		final int bucketIndex = (int) (timer.deadlineTick & bucketMask);
+		timer.next = bucketHeads[bucketIndex];
+		if (timer.next != null) {
+			timer.next.previous = timer;
+		}
+		bucketHeads[bucketIndex] = timer;
+		timerCount++;
+
+		return timer;
+	}
+
+	/**
+	 * Process every tick up to the current time, running expired tasks.
+	 *
+	 * @param nowMillisParm the current time
+	 */
+	public void advance(final long nowMillisParm) {
+		final long targetTick = (nowMillisParm - startMillis) / tickMillis;
+
+		// Nothing can expire; skip the idle ticks
+		if (timerCount == 0) {
+			currentTick = Math.max(currentTick, targetTick);
+
+			return;
+		}
+
+		while (currentTick < targetTick) {
+			currentTick++;
+
+			collectExpired((int) (currentTick & bucketMask));
+			runExpired();
+		}
+	}
+
+	/**
+	 * Return the millis until the next tick is due, for use as a select timeout.
+	 *
+	 * @param nowMillisParm the current time
+	 * @return 0 if there are no timers, meaning wait indefinitely; otherwise, at least 1
+	 */
+	public long millisUntilNextTick(final long nowMillisParm) {
+		if (timerCount == 0) {
+			return 0;
+		}
+
+		return Math.max(1, startMillis + (currentTick + 1) * tickMillis - nowMillisParm);
+	}
+
+	public int getTimerCount() {
+		return timerCount;
+	}
+
+	/**
+	 * Move the bucket's expired timers to the expired list. Timers for later rounds stay in the bucket.
+	 *
+	 * @param bucketIndexParm
+	 */
+	private void collectExpired(final int bucketIndexParm) {
+		Timer timer = bucketHeads[bucketIndexParm];
+
+		while (timer != null) {
+			final Timer next = timer.next;
+
+			if (timer.deadlineTick <= currentTick) {
+				unlink(timer);
+				expiredTimers.add(timer);
+			}
+
+			timer = next;
+		}
+	}
+
+	/**
+	 * Run the expired tasks. A failing task does not prevent the others from running.
+	 */
+	private void runExpired() {
+		for (int i = 0; i < expiredTimers.size(); i++) {
+			final Timer timer = expiredTimers.get(i);
+
+			// Cancelled by an earlier task in this tick
+			if (timer.cancelled) {
+				continue;
+			}
+
+			timer.expired = true;
+
+			try {
+				timer.task.run();
+			} catch (final Exception e) {
+				LoggerUtility.logIssueWithStackTrace(LOG, "Timer task failed.", false, e);
+			}
+		}
+
+		expiredTimers.clear();
+	}
+
+	/**
+	 * Remove the timer from its bucket.
+	 *
+	 * @param timerParm required, scheduled
+	 */
+	private void unlink(final Timer timerParm) {
+		if (timerParm.previous != null) {
+			timerParm.previous.next = timerParm.next;
+		} else {
+			bucketHeads[(int) (timerParm.deadlineTick & bucketMask)] = timerParm.next;
+		}
+
+		if (timerParm.next != null) {
+			timerParm.next.previous = timerParm.previous;
+		}
+
+		timerParm.previous = null;
+		timerParm.next = null;
+		timerCount--;
+	}
+
+	/**
+	 * This class implements a handle to a scheduled task.
+	 */
+	public final class Timer {
+		private final Runnable task;
+		private final long deadlineTick;
+
+		private Timer previous = null;
+		private Timer next = null;
+		private boolean cancelled = false;
+		private boolean expired = false;
+
+		private Timer(final Runnable taskParm, final long deadlineTickParm) {
+			task = taskParm;
+			deadlineTick = deadlineTickParm;
+		}
+
+		/**
+		 * Cancel the timer. No effect if it already expired or was cancelled.
+		 */
+		public void cancel() {
+			if (cancelled || expired) {
+				return;
+			}
+
+			cancelled = true;
+
+			// Expired timers waiting to run are no longer linked into a bucket
+			if (deadlineTick > currentTick || isLinked()) {
+				unlink(this);
+			}
+		}
+
+		private boolean isLinked() {
+			return previous != null || bucketHeads[(int) (deadlineTick & bucketMask)] == this;
+		}
+	}
+}
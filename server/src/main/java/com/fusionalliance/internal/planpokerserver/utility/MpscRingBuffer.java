@@ -0,0 +1,149 @@
+package com.fusionalliance.internal.planpokerserver.utility;
+
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * This class implements a bounded, lock-free, multi-producer single-consumer queue over a ring of slots. Each slot carries a sequence number
+ * telling whether it is free for the producer of a given lap or holds an element for the consumer, so producers contend only on claiming the
+ * tail, with one compare-and-set, and never on the consumer's side.
+ * <p>
+ * Any thread may {@link #offer(Object)}; a full ring refuses the element rather than waiting. Only one thread, the consumer, may
+ * {@link #poll()} or {@link #drain(Consumer, int)}.
+ */
+public final class MpscRingBuffer<E> {
+	private final int mask;
+	private final AtomicReferenceArray<E> elements;
+	/**
+	 * For each slot: equal to the position of the producer that may claim it, once the consumer has freed it; one more than that position once
+	 * the producer has published its element
+	 */
+	private final AtomicLongArray sequences;
+	/** The next position to claim; shared by producers */
+	private final AtomicLong tail = new AtomicLong();
+	/** The next position to consume; the consumer's own */
+	private long head = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacityParm a power of 2
+	 */
+	public MpscRingBuffer(final int capacityParm) {
+		check(capacityParm > 0 && Integer.bitCount(capacityParm) == 1, "The capacity must be a power of 2: " + capacityParm);
+
+		mask = capacityParm - 1;
+		elements = new AtomicReferenceArray<>(capacityParm);
+		sequences = new AtomicLongArray(capacityParm);
+
+		for (int i = 0; i < capacityParm; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Add the element at the tail. May be called on any thread.
+	 *
+	 * @param elementParm required
+	 * @return false if the ring is full
+	 */
+	public boolean offer(final E elementParm) {
+		check(elementParm != null, "The element may not be null.");
+
+		long position;
+		while (true) {
+			position = tail.get();
+			final long available = sequences.get(index(position)) - position;
+
+			if (available == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					break;
+				}
+			} else if (available < 0) {
+				// The slot still holds the element of the previous lap
+				return false;
+			}
+
+			// Another producer claimed the position first; try the next
+		}
+
+		final int index = index(position);
+		elements.lazySet(index, elementParm);
+
+		// A full store, not a lazy one: a consumer that announces it is going to sleep, then checks isEmpty(), either sees this element or is
+		// seen by this producer's next volatile read
+		sequences.set(index, position + 1);
+
+		return true;
+	}
+
+	/**
+	 * Remove and return the element at the head. Consumer thread only.
+	 *
+	 * @return null if the ring is empty, or the next element is claimed but not yet published
+	 */
+	public E poll() {
+		final int index = index(head);
+		if (sequences.get(index) != head + 1) {
+			return null;
+		}
+
+		final E element = elements.get(index);
+		elements.lazySet(index, null);
+
+		// Free the slot for the producer of the next lap
+		sequences.lazySet(index, head + mask + 1);
+		head++;
+
+		return element;
+	}
+
+	/**
+	 * Remove up to the limit of elements, in order, passing each to the handler. Consumer thread only.
+	 *
+	 * @param handlerParm required
+	 * @param limitParm   the most elements to remove
+	 * @return the number of elements removed
+	 */
+	public int drain(final Consumer<? super E> handlerParm, final int limitParm) {
+		int count = 0;
+		E element = null;
+
+		while (count < limitParm && (element = poll()) != null) {
+			handlerParm.accept(element);
+			count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Return true if no element is ready for the consumer. Consumer thread only.
+	 *
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return sequences.get(index(head)) != head + 1;
+	}
+
+	/**
+	 * Return the number of elements claimed but not yet consumed. Consumer thread only; approximate while producers are active.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return (int) Math.max(0, tail.get() - head);
+	}
+
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	private int index(final long positionParm) {
+		return (int) positionParm & mask;
+	}
+}
@@ -0,0 +1,132 @@
+package com.fusionalliance.internal.planpokerserver.vo;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.fusionalliance.internal.planpokerserver.io.BinaryWriter;
+import com.fusionalliance.internal.planpokerserver.io.BroadcastMessage;
+import com.fusionalliance.internal.planpokerserver.io.NameDictionary;
+
+/**
+ * This class holds a {@link ServerUpdate} in the form sent to clients that negotiated the {@link #PROTOCOL} WebSocket subprotocol. It is
+ * captured when the update is broadcast, since the voters may change before each connection encodes it.
+ * <p>
+ * Varints are unsigned LEB128; see {@link BinaryWriter}. Names go through the connection's {@link NameDictionary}, so each is sent in full only
+ * once per connection; see {@link BinaryWriter#putName(String, byte[], NameDictionary)}. The message is:
+ * 
+ * <pre>
+ * byte    flags: bit 0 set if a snapshot
+ * varint  sequence
+ * byte    vote status
+ * varint  average vote + 1; 0 if none
+ * varint  message count, then each message: varint UTF-8 length, bytes
+ * varint  voter count, then each voter's name
+ * bytes   (voter count + 7) / 8: bit i, low bit first, set if voter i has voted
+ * bytes   (votes + 1) / 2: the vote of each voter that has voted, 4 bits each, low half first
+ * varint  removed voter count, then each removed voter's name
+ * </pre>
+ * <p>
+ * This class is immutable; encoding is thread safe.
+ */
+public final class BinaryServerUpdate implements BroadcastMessage.BinaryForm {
+	/** The Sec-WebSocket-Protocol value that selects this form */
+	public static final String PROTOCOL = "planpoker.binary.v1";
+
+	private static final int SNAPSHOT_FLAG = 0x1;
+
+	private static final ThreadLocal<BinaryWriter> WRITER = ThreadLocal.withInitial(() -> new BinaryWriter(1024));
+
+	private final long sequence;
+	private final boolean snapshot;
+	private final int voteStatus;
+	private final int averageVote;
+	private final byte[][] messages;
+	private final String[] voterNames;
+	private final byte[][] voterNamesUtf8;
+	private final byte[] hasVotedBits;
+	private final byte[] votes;
+	private final String[] removedVoterNames;
+	private final byte[][] removedVoterNamesUtf8;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param serverUpdateParm required
+	 */
+	public BinaryServerUpdate(final ServerUpdate serverUpdateParm) {
+		sequence = serverUpdateParm.getSequence();
+		snapshot = serverUpdateParm.isSnapshot();
+		voteStatus = serverUpdateParm.getVoteStatus();
+		averageVote = serverUpdateParm.getAverageVote();
+
+		final List<String> messageList = serverUpdateParm.getMessages();
+		messages = new byte[messageList.size()][];
+		for (int i = 0; i < messages.length; i++) {
+			messages[i] = messageList.get(i).getBytes(UTF_8);
+		}
+
+		final List<Voter> voters = serverUpdateParm.getVoters();
+		voterNames = new String[voters.size()];
+		voterNamesUtf8 = new byte[voters.size()][];
+		hasVotedBits = new byte[(voters.size() + 7) / 8];
+
+		int voteCount = 0;
+		for (int i = 0; i < voterNames.length; i++) {
+			voterNames[i] = voters.get(i).getName();
+			voterNamesUtf8[i] = voterNames[i].getBytes(UTF_8);
+
+			if (voters.get(i).isHasVoted()) {
+				hasVotedBits[i >>> 3] |= 1 << (i & 7);
+				voteCount++;
+			}
+		}
+
+		votes = new byte[(voteCount + 1) / 2];
+		int voteIndex = 0;
+		for (Voter voter : voters) {
+			if (!voter.isHasVoted()) {
+				continue;
+			}
+
+			votes[voteIndex >>> 1] |= (voter.getVote() & 0xF) << ((voteIndex & 1) << 2);
+			voteIndex++;
+		}
+
+		final List<String> removedVoters = serverUpdateParm.getRemovedVoters();
+		removedVoterNames = removedVoters.toArray(new String[removedVoters.size()]);
+		removedVoterNamesUtf8 = new byte[removedVoterNames.length][];
+		for (int i = 0; i < removedVoterNames.length; i++) {
+			removedVoterNamesUtf8[i] = removedVoterNames[i].getBytes(UTF_8);
+		}
+	}
+
+	@Override
+	public ByteBuffer encode(final NameDictionary nameDictionaryParm) {
+		final BinaryWriter writer = WRITER.get().clear();
+
+		writer.putByte(snapshot ? SNAPSHOT_FLAG : 0) //
+				.putVarint(sequence) //
+				.putByte(voteStatus) //
+				.putVarint(averageVote + 1);
+
+		writer.putVarint(messages.length);
+		for (byte[] message : messages) {
+			writer.putLengthPrefixed(message);
+		}
+
+		writer.putVarint(voterNames.length);
+		for (int i = 0; i < voterNames.length; i++) {
+			writer.putName(voterNames[i], voterNamesUtf8[i], nameDictionaryParm);
+		}
+		writer.putBytes(hasVotedBits).putBytes(votes);
+
+		writer.putVarint(removedVoterNames.length);
+		for (int i = 0; i < removedVoterNames.length; i++) {
+			writer.putName(removedVoterNames[i], removedVoterNamesUtf8[i], nameDictionaryParm);
+		}
+
+		return writer.toByteBuffer();
+	}
+}
@@ -1,21 +1,112 @@
 package com.fusionalliance.internal.planpokerserver.vo;
 
+import static com.fusionalliance.internal.planpokerserver.utility.CheckCondition.check;
+
+import java.nio.ByteBuffer;
+
 import org.apache.commons.lang3.StringUtils;
 
 import com.fusionalliance.internal.planpokerserver.Model;
+import com.fusionalliance.internal.planpokerserver.io.JsonReader;
+import com.fusionalliance.internal.planpokerserver.utility.CheckCondition.ConditionNotMetException;
 import com.google.common.annotations.VisibleForTesting;
 
 /**
  * This class implements a value object for a client request.
  * <p>
- * Typically, instances will be populated from JSON.
+ * Typically, instances will be populated from JSON, by {@link #readJson(ByteBuffer)}.
  */
 public class ClientRequest {
+	/** Requests are a few short fields; anything longer is rejected unread */
+	public static final int MAX_JSON_LENGTH = 4096;
+
+	private static final int REQUEST_TYPE = 0;
+	private static final int VOTER_NAME = 1;
+	private static final int VOTE = 2;
+	private static final int INFO = 3;
+	private static final int REQUEST_ID = 4;
+	private static final byte[][] FIELD_NAMES = JsonReader.table("requestType", "voterName", "vote", "info", "requestId");
+
 	private ClientRequestType requestType;
 	private String voterName;
 	private int vote;
 	/** This can hold any information, such as the voter name to drop */
 	private String info = "";
+	/** Chosen by the client to match the response to a request sent over its WebSocket; 0 if none */
+	private int requestId;
+
+	/**
+	 * Read a request from UTF-8 JSON in a single pass. Unknown members are skipped and null members leave the default, as with Gson. The request
+	 * type is matched in place and the strings are only decoded once the whole body is known to be well formed, so a malformed or oversized body
+	 * is rejected before any field is decoded or the request is built. Call {@link #validate()} on the result.
+	 * 
+	 * @param bufferParm required, the JSON between its position and limit, which are left as they are
+	 * @return
+	 * @throws ConditionNotMetException if the body is too long or is not a well formed JSON object
+	 */
+	public static ClientRequest readJson(final ByteBuffer bufferParm) {
+		check(bufferParm.remaining() <= MAX_JSON_LENGTH, "The request is too long.");
+
+		final JsonReader reader = new JsonReader(bufferParm);
+		ClientRequestType requestType = null;
+		int voterNamePosition = -1;
+		int vote = 0;
+		int infoPosition = -1;
+		int requestId = 0;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final int field = reader.nextName(FIELD_NAMES);
+
+			if (field == -1) {
+				reader.skipValue();
+
+				continue;
+			}
+
+			if (reader.nextNull()) {
+				// A primitive keeps its value
+				if (field == REQUEST_TYPE) {
+					requestType = null;
+				} else if (field == VOTER_NAME) {
+					voterNamePosition = -1;
+				} else if (field == INFO) {
+					infoPosition = -1;
+				}
+
+				continue;
+			}
+
+			switch (field) {
+			case REQUEST_TYPE:
+				requestType = ClientRequestType.readJson(reader);
+				break;
+			case VOTER_NAME:
+				voterNamePosition = reader.skipString();
+				break;
+			case VOTE:
+				vote = reader.nextInt();
+				break;
+			case INFO:
+				infoPosition = reader.skipString();
+				break;
+			case REQUEST_ID:
+				requestId = reader.nextInt();
+				break;
+			}
+		}
+		reader.endObject();
+		reader.endDocument();
+
+		final ClientRequest clientRequest = new ClientRequest();
+		clientRequest.requestType = requestType;
+		clientRequest.voterName = voterNamePosition == -1 ? null : reader.readString(voterNamePosition);
+		clientRequest.vote = vote;
+		clientRequest.info = infoPosition == -1 ? null : reader.readString(infoPosition);
+		clientRequest.requestId = requestId;
+
+		return clientRequest;
+	}
 
 	/**
 	 * Return an error message containg validation issues. The message will be null if no errors.
@@ -60,6 +151,10 @@ public class ClientRequest {
 		return info;
 	}
 
+	public int getRequestId() {
+		return requestId;
+	}
+
 	@VisibleForTesting
 	void setRequestType(ClientRequestType requestParm) {
 		requestType = requestParm;
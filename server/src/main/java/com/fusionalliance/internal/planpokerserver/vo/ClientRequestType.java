@@ -1,23 +1,48 @@
 package com.fusionalliance.internal.planpokerserver.vo;
 
-import com.google.gson.annotations.SerializedName;
+import com.fusionalliance.internal.planpokerserver.io.JsonReader;
 
 public enum ClientRequestType {
-	@SerializedName("join")
-	JOIN, //
-	@SerializedName("startVote")
-	START_VOTE, //
-	@SerializedName("vote")
-	VOTE, //
-	@SerializedName("endVote")
-	END_VOTE, //
-	@SerializedName("cancelVote")
-	CANCEL_VOTE, //
-	@SerializedName("refresh")
-	REFRESH, //
-	@SerializedName("leave")
-	LEAVE, //
-	@SerializedName("dropVoter")
-	DROP_VOTER, //
+	JOIN("join"), //
+	START_VOTE("startVote"), //
+	VOTE("vote"), //
+	END_VOTE("endVote"), //
+	CANCEL_VOTE("cancelVote"), //
+	REFRESH("refresh"), //
+	LEAVE("leave"), //
+	DROP_VOTER("dropVoter"), //
+	RESYNC("resync"), //
 	;
+
+	/** Indexed by ordinal, kept so that lookups do not copy {@link #values()} */
+	private static final ClientRequestType[] VALUES = values();
+	/** The JSON names, indexed by ordinal */
+	private static final byte[][] JSON_NAMES;
+
+	static {
+		final String[] jsonNames = new String[VALUES.length];
+		for (ClientRequestType requestType : VALUES) {
+			jsonNames[requestType.ordinal()] = requestType.jsonName;
+		}
+
+		JSON_NAMES = JsonReader.table(jsonNames);
+	}
+
+	private final String jsonName;
+
+	private ClientRequestType(final String jsonNameParm) {
+		jsonName = jsonNameParm;
+	}
+
+	/**
+	 * Read a request type, matching its JSON name in place.
+	 * 
+	 * @param readerParm required
+	 * @return null for an unknown name
+	 */
+	static ClientRequestType readJson(final JsonReader readerParm) {
+		final int index = readerParm.nextString(JSON_NAMES);
+
+		return index == -1 ? null : VALUES[index];
+	}
 }
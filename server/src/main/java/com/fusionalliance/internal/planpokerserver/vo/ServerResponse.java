@@ -2,6 +2,7 @@ package com.fusionalliance.internal.planpokerserver.vo;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.fusionalliance.internal.planpokerserver.io.JsonWriter;
 import com.fusionalliance.internal.planpokerserver.utility.CheckCondition;
 
 public class ServerResponse {
@@ -29,6 +30,35 @@ public class ServerResponse {
 		message = messageParm;
 	}
 
+	/**
+	 * Write this response as JSON, as Gson would.
+	 * 
+	 * @param writerParm required
+	 */
+	public void writeJson(final JsonWriter writerParm) {
+		writerParm.beginObject();
+		writeFields(writerParm);
+		writerParm.endObject();
+	}
+
+	/**
+	 * Write this response as the reply to a request received on a WebSocket: the same JSON, led by the id the client gave the request, which
+	 * also tells the reply apart from server updates.
+	 * 
+	 * @param writerParm    required
+	 * @param requestIdParm the request's id
+	 */
+	public void writeJson(final JsonWriter writerParm, final int requestIdParm) {
+		writerParm.beginObject().name("requestId").value(requestIdParm);
+		writeFields(writerParm);
+		writerParm.endObject();
+	}
+
+	private void writeFields(final JsonWriter writerParm) {
+		writerParm.name("error").value(error) //
+				.name("message").value(message);
+	}
+
 	public boolean isError() {
 		return error;
 	}
@@ -1,60 +1,102 @@
 package com.fusionalliance.internal.planpokerserver.vo;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.SortedSet;
 
+import com.fusionalliance.internal.planpokerserver.io.JsonWriter;
 import com.google.common.annotations.VisibleForTesting;
 
 /**
- * This class represents a server update that is broadcast to clients. Typically, it is transformed to JSON after it is populated.
+ * This class represents a server update that is sent to clients. Typically, it is transformed to JSON after it is populated.
+ * <p>
+ * An update is either a snapshot of the whole model, or a delta holding only the voters that joined, changed or left since the previous update.
+ * Deltas are numbered consecutively; a client that finds a gap in the sequence asks for a snapshot. A snapshot carries the sequence number of
+ * the latest delta it includes.
  * <p>
  * This class is used as a DTO and should not be modified.
  */
 public class ServerUpdate {
+	private final long sequence;
+	private final boolean snapshot;
+	/** The latest event */
 	private final String message;
+	/** Every event since the previous update, oldest first */
+	private final List<String> messages = new ArrayList<>();
 	private final int voteStatus;
 	private final int averageVote;
+	/** Every voter in a snapshot; voters added or changed in a delta */
 	private final List<Voter> voters = new ArrayList<>();
+	/** Names of voters removed; empty in a snapshot */
+	private final List<String> removedVoters = new ArrayList<>();
 
-	public ServerUpdate(final String messageParm, final int voteStatusParm, final SortedSet<Voter> votersParm) {
-		message = messageParm;
+	/**
+	 * Constructor
+	 * 
+	 * @param sequenceParm      the sequence number of the latest delta
+	 * @param snapshotParm      true if the voters are the whole model
+	 * @param messagesParm      required, may be empty for a snapshot
+	 * @param voteStatusParm    0 = no vote 1 = vote in progress 2 = vote complete
+	 * @param averageVoteParm   -1 if none
+	 * @param votersParm        required, sorted by name
+	 * @param removedVotersParm required
+	 */
+	public ServerUpdate(final long sequenceParm, final boolean snapshotParm, final List<String> messagesParm, final int voteStatusParm,
+			final int averageVoteParm, final Collection<Voter> votersParm, final Collection<String> removedVotersParm) {
+		sequence = sequenceParm;
+		snapshot = snapshotParm;
+		messages.addAll(messagesParm);
+		message = messages.isEmpty() ? null : messages.get(messages.size() - 1);
 		voteStatus = voteStatusParm;
+		averageVote = averageVoteParm;
 		voters.addAll(votersParm);
-		averageVote = calculateAverageVote();
+		removedVoters.addAll(removedVotersParm);
 	}
 
-	private int calculateAverageVote() {
-		// Don't calculate the average vote if the vote is not complete
-		if (voteStatus != 2) {
+	/**
+	 * Write this update as JSON, as Gson would: fields in declaration order, the message omitted if null.
+	 * 
+	 * @param writerParm required
+	 */
+	public void writeJson(final JsonWriter writerParm) {
+		writerParm.beginObject() //
+				.name("sequence").value(sequence) //
+				.name("snapshot").value(snapshot);
+
+		if (message != null) {
+			writerParm.name("message").value(message);
+		}
 
-			return -1;
+		writerParm.name("messages").beginArray();
+		for (String loopMessage : messages) {
+			writerParm.value(loopMessage);
 		}
+		writerParm.endArray();
+
+		writerParm.name("voteStatus").value(voteStatus) //
+				.name("averageVote").value(averageVote);
 
-		int validVoters = 0;
-		int sumVotes = 0;
+		writerParm.name("voters").beginArray();
 		for (Voter voter : voters) {
-			if (!voter.isHasVoted()) {
-				continue;
-			}
-			// Don't average in "?" votes
-			if (voter.getVote() == 0) {
-				continue;
-			}
-
-			validVoters++;
-			sumVotes += voter.getVote();
+			voter.writeJson(writerParm);
 		}
+		writerParm.endArray();
 
-		// Boundary case: vote ended with no one voting or every voting "?"
-		if (validVoters == 0) {
-			return -1;
+		writerParm.name("removedVoters").beginArray();
+		for (String removedVoter : removedVoters) {
+			writerParm.value(removedVoter);
 		}
+		writerParm.endArray();
 
-		final BigDecimal average = new BigDecimal(sumVotes).divide(new BigDecimal(validVoters), 0, BigDecimal.ROUND_HALF_UP);
+		writerParm.endObject();
+	}
+
+	long getSequence() {
+		return sequence;
+	}
 
-		return average.intValue();
+	boolean isSnapshot() {
+		return snapshot;
 	}
 
 	@VisibleForTesting
@@ -62,18 +104,23 @@ public class ServerUpdate {
 		return message;
 	}
 
-	@VisibleForTesting
+	List<String> getMessages() {
+		return messages;
+	}
+
 	int getVoteStatus() {
 		return voteStatus;
 	}
 
-	@VisibleForTesting
 	int getAverageVote() {
 		return averageVote;
 	}
 
-	@VisibleForTesting
 	List<Voter> getVoters() {
 		return voters;
 	}
+
+	List<String> getRemovedVoters() {
+		return removedVoters;
+	}
 }
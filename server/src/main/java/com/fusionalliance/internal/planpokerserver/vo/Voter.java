@@ -2,6 +2,7 @@ package com.fusionalliance.internal.planpokerserver.vo;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.fusionalliance.internal.planpokerserver.io.JsonWriter;
 import com.fusionalliance.internal.planpokerserver.utility.CheckCondition;
 
 /**
@@ -59,6 +60,19 @@ public class Voter implements Comparable<Voter> {
 		return vote;
 	}
 
+	/**
+	 * Write this voter as JSON, as Gson would.
+	 * 
+	 * @param writerParm required
+	 */
+	public void writeJson(final JsonWriter writerParm) {
+		writerParm.beginObject() //
+				.name("name").value(name) //
+				.name("hasVoted").value(hasVoted) //
+				.name("vote").value(vote) //
+				.endObject();
+	}
+
 	public void setVote(int voteParm) {
 		vote = voteParm;
 